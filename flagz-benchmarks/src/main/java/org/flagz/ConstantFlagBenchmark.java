@@ -0,0 +1,70 @@
+package org.flagz;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading a rarely changing flag in a hot loop through {@link Flag#get}, the unboxed
+ * {@link BooleanFlag#getAsBoolean} and a {@link ConstantFlagAccess} getter.
+ *
+ * Each benchmark sums a branch on the flag over an array, so the constant getter should let the
+ * JIT drop the branch entirely.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ConstantFlagBenchmark {
+
+  @FlagInfo(name = "benchmark_constant_switch", help = "Kill switch read in the hot loop.")
+  static final BooleanFlag killSwitch = Flagz.valueOf(false);
+
+  static final MethodHandle KILL_SWITCH = ConstantFlagAccess.getter(killSwitch);
+
+  static {
+    Flagz.parse(new String[] {}, ImmutableList.of("org.flagz"), ImmutableSet.of());
+  }
+
+  private final int[] values = new int[1024];
+
+  @Benchmark
+  public long boxedGet() {
+    long sum = 0;
+    for (int value : values) {
+      sum += killSwitch.get() ? 0 : value;
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long unboxedGet() {
+    long sum = 0;
+    for (int value : values) {
+      sum += killSwitch.getAsBoolean() ? 0 : value;
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long constantGetter() throws Throwable {
+    long sum = 0;
+    for (int value : values) {
+      sum += (boolean) KILL_SWITCH.invokeExact() ? 0 : value;
+    }
+    return sum;
+  }
+}
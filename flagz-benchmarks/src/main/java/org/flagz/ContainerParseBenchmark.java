@@ -0,0 +1,79 @@
+package org.flagz;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Measures {@link ContainerFlagField#parseString} for lists and maps of growing size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ContainerParseBenchmark {
+
+  @FlagInfo(name = "benchmark_container_list", help = "List flag parsed in the benchmark.")
+  final Flag<List<Integer>> listFlag = Flagz.valueOf(ImmutableList.<Integer>of());
+
+  @FlagInfo(name = "benchmark_container_map", help = "Map flag parsed in the benchmark.")
+  final Flag<Map<String, Integer>> mapFlag = Flagz.valueOf(ImmutableMap.<String, Integer>of());
+
+  @Param({"10", "1000", "100000"})
+  int entries;
+
+  private String listValue;
+  private String mapValue;
+  private String quotedMapValue;
+
+  @Setup
+  public void setUp() {
+    Flagz.parse(new String[] {}, ImmutableList.of(), ImmutableSet.<Object>of(this));
+    listValue = IntStream.range(0, entries)
+        .mapToObj(Integer::toString)
+        .collect(Collectors.joining(","));
+    mapValue = IntStream.range(0, entries)
+        .mapToObj(i -> "key" + i + ":" + i)
+        .collect(Collectors.joining(","));
+    quotedMapValue = IntStream.range(0, entries)
+        .mapToObj(i -> "\"key," + i + "\":" + i)
+        .collect(Collectors.joining(","));
+  }
+
+  @Benchmark
+  public List<Integer> parseList() {
+    ((ContainerFlagField<?>) listFlag).parseString(listValue);
+    return listFlag.get();
+  }
+
+  @Benchmark
+  public Map<String, Integer> parseMap() {
+    ((ContainerFlagField<?>) mapFlag).parseString(mapValue);
+    return mapFlag.get();
+  }
+
+  @Benchmark
+  public Map<String, Integer> parseQuotedMap() {
+    ((ContainerFlagField<?>) mapFlag).parseString(quotedMapValue);
+    return mapFlag.get();
+  }
+}
@@ -0,0 +1,71 @@
+package org.flagz;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Flag#get} on a single flag shared by all benchmark threads.
+ *
+ * `readOneThread` and `readAllThreads` cover the uncontended and fully parallel read paths. For
+ * counts in between, override the thread count with `-t`. The `readWhileWriting` group adds a
+ * thread that keeps updating the flag, so readers pay for the cache line bouncing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class FlagReadBenchmark {
+
+  @FlagInfo(name = "benchmark_read_int", help = "Flag read by all threads.")
+  final Flag<Integer> flag = Flagz.valueOf(Integer.valueOf(1));
+
+  private int counter = 0;
+
+  @Setup
+  public void setUp() {
+    Flagz.parse(new String[] {}, ImmutableList.of(), ImmutableSet.<Object>of(this));
+  }
+
+  @Benchmark
+  @Threads(1)
+  public Integer readOneThread() {
+    return flag.get();
+  }
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public Integer readAllThreads() {
+    return flag.get();
+  }
+
+  @Benchmark
+  @Group("readWhileWriting")
+  @GroupThreads(3)
+  public Integer reader() {
+    return flag.get();
+  }
+
+  @Benchmark
+  @Group("readWhileWriting")
+  @GroupThreads(1)
+  public void writer() {
+    flag.accept(counter++ & 0xff);
+  }
+}
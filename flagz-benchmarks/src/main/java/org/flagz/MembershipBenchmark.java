@@ -0,0 +1,100 @@
+package org.flagz;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * Measures {@link MembershipFlag#contains} against `HashSet.contains` of the same elements.
+ *
+ * Queries cycle through a fixed array, of which `hitPercent` are elements of the set, so that the
+ * prefiltered lookup of absent elements shows against that of present ones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MembershipBenchmark {
+
+  private static final int QUERIES = 1 << 16;
+
+  @FlagInfo(name = "benchmark_membership_strings", help = "String set looked up in the benchmark.")
+  final MembershipFlag<String> stringFlag = Flagz.membershipOf(ImmutableSet.<String>of());
+
+  @FlagInfo(name = "benchmark_membership_longs", help = "Long set looked up in the benchmark.")
+  final LongMembershipFlag longFlag = Flagz.longMembershipOf();
+
+  @Param({"1000", "100000", "1000000"})
+  int entries;
+
+  @Param({"1", "50"})
+  int hitPercent;
+
+  private final Set<String> stringHashSet = new HashSet<>();
+  private final Set<Long> longHashSet = new HashSet<>();
+  private final String[] stringQueries = new String[QUERIES];
+  private final long[] longQueries = new long[QUERIES];
+  private int next = 0;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(42);
+    long[] values = LongStream.generate(random::nextLong).limit(entries).toArray();
+    for (long value : values) {
+      stringHashSet.add("user-" + value);
+      longHashSet.add(value);
+    }
+    for (int index = 0; index < QUERIES; index++) {
+      long query = random.nextInt(100) < hitPercent
+          ? values[random.nextInt(entries)]
+          : random.nextLong();
+      longQueries[index] = query;
+      stringQueries[index] = "user-" + query;
+    }
+    String[] args = {
+        "--benchmark_membership_strings=" + String.join(",", stringHashSet),
+        "--benchmark_membership_longs=" + LongStream.of(values)
+            .mapToObj(Long::toString)
+            .collect(Collectors.joining(","))};
+    Flagz.parse(args, ImmutableList.of(), ImmutableSet.<Object>of(this));
+  }
+
+  @Benchmark
+  public boolean stringHashSet() {
+    return stringHashSet.contains(stringQueries[next++ & (QUERIES - 1)]);
+  }
+
+  @Benchmark
+  public boolean stringMembershipFlag() {
+    return stringFlag.contains(stringQueries[next++ & (QUERIES - 1)]);
+  }
+
+  @Benchmark
+  public boolean longHashSet() {
+    return longHashSet.contains(longQueries[next++ & (QUERIES - 1)]);
+  }
+
+  @Benchmark
+  public boolean longMembershipFlag() {
+    return longFlag.contains(longQueries[next++ & (QUERIES - 1)]);
+  }
+}
@@ -0,0 +1,59 @@
+package org.flagz;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link PrimitiveFlagField.NumberFlagField#fromString} for each supported number type.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class NumberParseBenchmark {
+
+  private final Flag<Integer> flag = Flagz.valueOf(Integer.valueOf(0));
+
+  // Non-final so that the JIT can't constant-fold the parsing.
+  private String byteValue = "0x7f";
+  private String intValue = "123456789";
+  private String hexIntValue = "0x75bcd15";
+  private String longValue = "1234567890123456789";
+  private String doubleValue = "12345.6789";
+
+  @Benchmark
+  public Number parseByte() {
+    return PrimitiveFlagField.NumberFlagField.fromString(byteValue, Byte.class, flag);
+  }
+
+  @Benchmark
+  public Number parseInt() {
+    return PrimitiveFlagField.NumberFlagField.fromString(intValue, Integer.class, flag);
+  }
+
+  @Benchmark
+  public Number parseHexInt() {
+    return PrimitiveFlagField.NumberFlagField.fromString(hexIntValue, Integer.class, flag);
+  }
+
+  @Benchmark
+  public Number parseLong() {
+    return PrimitiveFlagField.NumberFlagField.fromString(longValue, Long.class, flag);
+  }
+
+  @Benchmark
+  public Number parseDouble() {
+    return PrimitiveFlagField.NumberFlagField.fromString(doubleValue, Double.class, flag);
+  }
+}
@@ -0,0 +1,80 @@
+package org.flagz;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Flagz#parse} end to end: discovering flags, binding them and parsing arguments.
+ *
+ * `parseObjects` only reflects on a fresh object per call. `parseColdClasspath` scans the classpath
+ * for static flags with {@link ReflectionsCache} emptied first, which is what a binary pays once at
+ * startup.
+ *
+ * Every parse also binds the static flags of `org.flagz` again, which is why iterations are short.
+ */
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+public class ParseBenchmark {
+
+  private static final String[] ARGS = {
+      "--benchmark_parse_int=42",
+      "--benchmark_parse_string=foo",
+      "--benchmark_parse_list=1,2,3,4,5",
+      "--benchmark_parse_map=a:1,b:2,c:3",
+  };
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @Warmup(iterations = 5)
+  @Measurement(iterations = 10)
+  public FlagFieldRegistry parseObjects() {
+    return Flagz.parse(ARGS, ImmutableList.of(), ImmutableSet.<Object>of(new Flags()));
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @Warmup(iterations = 5)
+  @Measurement(iterations = 20)
+  public FlagFieldRegistry parseColdClasspath(ColdCache coldCache) {
+    return Flagz.parse(new String[] {}, ImmutableList.of("org.flagz"), ImmutableSet.of());
+  }
+
+  /** Empties {@link ReflectionsCache} before every call, so the classpath is scanned again. */
+  @State(Scope.Thread)
+  public static class ColdCache {
+    @Setup(Level.Invocation)
+    public void clear() {
+      ReflectionsCache.urlsToReflections.clear();
+    }
+  }
+
+  static class Flags {
+    @FlagInfo(name = "benchmark_parse_int", help = "some int")
+    final Flag<Integer> flagInt = Flagz.valueOf(Integer.valueOf(0));
+
+    @FlagInfo(name = "benchmark_parse_string", help = "some string")
+    final Flag<String> flagString = Flagz.valueOf("");
+
+    @FlagInfo(name = "benchmark_parse_list", help = "some list")
+    final Flag<List<Integer>> flagList = Flagz.valueOf(ImmutableList.<Integer>of());
+
+    @FlagInfo(name = "benchmark_parse_map", help = "some map")
+    final Flag<Map<String, Integer>> flagMap = Flagz.valueOf(ImmutableMap.<String, Integer>of());
+  }
+}
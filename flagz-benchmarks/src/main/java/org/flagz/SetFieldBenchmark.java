@@ -0,0 +1,54 @@
+package org.flagz;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link FlagFieldRegistry#setField} on a flag with validators and listeners attached.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SetFieldBenchmark {
+
+  @FlagInfo(name = "benchmark_set_int", help = "Flag set in the benchmark.")
+  final Flag<Integer> flag = Flagz.valueOf(Integer.valueOf(0));
+
+  @Param({"0", "1", "10"})
+  int callbacks;
+
+  private FlagFieldRegistry registry;
+  private final String[] values = {"12345", "67890"};
+  private int counter = 0;
+
+  @Setup
+  public void setUp(Blackhole blackhole) {
+    for (int i = 0; i < callbacks; i++) {
+      flag.withValidator(value -> value >= 0);
+      flag.withListener(blackhole::consume);
+    }
+    registry = Flagz.parse(new String[] {}, ImmutableList.of(), ImmutableSet.<Object>of(this));
+  }
+
+  @Benchmark
+  public void setField() {
+    registry.setField("benchmark_set_int", values[counter++ & 1]);
+  }
+}
@@ -16,7 +16,9 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeoutException;
@@ -137,9 +139,14 @@ public class EtcdFlagFieldUpdater {
   }
 
   private void initialSetAllFlagz() {
+    // Applied as a single batch, so that related flags never take effect one at a time.
+    Map<String, String> nameToValue = new HashMap<>();
     for (EtcdNode n : fetchAllFlagzNodes()) {
-      setFlagFromFlagzNode(n);
+      nameToValue.put(nodeKeyToFlagName(n.key), n.value);
     }
+    registry.setRemoteFields(nameToValue);
+    LOG.info("Flags({}) updated from EtcdIndex({}).", nameToValue.keySet(),
+        lastKnownFlagzModificationIndex);
   }
 
   private void watchAndUpdateSingleFlagz() {
@@ -235,7 +242,7 @@ public class EtcdFlagFieldUpdater {
 
   private void setFlagFromFlagzNode(EtcdNode node) throws FlagException {
     String flagName = nodeKeyToFlagName(node.key);
-    registry.setField(flagName, node.value);
+    registry.setRemoteField(flagName, node.value);
     LOG.info(
         "Flag({}) updated to value='{}' from EtcdIndex({}).", flagName, node.value,
         node.modifiedIndex);
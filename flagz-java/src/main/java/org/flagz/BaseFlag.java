@@ -2,13 +2,20 @@ package org.flagz;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
+import java.lang.ref.WeakReference;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
 
 /**
@@ -19,18 +26,47 @@ import java.util.function.Predicate;
  */
 class BaseFlag<T> implements Flag<T> {
 
-  private static final Logger LOG = LoggerFactory.getLogger(FlagFieldRegistry.class);
+  @SuppressWarnings("rawtypes")
+  private static final AtomicLongFieldUpdater<BaseFlag> VERSION =
+      AtomicLongFieldUpdater.newUpdater(BaseFlag.class, "version");
+
+  // Set once reads of any flag need more than its value: by the first FlagScope opened, or when the
+  // first flag marked FlagzUnused is bound. Never reset. Until then every read is a single volatile
+  // load of the value. It doesn't need to be volatile: the thread opening a scope sees its own
+  // write, and flags are bound before threads started by, or synchronizing with, the binding
+  // registry read them.
+  static boolean readHooks = false;
 
   private volatile T value;
   private final T defaultValue;
+  private volatile long version = 0;
+  // The value and version of the last store, written together so that snapshots read both of the
+  // same change. Null until the first store.
+  private volatile Stored<T> lastStored;
+  // Created on first use by ConstantFlagAccess, and retargeted on every change.
+  private volatile MutableCallSite constantSite;
 
   protected String name;
   protected String altName;
   protected String help;
   protected boolean unusedMarker;
+  // Only set for flags marked with FlagzUnused, and only read once readHooks is on.
+  volatile UnusedFlagTracker unusedTracker;
+  // The registries whose snapshots hold this flag. Weak references rather than a listener per
+  // registry, so that registries of earlier Flagz.parse calls don't stay reachable for good.
+  private final List<WeakReference<FlagFieldRegistry>> registries = new CopyOnWriteArrayList<>();
 
-  private final List<Predicate<T>> validators = new LinkedList<>();
-  private final List<Consumer<T>> listeners = new LinkedList<>();
+  // Copy-on-write, so that callbacks can be added while updates from other threads are running.
+  private final List<Predicate<T>> validators = new CopyOnWriteArrayList<>();
+  private final List<Consumer<T>> listeners = new CopyOnWriteArrayList<>();
+  private final List<DerivedFlagField<T, ?>> derivedFlags = new CopyOnWriteArrayList<>();
+  // Held while storing a value, so that racing writers store one at a time. An explicit lock, so
+  // that a FlagBatch can take the locks of all its flags in a loop.
+  final ReentrantLock updateLock = new ReentrantLock();
+  // Stored values the listeners haven't been called with yet, oldest first, and whether a thread is
+  // calling them, both guarded by this. A linked list, as values may be null.
+  private final Queue<T> pendingNotifications = new LinkedList<>();
+  private boolean notifying;
 
   BaseFlag(T defaultValue) {
     this.value = defaultValue;
@@ -39,11 +75,7 @@ class BaseFlag<T> implements Flag<T> {
 
   @Override
   public T get() {
-    if (unusedMarker) {
-      String errMsg = String.format("Trying to get a value from flag: %s, which is marked as unused.", name);
-      LOG.error(errMsg);
-    }
-    return value;
+    return readHooks ? hookedValue() : value;
   }
 
   @Override
@@ -51,11 +83,119 @@ class BaseFlag<T> implements Flag<T> {
     return defaultValue;
   }
 
+  /**
+   * Validates and sets the value, then notifies listeners.
+   *
+   * Reads never block. Updates racing on the same flag are applied one at a time: validators run
+   * concurrently, and storing the value, bumping the version, recomputing the flags derived from
+   * this one and publishing them all to the snapshots of the owning registries happens under the
+   * flag's {@link #updateLock}. So once this returns, snapshots and {@link FlagScope} pins taken by
+   * the caller hold the value. Listeners are called after the lock is released, one value at a
+   * time, so they see the updates in the order they were applied, and the last one they see is the
+   * current value.
+   */
   @Override
   public void accept(T value) {
-    checkValidators(value);
+    StartupRecorder recorder = StartupRecorder.current();
+    if (recorder == null) {
+      checkValidators(value);
+    } else {
+      recorder.time(StartupReport.Phase.VALIDATION, () -> {
+        checkValidators(value);
+        return null;
+      });
+    }
+    if (FlagBatch.stageIfStaging(this, value)) {
+      return;
+    }
+    store(value);
+    drainNotifications();
+  }
+
+  @Override
+  public long version() {
+    return version;
+  }
+
+  /** Marks a change of the value, after it has been fully stored by {@link #setValue}. */
+  void incrementVersion() {
+    VERSION.incrementAndGet(this);
+  }
+
+  /**
+   * Stores an already validated value.
+   *
+   * Primitive-specialized flags override this to keep an unboxed copy of the value.
+   */
+  void setValue(T value) {
     this.value = value;
-    notifyListeners(value);
+    if (constantSite != null) {
+      retargetConstantSite();
+    }
+  }
+
+  /**
+   * Returns the call site backing {@link ConstantFlagAccess#getter}, creating it on first use.
+   *
+   * The site's target always returns the current value as a constant of the given type.
+   */
+  synchronized MutableCallSite constantSite(Class<?> type) {
+    if (constantSite == null) {
+      T current = currentValue();
+      MutableCallSite site = new MutableCallSite(MethodHandles.constant(type, current));
+      constantSite = site;
+      // A writer that stored a new value before seeing the site won't retarget it, so check again
+      // now that the site is visible.
+      if (currentValue() != current) {
+        retargetConstantSite();
+      }
+    }
+    return constantSite;
+  }
+
+  /** Points the constant call site at the current value, deoptimizing code that inlined it. */
+  private synchronized void retargetConstantSite() {
+    MutableCallSite site = constantSite;
+    MethodType type = site.type();
+    site.setTarget(MethodHandles.constant(type.returnType(), currentValue()));
+    MutableCallSite.syncAll(new MutableCallSite[] {site});
+  }
+
+  /** Returns the current value, bypassing any read-side bookkeeping of {@link #get}. */
+  T currentValue() {
+    return value;
+  }
+
+  /** Returns the current value together with the version it was stored at. */
+  Stored<T> lastStored() {
+    Stored<T> stored = lastStored;
+    return stored != null ? stored : new Stored<>(value, 0);
+  }
+
+  /**
+   * Returns the value of a read once {@link #readHooks} are on: counts the read if the flag is
+   * marked {@link FlagzUnused}, and returns the value pinned by the calling thread's
+   * {@link FlagScope}, or the current value.
+   */
+  T hookedValue() {
+    UnusedFlagTracker tracker = unusedTracker;
+    if (tracker != null) {
+      tracker.recordAccess();
+    }
+    return pinnedOrCurrentValue();
+  }
+
+  /** Returns the value pinned by the calling thread's {@link FlagScope}, or the current value. */
+  @SuppressWarnings("unchecked")
+  T pinnedOrCurrentValue() {
+    FlagScope scope = FlagScope.current();
+    if (scope != null) {
+      Object pinned = scope.pinnedValueOrAbsent(this);
+      if (pinned != FlagSnapshot.ABSENT) {
+        return (T) pinned;
+      }
+    }
+    return value;
   }
 
   @Override
@@ -104,7 +244,7 @@ class BaseFlag<T> implements Flag<T> {
   }
 
 
-  private void checkValidators(T value) throws FlagException.BadValue {
+  void checkValidators(T value) throws FlagException.BadValue {
     for (Predicate<T> predicate : validators) {
       try {
         if (!predicate.test(value)) {
@@ -117,9 +257,155 @@ class BaseFlag<T> implements Flag<T> {
     }
   }
 
-  private void notifyListeners(T value) {
+  /**
+   * Returns a read-only flag holding the result of applying the mapper to this flag's value.
+   *
+   * The mapper runs once for every change of this flag, and reads of the returned flag return the
+   * cached result. Values the mapper rejects with an {@link IllegalArgumentException} are rejected
+   * as if by a validator, leaving both flags unchanged.
+   */
+  @Override
+  public <R> Flag<R> map(Function<? super T, ? extends R> mapper) {
+    DerivedFlagField<T, R> derived = new DerivedFlagField<>(this, mapper);
+    derivedFlags.add(derived);
+    return derived;
+  }
+
+  /** Returns the flags created through {@link #map}, including ones derived from those. */
+  List<DerivedFlagField<?, ?>> allDerivedFlags() {
+    List<DerivedFlagField<?, ?>> result = new LinkedList<>();
+    for (DerivedFlagField<T, ?> derived : derivedFlags) {
+      result.add(derived);
+      result.addAll(derived.allDerivedFlags());
+    }
+    return result;
+  }
+
+  /**
+   * Stores an already validated value and bumps the version, recomputes the derived flags and
+   * publishes the change to the owning registries, then queues the value for the listeners, see
+   * {@link #drainNotifications}.
+   */
+  void store(T value) {
+    updateLock.lock();
+    try {
+      setValue(value);
+      incrementVersion();
+      lastStored = new Stored<>(value, version);
+      // Derived flags take their own update locks, always after their source's.
+      for (DerivedFlagField<T, ?> derived : derivedFlags) {
+        derived.sourceStored(value);
+      }
+      for (WeakReference<FlagFieldRegistry> reference : registries) {
+        FlagFieldRegistry owner = reference.get();
+        if (owner != null) {
+          owner.publishChange(this);
+        }
+      }
+      synchronized (this) {
+        pendingNotifications.add(value);
+      }
+    } finally {
+      updateLock.unlock();
+    }
+  }
+
+  /**
+   * Calls the listeners with the values stored by {@link #store}, oldest first, unless another
+   * thread already is.
+   *
+   * Listeners run without the flag's update lock, so that a slow listener doesn't hold up writers,
+   * and one that updates other flags can't deadlock with their writers. Values queued while another
+   * thread is calling the listeners are left to it, so listeners never run concurrently. Only
+   * listeners are handed off this way, the value is already in the registries' snapshots. A
+   * listener failure is rethrown once the queue is drained.
+   */
+  void drainNotifications() {
+    RuntimeException failure = null;
+    while (true) {
+      T next;
+      synchronized (this) {
+        if (notifying || pendingNotifications.isEmpty()) {
+          break;
+        }
+        notifying = true;
+        next = pendingNotifications.remove();
+      }
+      try {
+        notifyListeners(next);
+      } catch (RuntimeException exception) {
+        if (failure == null) {
+          failure = exception;
+        } else {
+          failure.addSuppressed(exception);
+        }
+      } finally {
+        synchronized (this) {
+          notifying = false;
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Calls the listeners, then those of the derived flags, and finally the change listeners of the
+   * owning registries.
+   */
+  void notifyListeners(T value) {
     for (Consumer<T> listener : listeners) {
       listener.accept(value);
     }
+    for (DerivedFlagField<T, ?> derived : derivedFlags) {
+      derived.drainNotifications();
+    }
+    for (WeakReference<FlagFieldRegistry> reference : registries) {
+      FlagFieldRegistry owner = reference.get();
+      if (owner != null) {
+        owner.notifyChange(this);
+      }
+    }
+  }
+
+  /**
+   * Adds a registry to publish changes to, dropping ones that were garbage collected.
+   *
+   * Called with the registry's monitor held, so the same registry isn't added twice.
+   */
+  void addRegistry(FlagFieldRegistry registry) {
+    registries.removeIf(reference -> reference.get() == null);
+    if (!ownedBy(registry)) {
+      registries.add(new WeakReference<>(registry));
+    }
+  }
+
+  /** Stops publishing changes to the registry, e.g. when the flag is unregistered from it. */
+  void removeRegistry(FlagFieldRegistry registry) {
+    registries.removeIf(reference -> {
+      FlagFieldRegistry owner = reference.get();
+      return owner == null || owner == registry;
+    });
+  }
+
+  private boolean ownedBy(FlagFieldRegistry registry) {
+    for (WeakReference<FlagFieldRegistry> reference : registries) {
+      if (reference.get() == registry) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** A stored value and the {@link #version} it was stored at. */
+  static final class Stored<T> {
+    final T value;
+    final long version;
+
+    Stored(T value, long version) {
+      this.value = value;
+      this.version = version;
+    }
   }
 }
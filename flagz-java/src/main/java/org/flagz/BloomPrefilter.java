@@ -0,0 +1,48 @@
+package org.flagz;
+
+/**
+ * A blocked Bloom filter over hashes, put in front of the lookup of large membership sets.
+ *
+ * Each hash sets three bits within a single 64-bit word, so a lookup reads one word, which at 16
+ * bits per element is a much smaller working set than the set itself. That makes rejecting an
+ * absent element, the common case for e.g. blocklists, cheap: less than one percent of them get
+ * past the filter, see {@link MembershipSet}.
+ */
+final class BloomPrefilter {
+
+  private static final int BITS_PER_ELEMENT = 16;
+  private static final int MAX_WORDS = 1 << 26;
+  private static final long INDEX_MULTIPLIER = 0x9E3779B97F4A7C15L;
+  private static final long BITS_MULTIPLIER = 0xC2B2AE3D27D4EB4FL;
+
+  private final long[] words;
+  private final int mask;
+
+  BloomPrefilter(int expectedSize) {
+    long bits = Math.max(64L, (long) expectedSize * BITS_PER_ELEMENT);
+    // The smallest power of two number of words holding the bits.
+    int wordCount = (int) Math.min(MAX_WORDS, Long.highestOneBit(bits - 1) >>> 5);
+    this.words = new long[wordCount];
+    this.mask = wordCount - 1;
+  }
+
+  void add(long hash) {
+    words[index(hash)] |= bits(hash);
+  }
+
+  /** Returns false if no hash equal to this one was added, true if one probably was. */
+  boolean mightContain(long hash) {
+    long bits = bits(hash);
+    return (words[index(hash)] & bits) == bits;
+  }
+
+  private int index(long hash) {
+    return (int) ((hash * INDEX_MULTIPLIER) >>> 38) & mask;
+  }
+
+  private static long bits(long hash) {
+    long mixed = hash * BITS_MULTIPLIER;
+    // Long shifts only use the lowest six bits of their distance, i.e. a bit of the word.
+    return (1L << (mixed >>> 58)) | (1L << (mixed >>> 52)) | (1L << (mixed >>> 46));
+  }
+}
@@ -0,0 +1,24 @@
+package org.flagz;
+
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A {@link Flag} holding a `boolean` that can be read without boxing.
+ *
+ * The value is kept in a primitive volatile field, making {@link #getAsBoolean()} allocation-free.
+ * Use it instead of {@link #get()} on hot paths.
+ */
+public interface BooleanFlag extends Flag<Boolean>, BooleanSupplier {
+
+  /** Returns the value of this flag as a primitive `boolean`. */
+  @Override
+  boolean getAsBoolean();
+
+  @Override
+  BooleanFlag withValidator(Predicate<Boolean> predicate);
+
+  @Override
+  BooleanFlag withListener(Consumer<Boolean> predicate);
+}
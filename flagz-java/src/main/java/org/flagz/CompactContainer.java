@@ -0,0 +1,13 @@
+package org.flagz;
+
+/**
+ * A compact list, set or map that is filled while a flag value is parsed, and then frozen.
+ *
+ * Once frozen, e.g. by {@link ContainerFlagField#completed}, it's immutable, so the instance can be
+ * shared by all readers of the flag. Until then it's only visible to the parsing thread.
+ */
+interface CompactContainer {
+
+  /** Trims the storage to the current size, and rejects all further modifications. */
+  void freeze();
+}
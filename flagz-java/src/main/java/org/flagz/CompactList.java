@@ -0,0 +1,66 @@
+package org.flagz;
+
+import com.google.common.base.Preconditions;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * An immutable list backed by a single array of the exact size, for list flag values.
+ *
+ * Elements are added while the value is parsed, then the list is frozen, see
+ * {@link CompactContainer}. Null elements aren't allowed.
+ */
+final class CompactList<E> extends AbstractList<E> implements RandomAccess, CompactContainer {
+
+  private static final Object[] EMPTY = {};
+
+  private Object[] elements = EMPTY;
+  private int size = 0;
+  private boolean frozen = false;
+
+  /** Returns a frozen copy of the elements. */
+  static <E> CompactList<E> copyOf(Collection<? extends E> elements) {
+    CompactList<E> list = new CompactList<>();
+    list.elements = elements.toArray();
+    list.size = list.elements.length;
+    for (Object element : list.elements) {
+      Preconditions.checkNotNull(element, "List flag values can't hold null.");
+    }
+    list.frozen = true;
+    return list;
+  }
+
+  @Override
+  public boolean add(E element) {
+    CompactSet.checkNotFrozen(frozen);
+    Preconditions.checkNotNull(element, "List flag values can't hold null.");
+    if (size == elements.length) {
+      elements = Arrays.copyOf(elements, CompactSet.grownCapacity(size));
+    }
+    elements[size++] = element;
+    return true;
+  }
+
+  @Override
+  public void freeze() {
+    if (elements.length != size) {
+      elements = Arrays.copyOf(elements, size);
+    }
+    frozen = true;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E get(int index) {
+    Preconditions.checkElementIndex(index, size);
+    return (E) elements[index];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+}
@@ -0,0 +1,122 @@
+package org.flagz;
+
+import com.google.common.base.Preconditions;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable hash map with open addressing, for map flag values.
+ *
+ * Keys and values are kept in insertion order in two arrays, keys found like in
+ * {@link CompactSet}. Entries are only created when iterating over {@link #entrySet}. Entries are
+ * put while the value is parsed, a later one replacing the value of an earlier one with the same
+ * key, then the map is frozen, see {@link CompactContainer}. Null keys and values aren't allowed.
+ */
+final class CompactMap<K, V> extends AbstractMap<K, V> implements CompactContainer {
+
+  private static final Object[] EMPTY = {};
+  private static final int[] NO_TABLE = {};
+
+  private Object[] keys = EMPTY;
+  private Object[] values = EMPTY;
+  private int[] table = NO_TABLE;
+  private int size = 0;
+  private boolean frozen = false;
+
+  /** Returns a frozen copy of the map. */
+  static <K, V> CompactMap<K, V> copyOf(Map<? extends K, ? extends V> map) {
+    CompactMap<K, V> copy = new CompactMap<>();
+    map.forEach(copy::put);
+    copy.freeze();
+    return copy;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public V put(K key, V value) {
+    CompactSet.checkNotFrozen(frozen);
+    Preconditions.checkNotNull(key, "Map flag values can't hold null keys.");
+    Preconditions.checkNotNull(value, "Map flag values can't hold null values.");
+    int index = CompactSet.find(keys, table, key);
+    if (index >= 0) {
+      V previous = (V) values[index];
+      values[index] = value;
+      return previous;
+    }
+    if (size == keys.length) {
+      keys = Arrays.copyOf(keys, CompactSet.grownCapacity(size));
+      values = Arrays.copyOf(values, keys.length);
+    }
+    keys[size] = key;
+    values[size] = value;
+    size++;
+    table = CompactSet.indexed(table, keys, size);
+    return null;
+  }
+
+  @Override
+  public void freeze() {
+    if (keys.length != size) {
+      keys = Arrays.copyOf(keys, size);
+      values = Arrays.copyOf(values, size);
+    }
+    frozen = true;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public V get(Object key) {
+    int index = CompactSet.find(keys, table, key);
+    return index < 0 ? null : (V) values[index];
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return CompactSet.find(keys, table, key) >= 0;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public Set<Entry<K, V>> entrySet() {
+    return new AbstractSet<Entry<K, V>>() {
+      @Override
+      public Iterator<Entry<K, V>> iterator() {
+        return new Iterator<Entry<K, V>>() {
+          private int index = 0;
+
+          @Override
+          public boolean hasNext() {
+            return index < size;
+          }
+
+          @Override
+          @SuppressWarnings("unchecked")
+          public Entry<K, V> next() {
+            if (index >= size) {
+              throw new NoSuchElementException();
+            }
+            Entry<K, V> entry =
+                new SimpleImmutableEntry<>((K) keys[index], (V) values[index]);
+            index++;
+            return entry;
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+}
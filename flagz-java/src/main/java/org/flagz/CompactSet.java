@@ -0,0 +1,146 @@
+package org.flagz;
+
+import com.google.common.base.Preconditions;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable hash set with open addressing, for set flag values.
+ *
+ * Elements are kept in insertion order in one array, and found through a table of their indexes,
+ * probed linearly and at most half full. That's two references per element rather than a
+ * `HashMap` node each. Elements are added while the value is parsed, then the set is frozen, see
+ * {@link CompactContainer}. Null elements aren't allowed.
+ */
+final class CompactSet<E> extends AbstractSet<E> implements CompactContainer {
+
+  private static final Object[] EMPTY = {};
+  private static final int[] NO_TABLE = {};
+
+  private Object[] elements = EMPTY;
+  // Index of the element plus one in each slot, zero for free slots.
+  private int[] table = NO_TABLE;
+  private int size = 0;
+  private boolean frozen = false;
+
+  /** Returns a frozen copy of the elements, without duplicates. */
+  static <E> CompactSet<E> copyOf(Collection<? extends E> elements) {
+    CompactSet<E> set = new CompactSet<>();
+    elements.forEach(set::add);
+    set.freeze();
+    return set;
+  }
+
+  @Override
+  public boolean add(E element) {
+    checkNotFrozen(frozen);
+    Preconditions.checkNotNull(element, "Set flag values can't hold null.");
+    if (find(elements, table, element) >= 0) {
+      return false;
+    }
+    if (size == elements.length) {
+      elements = Arrays.copyOf(elements, grownCapacity(size));
+    }
+    elements[size++] = element;
+    table = indexed(table, elements, size);
+    return true;
+  }
+
+  @Override
+  public void freeze() {
+    if (elements.length != size) {
+      elements = Arrays.copyOf(elements, size);
+    }
+    frozen = true;
+  }
+
+  @Override
+  public boolean contains(Object element) {
+    return find(elements, table, element) >= 0;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    return new Iterator<E>() {
+      private int index = 0;
+
+      @Override
+      public boolean hasNext() {
+        return index < size;
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public E next() {
+        if (index >= size) {
+          throw new NoSuchElementException();
+        }
+        return (E) elements[index++];
+      }
+    };
+  }
+
+  /** Returns the index of the key in the keys, or -1 if it isn't there. */
+  static int find(Object[] keys, int[] table, Object key) {
+    if (key == null || table.length == 0) {
+      return -1;
+    }
+    int mask = table.length - 1;
+    for (int slot = spread(key.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+      int entry = table[slot];
+      if (entry == 0) {
+        return -1;
+      } else if (key.equals(keys[entry - 1])) {
+        return entry - 1;
+      }
+    }
+  }
+
+  /**
+   * Returns the table indexing the first `size` keys, given that the last one was just appended.
+   * The table is rebuilt, doubling it, when it would become more than half full.
+   */
+  static int[] indexed(int[] table, Object[] keys, int size) {
+    if (size * 2 <= table.length) {
+      insert(table, keys, size - 1);
+      return table;
+    }
+    int[] grown = new int[Integer.highestOneBit(size * 2 - 1) << 1];
+    for (int index = 0; index < size; index++) {
+      insert(grown, keys, index);
+    }
+    return grown;
+  }
+
+  static int grownCapacity(int size) {
+    return Math.max(4, size + (size >> 1));
+  }
+
+  static void checkNotFrozen(boolean frozen) {
+    if (frozen) {
+      throw new UnsupportedOperationException("Flag values are immutable.");
+    }
+  }
+
+  private static void insert(int[] table, Object[] keys, int index) {
+    int mask = table.length - 1;
+    int slot = spread(keys[index].hashCode()) & mask;
+    while (table[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    table[slot] = index + 1;
+  }
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+}
@@ -0,0 +1,58 @@
+package org.flagz;
+
+import java.lang.invoke.MethodHandle;
+
+/**
+ * Access to {@link Flag} values that the JIT compiles as constants.
+ *
+ * Every read through {@link Flag#get} is a volatile load. For flags that almost never change, such
+ * as kill switches, that cost can be avoided by reading through a {@link MethodHandle} backed by
+ * a {@link java.lang.invoke.MutableCallSite}. The JIT inlines the current value as a constant, and
+ * code depending on it is deoptimized only when the flag actually changes. Changes are expensive,
+ * so don't use this for flags that are updated often.
+ *
+ * For the value to be folded, the handle must be kept in a `static final` field:
+ *
+ * ```
+ * {@literal @}FlagInfo(name = "kill_switch", help = "Disables the new code path.")
+ * private static final BooleanFlag killSwitch = Flagz.valueOf(false);
+ * private static final MethodHandle KILL_SWITCH = ConstantFlagAccess.getter(killSwitch);
+ *
+ * if ((boolean) KILL_SWITCH.invokeExact()) { ... }
+ * ```
+ *
+ * Reads through the handle see every change, but bypass {@link FlagScope} pins and the read
+ * counting of {@link FlagzUnused} flags.
+ */
+public final class ConstantFlagAccess {
+
+  private ConstantFlagAccess() {
+  }
+
+  /**
+   * Returns a handle that takes no arguments and returns the flag's current value.
+   *
+   * The handle returns an `int`, `long`, `double` or `boolean` for {@link IntFlag},
+   * {@link LongFlag}, {@link DoubleFlag} and {@link BooleanFlag} respectively, and an
+   * {@link Object} for all other flags. Repeated calls for the same flag share one call site.
+   */
+  public static MethodHandle getter(Flag<?> flag) {
+    if (!(flag instanceof BaseFlag)) {
+      throw new IllegalArgumentException("Constant access is only supported for Flagz flags.");
+    }
+    return ((BaseFlag<?>) flag).constantSite(constantType(flag)).dynamicInvoker();
+  }
+
+  private static Class<?> constantType(Flag<?> flag) {
+    if (flag instanceof IntFlag) {
+      return int.class;
+    } else if (flag instanceof LongFlag) {
+      return long.class;
+    } else if (flag instanceof DoubleFlag) {
+      return double.class;
+    } else if (flag instanceof BooleanFlag) {
+      return boolean.class;
+    }
+    return Object.class;
+  }
+}
@@ -1,7 +1,6 @@
 package org.flagz;
 
-
-import com.google.common.base.Strings;
+import com.google.common.base.Preconditions;
 import com.google.common.primitives.Primitives;
 
 import java.lang.reflect.Field;
@@ -22,28 +21,122 @@ import java.util.stream.Collectors;
  * - {@link MapFlagField} - allows building Flagz for {@link Map} types, where both keys and
  * values are primitives that are comma-separated entries with a colon dividing key and
  * value, e.g. `--my_map=foo:123,bar:456`.
+ *
+ * Containers of other containers or of objects, e.g. `Map<String, List<Integer>>`, take JSON
+ * values instead, e.g. `--my_map={"foo":[1,2],"bar":[]}`, see {@link StructuredValues}.
+ *
+ * Values built by {@link Flagz#valueOf} are compact and immutable, see {@link CompactList},
+ * {@link CompactSet} and {@link CompactMap}, so a value can be shared by all readers as is.
+ *
+ * Separators within items are escaped with a backslash, or quoted, e.g.
+ * `--my_map=a\:b:1,"c,d":2`, see {@link ContainerTokenizer}. Other separators can be chosen with
+ * {@link FlagSeparators}.
+ *
+ * Values read from files, e.g. `--my_set=@/etc/my_set.txt`, are tokenized in place, with line
+ * breaks separating items too, see {@link FlagFile}.
  */
 abstract class ContainerFlagField<T> extends FlagField<T> {
 
   private final Supplier<T> constructor;
+  private char itemSeparator = ',';
+  private char keyValueSeparator = ':';
+  private boolean structured = false;
 
   public ContainerFlagField(T defaultValue, Supplier<T> constructor) {
     super(defaultValue);
     this.constructor = constructor;
   }
 
-  protected abstract T addItem(T existing, String value) throws FlagException;
+  /** Adds the current item of the tokens, see {@link ContainerTokenizer#value}. */
+  protected abstract T addItem(T existing, ContainerTokenizer tokens) throws FlagException;
+
+  /** Whether items are split into a key and a value, see {@link ContainerTokenizer#key}. */
+  protected boolean hasKeys() {
+    return false;
+  }
+
+  /**
+   * Returns the container built by {@link #addItem}, e.g. reversed for prepended lists. By default
+   * freezes {@link CompactContainer}s, before they're published.
+   */
+  protected T completed(T built) {
+    if (built instanceof CompactContainer) {
+      ((CompactContainer) built).freeze();
+    }
+    return built;
+  }
 
   @Override
   protected void parseString(String value) throws FlagException {
+    parse(value, false);
+  }
+
+  @Override
+  protected void parseFile(CharSequence content) throws FlagException {
+    parse(content, true);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void parse(CharSequence value, boolean lines) throws FlagException {
+    if (structured) {
+      T parsed;
+      try {
+        parsed = (T) StructuredValues.read(value, fieldType(), this);
+      } catch (IllegalArgumentException exception) {
+        throw new FlagException.IllegalFormat(this, FlagFile.head(value), exception);
+      }
+      accept(parsed);
+      return;
+    }
     T newValue = constructor.get();
-    String stripped = value.replaceAll("^\"|\"$", "");
-    for (String token : stripped.split(",")) {
-      if (!Strings.isNullOrEmpty(token)) {
-        newValue = addItem(newValue, token);
+    ContainerTokenizer tokens = new ContainerTokenizer(value, itemSeparator,
+        hasKeys() ? keyValueSeparator : ContainerTokenizer.NO_SEPARATOR, lines);
+    try {
+      while (tokens.next()) {
+        newValue = addItem(newValue, tokens);
       }
+    } catch (IllegalArgumentException exception) {
+      throw new FlagException.IllegalFormat(this, FlagFile.head(value), exception);
     }
-    accept(newValue);
+    accept(completed(newValue));
+  }
+
+  @Override
+  protected void bind(Field containingField) {
+    super.bind(containingField);
+    structured = StructuredValues.isStructuredContainer(fieldType());
+    FlagSeparators separators = containingField.getAnnotation(FlagSeparators.class);
+    if (separators != null) {
+      String reserved = "\\\"";
+      Preconditions.checkArgument(
+          separators.items() != separators.keyValue()
+              && reserved.indexOf(separators.items()) < 0
+              && reserved.indexOf(separators.keyValue()) < 0,
+          "@FlagSeparators must differ, and can't be backslashes or quotes.");
+      itemSeparator = separators.items();
+      keyValueSeparator = separators.keyValue();
+    }
+  }
+
+  /** Whether the values are nested containers or objects, read and written as JSON. */
+  protected boolean structured() {
+    return structured;
+  }
+
+  /** Returns the separator of items, for joining them in {@link #valueString}. */
+  protected String itemSeparator() {
+    return String.valueOf(itemSeparator);
+  }
+
+  /** Returns the string of an item, escaped so that {@link #parseString} reads it back. */
+  protected String itemString(Object item) {
+    return ContainerTokenizer.escape(item.toString(), itemSeparator,
+        hasKeys() ? keyValueSeparator : ContainerTokenizer.NO_SEPARATOR);
+  }
+
+  /** Returns the string of a map entry, escaped so that {@link #parseString} reads it back. */
+  protected String entryString(Object key, Object value) {
+    return itemString(key) + keyValueSeparator + itemString(value);
   }
 
   @SuppressWarnings("unchecked")
@@ -76,8 +169,8 @@ abstract class ContainerFlagField<T> extends FlagField<T> {
     }
 
     @Override
-    protected T addItem(T existing, String value) throws FlagException {
-      E item = itemFromString(value, elementClazz, this);
+    protected T addItem(T existing, ContainerTokenizer tokens) throws FlagException {
+      E item = itemFromString(tokens.value(), elementClazz, this);
       existing.add(item);
       return existing;
     }
@@ -86,6 +179,9 @@ abstract class ContainerFlagField<T> extends FlagField<T> {
     @SuppressWarnings("unchecked")
     protected void bind(Field containingField) {
       super.bind(containingField);
+      if (structured()) {
+        return;
+      }
       try {
         elementClazz = (Class<E>) ((ParameterizedType) fieldType()).getActualTypeArguments()[0];
       } catch (ClassCastException exception) {
@@ -95,9 +191,12 @@ abstract class ContainerFlagField<T> extends FlagField<T> {
 
     @Override
     public String valueString(T value) {
+      if (structured()) {
+        return StructuredValues.write(value);
+      }
       return value.stream()
-          .map(Object::toString)
-          .collect(Collectors.joining(","));
+          .map(this::itemString)
+          .collect(Collectors.joining(itemSeparator()));
     }
   }
 
@@ -114,13 +213,14 @@ abstract class ContainerFlagField<T> extends FlagField<T> {
     }
 
     @Override
-    protected T addItem(T existing, String itemString) throws FlagException {
-      String[] components = itemString.split(":");
-      if (components.length != 2) {
-        throw new FlagException.IllegalFormat(this, itemString, null);
-      }
-      K key = itemFromString(components[0], keyClazz, this);
-      V value = itemFromString(components[1], valueClazz, this);
+    protected boolean hasKeys() {
+      return true;
+    }
+
+    @Override
+    protected T addItem(T existing, ContainerTokenizer tokens) throws FlagException {
+      K key = itemFromString(tokens.key(), keyClazz, this);
+      V value = itemFromString(tokens.value(), valueClazz, this);
       existing.put(key, value);
       return existing;
     }
@@ -129,6 +229,9 @@ abstract class ContainerFlagField<T> extends FlagField<T> {
     @SuppressWarnings("unchecked")
     protected void bind(Field containingField) {
       super.bind(containingField);
+      if (structured()) {
+        return;
+      }
       try {
         keyClazz = (Class<K>) ((ParameterizedType) fieldType()).getActualTypeArguments()[0];
         valueClazz = (Class<V>) ((ParameterizedType) fieldType()).getActualTypeArguments()[1];
@@ -139,9 +242,12 @@ abstract class ContainerFlagField<T> extends FlagField<T> {
 
     @Override
     public String valueString(T value) {
+      if (structured()) {
+        return StructuredValues.write(value);
+      }
       return value.entrySet().stream()
-          .map(e -> e.getKey().toString() + ":" + e.getValue().toString())
-          .collect(Collectors.joining(","));
+          .map(e -> entryString(e.getKey(), e.getValue()))
+          .collect(Collectors.joining(itemSeparator()));
     }
   }
 }
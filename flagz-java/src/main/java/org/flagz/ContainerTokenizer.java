@@ -0,0 +1,218 @@
+package org.flagz;
+
+/**
+ * Splits the string value of a container flag into items, and the items of maps into a key and a
+ * value, in a single pass and without regular expressions.
+ *
+ * A separator is taken literally when escaped with a backslash, or within double quotes starting
+ * an item, key or value, e.g. `a\,b,"c,d"` holds the items `a,b` and `c,d`. A backslash escapes
+ * only separators, quotes and backslashes, elsewhere it's a plain character, so that e.g. `\d+`
+ * needs no escaping. A value quoted as a whole, `"a,b"`, is unquoted before splitting. Empty items
+ * are skipped, unless quoted. The content of a file, see {@link FlagFile}, is also split at line
+ * breaks.
+ *
+ * ```
+ * ContainerTokenizer tokens = new ContainerTokenizer(value, ',', ':');
+ * while (tokens.next()) {
+ *   map.put(tokens.key(), tokens.value());
+ * }
+ * ```
+ *
+ * Errors are reported as {@link IllegalArgumentException}.
+ */
+final class ContainerTokenizer {
+
+  /** Separator that never matches, for items that aren't split into a key and a value. */
+  static final char NO_SEPARATOR = 0;
+
+  private static final char ESCAPE = '\\';
+  private static final char QUOTE = '"';
+
+  private final CharSequence input;
+  private final char itemSeparator;
+  private final char keyValueSeparator;
+  private final boolean lines;
+  private final int end;
+  private int position;
+
+  // Only used for components with escapes or quotes, the others are substrings of the input.
+  private final StringBuilder builder = new StringBuilder();
+  private boolean plain;
+  private int componentStart;
+
+  private String key;
+  private String value;
+
+  ContainerTokenizer(String input, char itemSeparator, char keyValueSeparator) {
+    this(input, itemSeparator, keyValueSeparator, false);
+  }
+
+  /** Reads the input in a single pass, also splitting items at line breaks if `lines` is set. */
+  ContainerTokenizer(CharSequence input, char itemSeparator, char keyValueSeparator,
+      boolean lines) {
+    this.input = input;
+    this.itemSeparator = itemSeparator;
+    this.keyValueSeparator = keyValueSeparator;
+    this.lines = lines;
+    int length = input.length();
+    if (length >= 2 && input.charAt(0) == QUOTE && input.charAt(length - 1) == QUOTE
+        && indexOf(QUOTE, 1, length) == length - 1) {
+      this.position = 1;
+      this.end = length - 1;
+    } else {
+      this.position = 0;
+      this.end = length;
+    }
+  }
+
+  /** Advances to the next non-empty item. Returns false once all items were read. */
+  boolean next() {
+    while (position < end) {
+      if (readItem()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Returns the current item, or the value of the current map entry. */
+  String value() {
+    return value;
+  }
+
+  /** Returns the key of the current map entry. */
+  String key() {
+    if (key == null) {
+      throw new IllegalArgumentException(String.format(
+          "Item '%.30s' has no '%s' separating key and value", value, keyValueSeparator));
+    }
+    return key;
+  }
+
+  /** Reads the item at the position, moving past its separator. Returns false if it's empty. */
+  private boolean readItem() {
+    key = null;
+    startComponent(position);
+    boolean empty = true;
+    int index = position;
+    while (index < end) {
+      char current = input.charAt(index);
+      if (current == itemSeparator || (lines && (current == '\n' || current == '\r'))) {
+        break;
+      } else if (current == keyValueSeparator && keyValueSeparator != NO_SEPARATOR) {
+        if (key != null) {
+          throw new IllegalArgumentException(String.format(
+              "Item '%.30s' has more than one '%s'", itemAt(position), keyValueSeparator));
+        }
+        key = endComponent(index);
+        startComponent(index + 1);
+        empty = false;
+        index++;
+      } else if (current == ESCAPE && index + 1 < end && isSpecial(input.charAt(index + 1))) {
+        toBuilder(index);
+        builder.append(input.charAt(index + 1));
+        empty = false;
+        index += 2;
+      } else if (current == QUOTE && index == componentStart) {
+        toBuilder(index);
+        index = readQuoted(index + 1);
+        empty = false;
+      } else {
+        if (!plain) {
+          builder.append(current);
+        }
+        empty = false;
+        index++;
+      }
+    }
+    value = endComponent(index);
+    position = index + 1;
+    return !empty;
+  }
+
+  /** Appends the quoted text starting at the index, returns the index after the closing quote. */
+  private int readQuoted(int index) {
+    while (index < end) {
+      char current = input.charAt(index);
+      if (current == QUOTE) {
+        return index + 1;
+      } else if (current == ESCAPE && index + 1 < end && isSpecial(input.charAt(index + 1))) {
+        builder.append(input.charAt(index + 1));
+        index += 2;
+      } else {
+        builder.append(current);
+        index++;
+      }
+    }
+    throw new IllegalArgumentException(
+        String.format("Item '%.30s' has an unterminated quote", itemAt(position)));
+  }
+
+  private void startComponent(int start) {
+    componentStart = start;
+    plain = true;
+    builder.setLength(0);
+  }
+
+  /** Switches the current component to the builder, copying the characters read so far. */
+  private void toBuilder(int index) {
+    if (plain) {
+      builder.append(input, componentStart, index);
+      plain = false;
+    }
+  }
+
+  private String endComponent(int index) {
+    return plain ? input.subSequence(componentStart, index).toString() : builder.toString();
+  }
+
+  private String itemAt(int start) {
+    int separator = indexOf(itemSeparator, start, end);
+    return input.subSequence(start, separator < 0 ? end : separator).toString();
+  }
+
+  private int indexOf(char character, int from, int to) {
+    for (int index = from; index < to; index++) {
+      if (input.charAt(index) == character) {
+        return index;
+      }
+    }
+    return -1;
+  }
+
+  private boolean isSpecial(char character) {
+    return isSpecial(character, itemSeparator, keyValueSeparator);
+  }
+
+  /**
+   * Returns the string of an item, key or value that the tokenizer reads back as is, escaping the
+   * separators, quotes and backslashes in it. Empty strings are quoted.
+   */
+  static String escape(String string, char itemSeparator, char keyValueSeparator) {
+    if (string.isEmpty()) {
+      return "\"\"";
+    }
+    int index = 0;
+    int length = string.length();
+    while (index < length && !isSpecial(string.charAt(index), itemSeparator, keyValueSeparator)) {
+      index++;
+    }
+    if (index == length) {
+      return string;
+    }
+    StringBuilder escaped = new StringBuilder(length + 8).append(string, 0, index);
+    for (; index < length; index++) {
+      char current = string.charAt(index);
+      if (isSpecial(current, itemSeparator, keyValueSeparator)) {
+        escaped.append(ESCAPE);
+      }
+      escaped.append(current);
+    }
+    return escaped.toString();
+  }
+
+  private static boolean isSpecial(char character, char itemSeparator, char keyValueSeparator) {
+    return character == ESCAPE || character == QUOTE || character == itemSeparator
+        || (character == keyValueSeparator && keyValueSeparator != NO_SEPARATOR);
+  }
+}
@@ -0,0 +1,69 @@
+package org.flagz;
+
+import java.util.function.Function;
+
+/**
+ * A read-only {@link Flag} computed from another flag, created through {@link Flag#map}.
+ *
+ * The mapping runs as a validator of the source flag, along with the validators of this flag, and
+ * so the mappings of flags derived from this one. Values rejected anywhere down the chain never
+ * reach the source, and the results are then stored along with the source's value, under its update
+ * lock, see {@link BaseFlag#store}. Reads just return the stored result.
+ * It can be annotated with {@link FlagInfo} to show up in help output, but can't be set from the
+ * command line or dynamically.
+ */
+class DerivedFlagField<S, T> extends FlagField<T> {
+
+  private final BaseFlag<S> source;
+  private final Function<? super S, ? extends T> mapper;
+  // Result of mapping the last value seen by the validator, reused when the value is stored so that
+  // the mapper runs once per change.
+  private volatile Mapping<S, T> lastMapping;
+
+  DerivedFlagField(BaseFlag<S> source, Function<? super S, ? extends T> mapper) {
+    super(mapper.apply(source.defaultValue()));
+    this.source = source;
+    this.mapper = mapper;
+    if (source.currentValue() != source.defaultValue()) {
+      setValue(mapper.apply(source.currentValue()));
+    }
+    source.withValidator(value -> {
+      T output = mapper.apply(value);
+      checkValidators(output);
+      lastMapping = new Mapping<>(value, output);
+      return true;
+    });
+  }
+
+  @Override
+  public void accept(T value) {
+    throw new FlagException.ReadOnly(this);
+  }
+
+  @Override
+  protected void parseString(String value) throws FlagException {
+    throw new FlagException.ReadOnly(this);
+  }
+
+  /**
+   * Stores the mapping of a value the source just stored, queueing it for the listeners.
+   *
+   * Called by the source with its update lock held, so that racing updates of the source store
+   * their results in the same order. The listeners are called by the source's
+   * {@link #drainNotifications}.
+   */
+  void sourceStored(S input) {
+    Mapping<S, T> mapping = lastMapping;
+    store(mapping != null && mapping.input == input ? mapping.output : mapper.apply(input));
+  }
+
+  private static class Mapping<S, T> {
+    private final S input;
+    private final T output;
+
+    Mapping(S input, T output) {
+      this.input = input;
+      this.output = output;
+    }
+  }
+}
@@ -0,0 +1,24 @@
+package org.flagz;
+
+import java.util.function.Consumer;
+import java.util.function.DoubleSupplier;
+import java.util.function.Predicate;
+
+/**
+ * A {@link Flag} holding a `double` that can be read without boxing.
+ *
+ * The value is kept in a primitive volatile field, making {@link #getAsDouble()} allocation-free.
+ * Use it instead of {@link #get()} on hot paths.
+ */
+public interface DoubleFlag extends Flag<Double>, DoubleSupplier {
+
+  /** Returns the value of this flag as a primitive `double`. */
+  @Override
+  double getAsDouble();
+
+  @Override
+  DoubleFlag withValidator(Predicate<Double> predicate);
+
+  @Override
+  DoubleFlag withListener(Consumer<Double> predicate);
+}
@@ -2,6 +2,7 @@ package org.flagz;
 
 import javax.annotation.Nullable;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
@@ -30,6 +31,16 @@ public interface Flag<T> extends Supplier<T>, Consumer<T> {
   /** Sets the value of this flag. */
   void accept(T flagValue);
 
+  /**
+   * Returns the number of times the value of this flag has changed.
+   *
+   * It starts at zero and is incremented after every successful {@link #accept}, once the new
+   * value is readable. Caching state computed from the flag together with its version allows
+   * checking whether it's stale with a single comparison, without registering a listener. The
+   * version always tracks the live value, regardless of any {@link FlagScope}.
+   */
+  long version();
+
   /**
    * Returns the user-visible flag name.
    */
@@ -56,4 +67,13 @@ public interface Flag<T> extends Supplier<T>, Consumer<T> {
    * listener will be called.
    */
   Flag<T> withListener(Consumer<T> predicate);
+
+  /**
+   * Returns a read-only flag whose value is computed from this one.
+   *
+   * The mapper runs only when this flag changes, and reads of the returned flag return the cached
+   * result. This is the place to turn a string into e.g. a compiled {@link java.util.regex.Pattern}
+   * once, instead of at every use site. Derived flags can be mapped further.
+   */
+  <R> Flag<R> map(Function<? super T, ? extends R> mapper);
 }
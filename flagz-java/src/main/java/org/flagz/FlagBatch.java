@@ -0,0 +1,144 @@
+package org.flagz;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A set of flag values that are parsed and validated together, and then applied as one change.
+ *
+ * Values are staged by running the flags' own {@link FlagField#parseValue}, during which
+ * {@link BaseFlag#accept} validates the value and hands it to the batch instead of applying it.
+ * This keeps batches working for any {@link FlagField} subclass.
+ */
+class FlagBatch {
+
+  private static final ThreadLocal<FlagBatch> STAGING = new ThreadLocal<>();
+
+  private final Map<BaseFlag<?>, Object> values = new LinkedHashMap<>();
+  private final Map<BaseFlag<?>, Runnable> onStored = new LinkedHashMap<>();
+
+  /** Parses and validates the value, keeping it in this batch instead of setting the flag. */
+  void stage(FlagField<?> field, String value) throws FlagException {
+    stage(field, () -> field.parseValue(value));
+  }
+
+  /** Parses and validates the content of a file, see {@link FlagField#parseFile}. */
+  void stageFile(FlagField<?> field, CharSequence content) throws FlagException {
+    stage(field, () -> field.parseFile(content));
+  }
+
+  private void stage(FlagField<?> field, Runnable parse) {
+    FlagBatch outer = STAGING.get();
+    STAGING.set(this);
+    try {
+      parse.run();
+    } finally {
+      STAGING.set(outer);
+    }
+    Preconditions.checkState(
+        values.containsKey(field), "Flag(%s) didn't accept its parsed value.", field.name());
+  }
+
+  /** Returns whether a batch is being staged on the calling thread. */
+  static boolean isStaging() {
+    return STAGING.get() != null;
+  }
+
+  /**
+   * Keeps a validated value in the batch being staged on the calling thread, if there is one.
+   *
+   * @return whether the value was staged, and so must not be applied.
+   */
+  static boolean stageIfStaging(BaseFlag<?> flag, Object value) {
+    FlagBatch batch = STAGING.get();
+    if (batch == null) {
+      return false;
+    }
+    batch.values.put(flag, value);
+    return true;
+  }
+
+  /**
+   * Runs the action when the value of the flag staged on the calling thread is stored, with the
+   * update lock of the flag still held. It's dropped if the batch is never applied.
+   */
+  static void whenStored(BaseFlag<?> flag, Runnable action) {
+    FlagBatch batch = STAGING.get();
+    Preconditions.checkState(batch != null, "Flag(%s) isn't being staged.", flag.name());
+    batch.onStored.put(flag, action);
+  }
+
+  /** Returns the value staged for the flag, or null if there is none. */
+  Object stagedValue(BaseFlag<?> flag) {
+    return values.get(flag);
+  }
+
+  boolean isEmpty() {
+    return values.isEmpty();
+  }
+
+  Set<BaseFlag<?>> flags() {
+    return values.keySet();
+  }
+
+  /**
+   * Applies all staged values, then notifies the flags' listeners.
+   *
+   * Every value is stored before any listener runs, so listeners observe the whole batch. The
+   * update locks of all flags are held while storing, taken in name order so that racing batches
+   * can't deadlock, and listeners run once they are released, see
+   * {@link BaseFlag#drainNotifications}. The actions of {@link #whenStored} run after storing,
+   * before the locks are released.
+   */
+  void apply() {
+    applyIf(() -> true);
+  }
+
+  /**
+   * Applies the batch like {@link #apply}, if the condition still holds once the update locks of
+   * all its flags are taken. Lets a writer drop values that racing stores made stale.
+   *
+   * @return whether the batch was applied.
+   */
+  boolean applyIf(BooleanSupplier condition) {
+    List<BaseFlag<?>> flags = new ArrayList<>(values.keySet());
+    flags.sort(Comparator.comparing(BaseFlag::name));
+    for (BaseFlag<?> flag : flags) {
+      flag.updateLock.lock();
+    }
+    try {
+      if (!condition.getAsBoolean()) {
+        return false;
+      }
+      for (BaseFlag<?> flag : flags) {
+        store(flag, values.get(flag));
+      }
+      for (BaseFlag<?> flag : flags) {
+        Runnable action = onStored.get(flag);
+        if (action != null) {
+          action.run();
+        }
+      }
+    } finally {
+      for (BaseFlag<?> flag : flags) {
+        flag.updateLock.unlock();
+      }
+    }
+    for (BaseFlag<?> flag : flags) {
+      flag.drainNotifications();
+    }
+    return true;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> void store(BaseFlag<T> flag, Object value) {
+    flag.store((T) value);
+  }
+}
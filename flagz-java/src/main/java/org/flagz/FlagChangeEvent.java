@@ -0,0 +1,79 @@
+package org.flagz;
+
+import com.google.common.base.MoreObjects;
+
+import javax.annotation.Nullable;
+
+/**
+ * A change of a flag's value, delivered to {@link FlagChangeSubscription} subscribers.
+ *
+ * When a subscriber falls behind, consecutive changes of one flag are coalesced into a single
+ * event holding the oldest {@link #oldValue} and the newest {@link #newValue}, so the difference
+ * in {@link #version} tells how many changes were folded in. The new value and the version always
+ * belong to the same change.
+ */
+public final class FlagChangeEvent {
+
+  private final BaseFlag<?> flag;
+  private final String name;
+  private final Object oldValue;
+  private final Object newValue;
+  private final long version;
+
+  FlagChangeEvent(BaseFlag<?> flag, @Nullable Object oldValue, Object newValue, long version) {
+    this.flag = flag;
+    this.name = flag.name;
+    this.oldValue = oldValue;
+    this.newValue = newValue;
+    this.version = version;
+  }
+
+  /** Returns the name of the flag that changed. */
+  public String name() {
+    return name;
+  }
+
+  /** Returns the value before the change, or null if the flag was only just registered. */
+  @Nullable
+  public Object oldValue() {
+    return oldValue;
+  }
+
+  /** Returns the value after the change. */
+  public Object newValue() {
+    return newValue;
+  }
+
+  /** Returns the {@link Flag#version} of the flag after the change. */
+  public long version() {
+    return version;
+  }
+
+  BaseFlag<?> flag() {
+    return flag;
+  }
+
+  /**
+   * Returns a single event spanning this change and another one of the same name.
+   *
+   * Events of racing writers can arrive out of order, so the one with the higher version is taken
+   * as the later one. Events of a different flag with the same name, e.g. one registered again
+   * from a reloaded class, are taken in the order they arrived.
+   */
+  FlagChangeEvent coalesce(FlagChangeEvent other) {
+    boolean otherIsLater = other.flag != flag || other.version > version;
+    FlagChangeEvent earlier = otherIsLater ? this : other;
+    FlagChangeEvent later = otherIsLater ? other : this;
+    return new FlagChangeEvent(later.flag, earlier.oldValue, later.newValue, later.version);
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("name", name)
+        .add("oldValue", oldValue)
+        .add("newValue", newValue)
+        .add("version", version)
+        .toString();
+  }
+}
@@ -0,0 +1,119 @@
+package org.flagz;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * A subscriber to the changes of all flags in a {@link FlagFieldRegistry}.
+ *
+ * Created by {@link FlagFieldRegistry#subscribe}. Events are handed to the subscriber on its own
+ * {@link Executor}, never on the thread that changed the flag, so a slow subscriber can't stall
+ * the etcd watcher or a JMX call. Instead, events queue up with at most one pending per flag: a
+ * newer change of a flag that hasn't been delivered yet is merged into the pending event (see
+ * {@link FlagChangeEvent}), which bounds the buffer by the number of flags.
+ *
+ * Events are delivered one at a time, in the order the flags first changed since the last
+ * delivery. Events of racing writers may be offered out of order, so an event of a flag that is
+ * no newer than the last one delivered for it is dropped, and the last event a subscriber sees for
+ * a flag carries its current value. Exceptions thrown by the subscriber are logged and don't stop
+ * delivery.
+ */
+public final class FlagChangeSubscription implements AutoCloseable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FlagChangeSubscription.class);
+
+  private final Executor executor;
+  private final Consumer<FlagChangeEvent> subscriber;
+  private final List<FlagChangeSubscription> registrySubscriptions;
+  // Guarded by this.
+  private final Map<String, FlagChangeEvent> pending = new LinkedHashMap<>();
+  // Version of the last event taken for delivery, per flag. Weak, so unregistered flags go away.
+  private final Map<BaseFlag<?>, Long> deliveredVersions = new WeakHashMap<>();
+  private boolean draining = false;
+  private volatile boolean closed = false;
+
+  FlagChangeSubscription(Executor executor, Consumer<FlagChangeEvent> subscriber,
+                         List<FlagChangeSubscription> registrySubscriptions) {
+    this.executor = executor;
+    this.subscriber = subscriber;
+    this.registrySubscriptions = registrySubscriptions;
+  }
+
+  /** Queues the event for delivery, merging it with one of the same flag that is still queued. */
+  void offer(FlagChangeEvent event) {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      Long delivered = deliveredVersions.get(event.flag());
+      if (delivered != null && event.version() <= delivered) {
+        return;
+      }
+      pending.merge(event.name(), event, FlagChangeEvent::coalesce);
+      if (draining) {
+        return;
+      }
+      draining = true;
+    }
+    try {
+      executor.execute(this::drain);
+    } catch (RejectedExecutionException exception) {
+      synchronized (this) {
+        draining = false;
+      }
+      LOG.warn("Executor of flag change subscriber rejected delivery, events stay queued.",
+          exception);
+    }
+  }
+
+  /** Returns the number of events waiting to be delivered. */
+  public synchronized int pendingEvents() {
+    return pending.size();
+  }
+
+  /** Stops delivery of events, dropping the ones that are still queued. */
+  @Override
+  public void close() {
+    closed = true;
+    registrySubscriptions.remove(this);
+    synchronized (this) {
+      pending.clear();
+    }
+  }
+
+  private void drain() {
+    while (true) {
+      List<FlagChangeEvent> events;
+      synchronized (this) {
+        if (closed || pending.isEmpty()) {
+          draining = false;
+          return;
+        }
+        events = new ArrayList<>(pending.values());
+        pending.clear();
+        for (FlagChangeEvent event : events) {
+          deliveredVersions.put(event.flag(), event.version());
+        }
+      }
+      for (FlagChangeEvent event : events) {
+        if (closed) {
+          break;
+        }
+        try {
+          subscriber.accept(event);
+        } catch (RuntimeException exception) {
+          LOG.error("Flag change subscriber failed handling {}.", event, exception);
+        }
+      }
+    }
+  }
+}
@@ -71,13 +71,34 @@ public class FlagException extends RuntimeException {
       this.message = "Conflict on Flag names/alt-names, with the following:\n";
       for (Flag flag : conflicting) {
         Field field = ((FlagField) flag).containingField();
-        this.message = String.format(
+        this.message += String.format(
             "\t%s declared in Field(%s#%s)\n",
             flag,
             field.getDeclaringClass().getCanonicalName(),
             field.getName());
       }
     }
+
+    NameConflict(String name, Field... conflicting) {
+      this.message = String.format("Conflict on Flag name/alt-name '%s', declared in:\n", name);
+      for (Field field : conflicting) {
+        this.message += String.format(
+            "\tField(%s#%s)\n",
+            field.getDeclaringClass().getCanonicalName(),
+            field.getName());
+      }
+    }
+  }
+
+  /**
+   * Thrown when trying to set a {@link Flag} derived from another one through {@link Flag#map}.
+   */
+  public static class ReadOnly extends FlagException {
+
+    ReadOnly(Flag flag) {
+      this.flag = flag;
+      this.message = "is derived from another flag and can't be set directly.";
+    }
   }
 
   /**
@@ -89,5 +110,10 @@ public class FlagException extends RuntimeException {
       this.flag = flag;
       this.message = String.format("Does not support Type(%s)", type.getTypeName());
     }
+
+    UnsupportedType(Flag flag, Type type, String reason) {
+      this.flag = flag;
+      this.message = String.format("Does not support Type(%s): %s", type.getTypeName(), reason);
+    }
   }
 }
@@ -3,10 +3,10 @@ package org.flagz;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
+import com.google.common.reflect.TypeToken;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
-import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 
 /**
@@ -38,6 +38,21 @@ public abstract class FlagField<T> extends BaseFlag<T> {
 
   protected abstract void parseString(String value) throws FlagException;
 
+  /**
+   * Parses the content of the file a value like `@/path/to/file` refers to, see {@link FlagFile}.
+   *
+   * The content is only valid during the call. By default it's parsed by {@link #parseString},
+   * without its trailing line break. Container flags read it in place instead.
+   */
+  protected void parseFile(CharSequence content) throws FlagException {
+    parseString(FlagFile.withoutTrailingLineBreak(content).toString());
+  }
+
+  /** Parses a value set on the command line or through the registry, see {@link FlagFile}. */
+  void parseValue(String value) throws FlagException {
+    FlagFile.parse(this, value);
+  }
+
   public String valueString(T value) {
     return value.toString();
   }
@@ -61,22 +76,33 @@ public abstract class FlagField<T> extends BaseFlag<T> {
         annotations.length == 1,
         "FlagField containing field must contain exactly one @FlagInfo annotation.");
     FlagInfo annotation = annotations[0];
-    this.name = Strings.isNullOrEmpty(annotation.name())
-        ? containingField.getName()
-        : annotation.name();
+    this.name = flagName(containingField, annotation);
     this.altName = annotation.altName();
     this.help = annotation.help();
     this.containingField = containingField;
-    // Extract the Class<X> or ParametrizedType<X> from Flag<X>
-    this.containingFieldType = ((ParameterizedType) containingField.getGenericType())
-        .getActualTypeArguments()[0];
+    // Extract the Class<X> or ParametrizedType<X> from Flag<X>. Resolving through TypeToken also
+    // handles fields declared with a non-generic subtype, e.g. IntFlag.
+    this.containingFieldType = TypeToken.of(containingField.getGenericType())
+        .resolveType(Flag.class.getTypeParameters()[0])
+        .getType();
     this.unusedMarker = containingField.isAnnotationPresent(FlagzUnused.class);
+    if (unusedMarker && unusedTracker == null) {
+      this.unusedTracker = new UnusedFlagTracker(this);
+      readHooks = true;
+    }
   }
 
   Field containingField() {
     return containingField;
   }
 
+  /** Returns the name of the flag declared by the field, defaulting to the field's name. */
+  static String flagName(Field containingField, FlagInfo annotation) {
+    return Strings.isNullOrEmpty(annotation.name())
+        ? containingField.getName()
+        : annotation.name();
+  }
+
   @Override
   public String toString() {
     return String.format("FlagField<%s>(%s)", containingFieldType, name);
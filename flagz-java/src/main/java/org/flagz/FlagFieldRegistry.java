@@ -1,6 +1,8 @@
 package org.flagz;
 
+import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -8,24 +10,63 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
  * Holds a name to {@link Flag} resolution and allows for updating of flags from strings.
+ *
+ * The registry is safe to use from many threads, e.g. the etcd watcher and JMX at the same time.
+ * Lookups and snapshots never block, and racing updates of one flag are applied in a single order
+ * (see {@link BaseFlag#accept}).
  */
 public class FlagFieldRegistry {
 
   private static final Logger LOG = LoggerFactory.getLogger(FlagFieldRegistry.class);
+
   private final Set<FlagFieldScanner> scanners;
-  private Map<String, FlagField<?>> nameToField = Maps.newHashMap();
-  private Map<String, FlagField<?>> allNamesToField = Maps.newHashMap();
+  private final boolean deferUnknownFlags;
+  private final Map<String, FlagField<?>> nameToField = new ConcurrentHashMap<>();
+  private final Map<String, FlagField<?>> allNamesToField = new ConcurrentHashMap<>();
+  // Each flag with the flags derived from it, published together whenever it changes.
+  private final Map<BaseFlag<?>, Set<BaseFlag<?>>> changeGroups = new ConcurrentHashMap<>();
+  private volatile Set<DerivedFlagField<?, ?>> derivedFields = ImmutableSet.of();
+  private final AtomicReference<FlagSnapshot> snapshot =
+      new AtomicReference<>(FlagSnapshot.EMPTY);
+  // Collects the flags changed by a batch applied on this thread, to be published together.
+  private final ThreadLocal<Set<BaseFlag<?>>> batchChanges = new ThreadLocal<>();
+  private final List<FlagChangeSubscription> subscriptions = new CopyOnWriteArrayList<>();
+  private final List<Consumer<Set<Flag<?>>>> changeListeners = new CopyOnWriteArrayList<>();
+  // Values for flag names that aren't registered (yet), kept if deferUnknownFlags is set.
+  private final Map<String, String> deferredValues = new ConcurrentHashMap<>();
+  // Static flags found by Flagz#parseLazily whose class isn't bound yet, by name and alt name.
+  private final Map<String, LazyStaticFlag> lazyNamesToFlag = new ConcurrentHashMap<>();
+  private volatile StartupReport startupReport = StartupReport.EMPTY;
 
   FlagFieldRegistry(Set<FlagFieldScanner> scanners) {
+    this(scanners, false);
+  }
+
+  /**
+   * @param deferUnknownFlags whether values of flags that aren't registered are kept instead of
+   *                          failing, and applied once classes defining the flags are registered,
+   *                          see {@link #register(Class)}.
+   */
+  FlagFieldRegistry(Set<FlagFieldScanner> scanners, boolean deferUnknownFlags) {
     this.scanners = scanners;
+    this.deferUnknownFlags = deferUnknownFlags;
   }
 
   /** Transforms unused {@link FlagField} objects for pretty printing */
@@ -36,8 +77,14 @@ public class FlagFieldRegistry {
         .toArray(String[]::new);
   }
 
-  /** Retrieves the Flag by its default name. */
+  /**
+   * Retrieves the Flag by its default name.
+   *
+   * A flag found by {@link Flagz#parseLazily} is bound here if it wasn't yet, initializing the
+   * class declaring it.
+   */
   public Flag<?> getField(String name) throws FlagException {
+    bindLazy(name);
     BaseFlag<?> field = nameToField.get(name);
     if (field == null) {
       throw new FlagException.UnknownFlag(name);
@@ -48,17 +95,32 @@ public class FlagFieldRegistry {
   /**
    * Returns a reference to all the flags contained in this registry. Note that value changes which
    * happen after calling this method will be reflected in the returned list.
+   *
+   * Flags found by {@link Flagz#parseLazily} are all bound, initializing the classes that declare
+   * them.
    */
   public Set<Flag<?>> getAllFields() {
+    bindAllLazy();
     return ImmutableSet.copyOf(nameToField.values());
   }
 
+  /**
+   * Returns all read-only flags derived through {@link Flag#map} from the flags in this registry.
+   *
+   * Derived flags can't be set, they follow the flag they were mapped from. Only flags derived
+   * before {@link Flagz#parse} are known to the registry.
+   */
+  public Set<Flag<?>> getDerivedFields() {
+    return ImmutableSet.copyOf(derivedFields);
+  }
+
   /**
    * Returns a reference to all the flags contained in this registry which are annotated with an
    * annotation of the supplied type. Note that value changes which happen after calling this
    * method will be reflected in the returned list.
    */
   public Set<Flag<?>> getFieldsAnnotatedWith(Class<? extends Annotation> annotationType) {
+    bindAllLazy();
     ImmutableSet.Builder<Flag<?>> result = ImmutableSet.builder();
     nameToField.values().forEach(flag -> {
       if (flag.containingField().isAnnotationPresent(annotationType)) {
@@ -68,36 +130,405 @@ public class FlagFieldRegistry {
     return result.build();
   }
 
-  /** Sets the value of the Flag, parsing it from string. */
+  /**
+   * Returns the number of reads of every {@link FlagzUnused} flag, keyed by flag name.
+   *
+   * Reads are counted from the moment the flag was bound. A flag that stays at zero while the
+   * system is exercised is safe to delete. Flags found by {@link Flagz#parseLazily} whose class
+   * was never initialized were never read, and count zero.
+   */
+  public Map<String, Long> getUnusedFlagAccessCounts() {
+    Map<String, Long> result = new HashMap<>();
+    nameToField.values().forEach(flag -> {
+      UnusedFlagTracker tracker = flag.unusedTracker;
+      if (tracker != null) {
+        result.put(flag.name(), tracker.accessCount());
+      }
+    });
+    lazyNamesToFlag.values().forEach(lazy -> {
+      if (lazy.unusedMarker()) {
+        result.putIfAbsent(lazy.name(), 0L);
+      }
+    });
+    return ImmutableMap.copyOf(result);
+  }
+
+  /**
+   * Returns an immutable view of the values of all flags in this registry.
+   *
+   * The snapshot is maintained copy-on-write as flags change, so this is a single volatile read.
+   * All values read from one snapshot are consistent with each other, and its
+   * {@link FlagSnapshot#version} increases with every change made to any flag.
+   */
+  public FlagSnapshot snapshot() {
+    return snapshot.get();
+  }
+
+  /**
+   * Returns the timings of the {@link Flagz#parse} call that created this registry.
+   *
+   * Empty for registries created otherwise.
+   */
+  public StartupReport startupReport() {
+    return startupReport;
+  }
+
+  void setStartupReport(StartupReport startupReport) {
+    this.startupReport = Preconditions.checkNotNull(startupReport);
+  }
+
+  /**
+   * Pins the current values of all flags in this registry to the calling thread.
+   *
+   * Until the returned {@link FlagScope} is closed, every read of this registry's flags on this
+   * thread returns the value from the pinned snapshot. Reads stay allocation-free.
+   */
+  public FlagScope pin() {
+    return FlagScope.open(this, snapshot.get());
+  }
+
+  /**
+   * Subscribes to changes of all flags in this registry, delivered on the given executor.
+   *
+   * Every published change produces a {@link FlagChangeEvent} per flag, including flags derived
+   * through {@link Flag#map} that have a name. Changes made while the subscriber is busy are
+   * coalesced per flag, see {@link FlagChangeSubscription}. Close the returned subscription to
+   * stop receiving events.
+   */
+  public FlagChangeSubscription subscribe(Executor executor,
+                                          Consumer<FlagChangeEvent> subscriber) {
+    FlagChangeSubscription subscription = new FlagChangeSubscription(
+        Preconditions.checkNotNull(executor),
+        Preconditions.checkNotNull(subscriber),
+        subscriptions);
+    subscriptions.add(subscription);
+    return subscription;
+  }
+
+  /**
+   * Adds a listener called once for every change of flag values in this registry, with the flags
+   * that changed, after the flags' own listeners ran and the new values were published.
+   *
+   * A {@link #setFields} batch is one change, so unlike a listener of each of the flags, this is
+   * called once for the whole batch, e.g. to resize a pool once when both its size and its queue
+   * size change. It's called on the thread that made the change, and includes the flags derived
+   * from the changed ones.
+   */
+  public FlagFieldRegistry withChangeListener(Consumer<Set<Flag<?>>> listener) {
+    changeListeners.add(Preconditions.checkNotNull(listener));
+    return this;
+  }
+
+  /**
+   * Sets the value of the Flag, parsing it from string.
+   *
+   * A value of `@/path/to/file` is read from that file, which is then reloaded whenever it changes,
+   * see {@link FlagFile}.
+   *
+   * The flag is looked up by its name or alt name. If the registry defers unknown flags (see
+   * {@link Flagz#parseDeferringUnknown}), the value of a flag that isn't registered is kept until
+   * the flag is, see {@link #register(Class)}.
+   */
   public void setField(String name, String value) throws FlagException {
-    FlagField<?> field = (FlagField<?>) getField(name);
-    field.parseString(value);
+    bindLazy(name);
+    FlagField<?> field = allNamesToField.get(name);
+    if (field == null) {
+      if (!deferUnknownFlags) {
+        throw new FlagException.UnknownFlag(name);
+      }
+      deferredValues.put(name, value);
+      return;
+    }
+    field.parseValue(value);
+  }
+
+  /**
+   * Sets the values of many flags as one change, parsing them from strings.
+   *
+   * All values are parsed and validated before any flag is changed, so if any of them is rejected
+   * none are applied. The new values are then stored, each flag's listeners are called once, with
+   * all other flags of the batch already updated, and a single {@link FlagSnapshot} holding all of
+   * them is published. Pinned reads and snapshots never observe half of a batch. Finally the
+   * listeners added by {@link #withChangeListener} are called once, with all flags of the batch.
+   */
+  public void setFields(Map<String, String> nameToValue) throws FlagException {
+    nameToValue.keySet().forEach(this::bindLazy);
+    Set<String> unknownNames = ImmutableSet.copyOf(
+        Sets.difference(nameToValue.keySet(), allNamesToField.keySet()));
+    if (unknownNames.size() > 0 && !deferUnknownFlags) {
+      throw new FlagException.UnknownFlag(unknownNames.stream().collect(Collectors.joining(",")));
+    }
+    FlagBatch batch = new FlagBatch();
+    for (Map.Entry<String, String> entry : nameToValue.entrySet()) {
+      if (!unknownNames.contains(entry.getKey())) {
+        batch.stage(allNamesToField.get(entry.getKey()), entry.getValue());
+      }
+    }
+    applyBatch(batch);
+    unknownNames.forEach(name -> deferredValues.put(name, nameToValue.get(name)));
+  }
+
+  /**
+   * Sets the value of the Flag like {@link #setField}, for values from a remote source, e.g. etcd.
+   *
+   * The value is taken literally, even if it starts with an `@`, so that whoever can write it can't
+   * make the server read its local files, see {@link FlagFile}.
+   */
+  public void setRemoteField(String name, String value) throws FlagException {
+    setField(name, FlagFile.literal(value));
+  }
+
+  /**
+   * Sets the values of many flags as one change like {@link #setFields}, for values from a remote
+   * source, e.g. etcd. The values are taken literally, as by {@link #setRemoteField}.
+   */
+  public void setRemoteFields(Map<String, String> nameToValue) throws FlagException {
+    setFields(Maps.transformValues(nameToValue, FlagFile::literal));
+  }
+
+  /**
+   * Registers the flags in static final fields of the given class, e.g. one loaded by a plugin.
+   *
+   * Only the class itself and its superclasses are reflected on. Values for the new flags that
+   * were deferred (see {@link Flagz#parseDeferringUnknown}) are applied, and those set through
+   * {@link FlagProperty} are read as usual. Flags that are already registered are skipped.
+   *
+   * @return the newly registered flags.
+   */
+  public Set<Flag<?>> register(Class<?> clazz) throws FlagException {
+    return register(new FlagFieldScanner.ClassScanner(ImmutableSet.of(clazz)));
+  }
+
+  /**
+   * Registers the flags in static final fields of classes that the given loader adds on top of its
+   * parent, limited to the given package prefixes. See {@link #register(Class)}.
+   *
+   * @return the newly registered flags.
+   */
+  public Set<Flag<?>> register(ClassLoader classLoader, List<String> packagePrefixes)
+      throws FlagException {
+    return register(new FlagFieldScanner.ClassLoaderScanner(classLoader, packagePrefixes));
+  }
+
+  /**
+   * Removes all flags declared in classes of the given loader, e.g. when a plugin is unloaded.
+   *
+   * Values of the removed flags that were changed are deferred, so that they are applied again if
+   * the flags are registered later. Flags derived from them are removed as well.
+   *
+   * @return the removed flags.
+   */
+  public synchronized Set<Flag<?>> unregister(ClassLoader classLoader) {
+    Set<FlagField<?>> removed = nameToField.values().stream()
+        .filter(field -> field.containingField().getDeclaringClass().getClassLoader()
+            == classLoader)
+        .collect(Collectors.toSet());
+    Set<BaseFlag<?>> removedWithDerived = Sets.newIdentityHashSet();
+    for (FlagField<?> field : removed) {
+      nameToField.remove(field.name(), field);
+      allNamesToField.values().removeIf(existing -> existing == field);
+      removedWithDerived.add(field);
+      removedWithDerived.addAll(field.allDerivedFlags());
+      // Flags stay reachable after unregister(), but must not come back into the snapshot.
+      changeGroups.remove(field);
+      field.removeRegistry(this);
+      FlagFile.unwatch(field);
+      if (field.version() > 0) {
+        // The value as it is now, even if it was read from a file or starts with an `@`.
+        deferredValues.put(field.name(), FlagFile.literal(valueString(field)));
+      }
+    }
+    lazyNamesToFlag.values().removeIf(
+        lazy -> lazy.field().getDeclaringClass().getClassLoader() == classLoader);
+    derivedFields = ImmutableSet.copyOf(
+        Sets.difference(derivedFields, removedWithDerived));
+    snapshot.updateAndGet(current -> current.withoutValuesOf(removedWithDerived));
+    return ImmutableSet.copyOf(removed);
+  }
+
+  /**
+   * Scans for flags and registers them.
+   *
+   * Scanning initializes the classes declaring the flags, and so runs user code, e.g. a static
+   * initializer reaching this registry on another thread. So it runs without the registry's
+   * monitor, and only the registering is synchronized.
+   */
+  private Set<Flag<?>> register(FlagFieldScanner scanner) throws FlagException {
+    return registerBound(scanner.scanAndBind());
+  }
+
+  private synchronized Set<Flag<?>> registerBound(Set<FlagField<?>> scanned)
+      throws FlagException {
+    Set<FlagField<?>> fields = scanned.stream()
+        .filter(field -> nameToField.get(field.name()) != field)
+        .collect(Collectors.toSet());
+    // Parse and validate the deferred values before registering, so that a bad one leaves the
+    // registry unchanged.
+    FlagBatch batch = new FlagBatch();
+    Set<String> appliedNames = Sets.newHashSet();
+    for (FlagField<?> field : fields) {
+      for (String name : new String[] {field.name(), field.altName()}) {
+        String value = name == null ? null : deferredValues.get(name);
+        if (value != null) {
+          batch.stage(field, value);
+          appliedNames.add(name);
+          break;
+        }
+      }
+    }
+    addFields(fields);
+    applyBatch(batch);
+    appliedNames.forEach(deferredValues::remove);
+    return ImmutableSet.copyOf(fields);
+  }
+
+  /**
+   * Applies the batch, publishing it as one snapshot and one call of the change listeners.
+   *
+   * The changes of the flags are collected rather than published one by one while their listeners
+   * run. The whole change groups of the batch are published, as listeners of a flag may also be
+   * called by another thread that is applying a racing change of the flag.
+   */
+  private void applyBatch(FlagBatch batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    Set<BaseFlag<?>> changed = Sets.newIdentityHashSet();
+    for (BaseFlag<?> flag : batch.flags()) {
+      changed.addAll(changeGroups.getOrDefault(flag, ImmutableSet.of(flag)));
+    }
+    batchChanges.set(changed);
+    try {
+      batch.apply();
+    } finally {
+      batchChanges.remove();
+    }
+    publishSnapshot(changed);
+    notifyChangeListeners(changed);
   }
 
   void init() throws FlagException {
-    Set<FlagField<?>> fields = scanners.stream()
-        .flatMap(s -> s.scanAndBind().stream())
+    StartupRecorder recorder = StartupRecorder.current();
+    Set<FlagField<?>> fields = new HashSet<>();
+    Set<Field> unbound = new HashSet<>();
+    for (FlagFieldScanner scanner : scanners) {
+      long start = System.nanoTime();
+      fields.addAll(scanner.scanAndBind());
+      unbound.addAll(scanner.scanUnbound());
+      if (recorder != null) {
+        recorder.recordScanner(scanner, System.nanoTime() - start);
+      }
+    }
+    addFields(fields);
+    addLazyFlags(unbound);
+  }
+
+  /** Records the names of lazily bound flags. Throws on name conflicts. */
+  private synchronized void addLazyFlags(Set<Field> unbound) throws FlagException {
+    Map<String, LazyStaticFlag> newNames = new HashMap<>(lazyNamesToFlag);
+    for (Field field : unbound) {
+      LazyStaticFlag lazy = new LazyStaticFlag(field);
+      for (String name : new String[] {lazy.name(), lazy.altName()}) {
+        if (Strings.isNullOrEmpty(name)) {
+          continue;
+        }
+        FlagField<?> bound = allNamesToField.get(name);
+        if (bound != null && !bound.containingField().equals(field)) {
+          throw new FlagException.NameConflict(name, bound.containingField(), field);
+        }
+        LazyStaticFlag previous = newNames.putIfAbsent(name, lazy);
+        if (previous != null && !previous.field().equals(field)) {
+          throw new FlagException.NameConflict(name, previous.field(), field);
+        }
+      }
+    }
+    lazyNamesToFlag.putAll(newNames);
+  }
+
+  /** Binds the lazily found flag with the given name or alt name, if there is one. */
+  private void bindLazy(String name) {
+    LazyStaticFlag lazy = lazyNamesToFlag.get(name);
+    if (lazy != null) {
+      bindLazy(ImmutableSet.of(lazy));
+    }
+  }
+
+  private void bindAllLazy() {
+    if (!lazyNamesToFlag.isEmpty()) {
+      bindLazy(ImmutableSet.copyOf(lazyNamesToFlag.values()));
+    }
+  }
+
+  /**
+   * Binds the flags of the classes declaring the given lazy flags, initializing the classes.
+   *
+   * Registering goes through {@link #register(FlagFieldScanner)}, so deferred values are applied,
+   * and classes are initialized without holding the registry's monitor.
+   */
+  private void bindLazy(Set<LazyStaticFlag> flags) {
+    Set<Class<?>> classes = flags.stream()
+        .map(lazy -> lazy.field().getDeclaringClass())
         .collect(Collectors.toSet());
-    // Add all maps, and throw exceptions if there are conflicts.
-    addFieldNamesToMap(nameToField, fields, FlagField::name);
-    allNamesToField.putAll(nameToField);
-    addFieldNamesToMap(allNamesToField, fields, FlagField::altName);
+    register(new FlagFieldScanner.ClassScanner(classes));
+    lazyNamesToFlag.values().removeIf(lazy -> nameToField.containsKey(lazy.name()));
   }
 
-  void parseAll(Map<String, String> nameToValue) throws FlagException {
-    // Check for all missing values to ease the pain of having to start up the binary many
-    // times to resolve them.
-    Set<String> unknownNames = Sets.difference(nameToValue.keySet(), allNamesToField.keySet());
-    if (unknownNames.size() > 0) {
-      throw new FlagException.UnknownFlag(unknownNames.stream().collect(Collectors.joining(",")));
+  /** Adds the fields to the registry and publishes their values. Throws on name conflicts. */
+  private synchronized void addFields(Set<FlagField<?>> fields) throws FlagException {
+    // Check all names before adding any, so that a conflict leaves the registry unchanged.
+    Map<String, FlagField<?>> newNames = new HashMap<>(allNamesToField);
+    addFieldNamesToMap(newNames, fields, FlagField::name);
+    addFieldNamesToMap(newNames, fields, FlagField::altName);
+    for (FlagField<?> field : fields) {
+      nameToField.put(field.name(), field);
+      if (!Strings.isNullOrEmpty(field.altName())) {
+        allNamesToField.put(field.altName(), field);
+      }
+      allNamesToField.put(field.name(), field);
+    }
+    ImmutableSet.Builder<DerivedFlagField<?, ?>> derived = ImmutableSet.builder();
+    derived.addAll(derivedFields);
+    for (FlagField<?> field : fields) {
+      // Flags derived through Flag#map are recomputed when the flag is stored, before the change
+      // is published, so they are published together with it.
+      List<DerivedFlagField<?, ?>> fieldDerived = field.allDerivedFlags();
+      changeGroups.put(field, ImmutableSet.<BaseFlag<?>>builder()
+          .add(field)
+          .addAll(fieldDerived)
+          .build());
+      field.addRegistry(this);
+      derived.addAll(fieldDerived);
     }
+    Set<DerivedFlagField<?, ?>> allDerived = derived.build();
+    publishSnapshot(ImmutableSet.<BaseFlag<?>>builder()
+        .addAll(fields)
+        .addAll(Sets.difference(allDerived, derivedFields))
+        .build());
+    derivedFields = allDerived;
+  }
+
+  void parseAll(Map<String, String> nameToValue) throws FlagException {
+    nameToValue.keySet().forEach(this::bindLazy);
+    Set<String> unknownNames = ImmutableSet.copyOf(
+        Sets.difference(nameToValue.keySet(), allNamesToField.keySet()));
     Set<FlagField<?>> unusedFlags = unusedFlags(nameToValue);
     if (!unusedFlags.isEmpty()) {
       Arrays.stream(unusedFlagsMessages(unusedFlags)).forEach(LOG::warn);
     }
+    // Unknown names are rejected before any value is set. Report all of them at once to ease the
+    // pain of having to start up the binary many times to resolve them.
+    if (!unknownNames.isEmpty() && !deferUnknownFlags) {
+      throw new FlagException.UnknownFlag(unknownNames.stream().collect(Collectors.joining(",")));
+    }
     for (String name : nameToValue.keySet()) {
-      FlagField<?> field = allNamesToField.get(name);
-      field.parseString(nameToValue.get(name));
+      if (!unknownNames.contains(name)) {
+        FlagField<?> field = allNamesToField.get(name);
+        field.parseValue(nameToValue.get(name));
+      }
+    }
+    if (!unknownNames.isEmpty()) {
+      LOG.info("Deferring values of flags that aren't registered yet: {}", unknownNames);
+      unknownNames.forEach(name -> deferredValues.put(name, nameToValue.get(name)));
     }
   }
 
@@ -110,9 +541,93 @@ public class FlagFieldRegistry {
   }
 
   Set<FlagField<?>> allFields() {
+    bindAllLazy();
     return ImmutableSet.copyOf(nameToField.values());
   }
 
+  /**
+   * Publishes the change of the flag, and of the flags derived from it, to the snapshot. Called by
+   * {@link BaseFlag#store} under the flag's update lock, so the writer's later reads see it.
+   * Changes of a batch applied on this thread are collected instead.
+   */
+  void publishChange(BaseFlag<?> flag) {
+    Set<BaseFlag<?>> changed = changeGroups.get(flag);
+    if (changed == null) {
+      return;
+    }
+    Set<BaseFlag<?>> pendingBatch = batchChanges.get();
+    if (pendingBatch != null) {
+      pendingBatch.addAll(changed);
+      return;
+    }
+    publishSnapshot(changed);
+  }
+
+  /**
+   * Calls the change listeners with the flag and those derived from it, once the flag's listeners
+   * ran. Listeners of a batch applied on this thread are called once for the whole batch instead.
+   */
+  void notifyChange(BaseFlag<?> flag) {
+    Set<BaseFlag<?>> changed = changeGroups.get(flag);
+    if (changed == null || batchChanges.get() != null) {
+      return;
+    }
+    notifyChangeListeners(changed);
+  }
+
+  private void notifyChangeListeners(Set<? extends BaseFlag<?>> changed) {
+    if (changeListeners.isEmpty()) {
+      return;
+    }
+    Set<Flag<?>> flags = ImmutableSet.copyOf(changed);
+    for (Consumer<Set<Flag<?>>> listener : changeListeners) {
+      listener.accept(flags);
+    }
+  }
+
+  /**
+   * Publishes a new snapshot with the current values of the given fields.
+   *
+   * Lock-free: values are re-read on every compare-and-set attempt rather than taken from the
+   * listener, so when writers race, the last snapshot published holds every flag's final value.
+   * The differences to the previous snapshot are then offered to change subscribers.
+   */
+  private void publishSnapshot(Set<? extends BaseFlag<?>> changed) {
+    FlagSnapshot previous;
+    FlagSnapshot next;
+    do {
+      previous = snapshot.get();
+      next = previous.withValuesOf(changed);
+    } while (!snapshot.compareAndSet(previous, next));
+    if (!subscriptions.isEmpty()) {
+      offerChangeEvents(changed, previous, next);
+    }
+  }
+
+  private void offerChangeEvents(Set<? extends BaseFlag<?>> changed, FlagSnapshot previous,
+                                 FlagSnapshot next) {
+    for (BaseFlag<?> flag : changed) {
+      if (flag.name == null) {
+        continue;
+      }
+      Object oldValue = previous.valueOrAbsent(flag);
+      // Value and version as published, of the same change, rather than the flag's version now.
+      BaseFlag.Stored<?> stored = next.storedOrNull(flag);
+      FlagChangeEvent event = new FlagChangeEvent(
+          flag,
+          oldValue == FlagSnapshot.ABSENT ? null : oldValue,
+          stored.value,
+          stored.version);
+      for (FlagChangeSubscription subscription : subscriptions) {
+        subscription.offer(event);
+      }
+    }
+  }
+
+  private static <T> String valueString(FlagField<T> field) {
+    return field.valueString(field.currentValue());
+  }
+
   /** Adds fields to map for a given name retrieval function. Throws exceptions on conflicts. */
   private static void addFieldNamesToMap(Map<String, FlagField<?>> map,
                                          Set<FlagField<?>> fields,
@@ -123,7 +638,7 @@ public class FlagFieldRegistry {
       if (Strings.isNullOrEmpty(name)) {
         continue;
       }
-      FlagField previousExisted = map.put(name, field);
+      FlagField previousExisted = map.putIfAbsent(name, field);
       if (previousExisted != null) {
         throw new FlagException.NameConflict(previousExisted, field);
       }
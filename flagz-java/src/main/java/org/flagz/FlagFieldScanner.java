@@ -1,14 +1,25 @@
 package org.flagz;
 
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSet;
+import org.flagz.StartupReport.Phase;
 import org.reflections.ReflectionUtils;
 import org.reflections.Reflections;
+import org.reflections.scanners.FieldAnnotationsScanner;
+import org.reflections.util.ClasspathHelper;
+import org.reflections.util.ConfigurationBuilder;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
 
 import static com.google.common.base.Predicates.not;
 
@@ -26,10 +37,30 @@ abstract class FlagFieldScanner {
    */
   public abstract Set<FlagField<?>> scanAndBind();
 
+  /**
+   * Scans for static {@link FlagInfo} fields whose binding is deferred, without initializing the
+   * classes declaring them. See {@link Flagz#parseLazily}. Called after {@link #scanAndBind}.
+   */
+  public Set<Field> scanUnbound() {
+    return ImmutableSet.of();
+  }
+
+  /**
+   * Starts the part of the scan that doesn't initialize any class, e.g. scanning the classpath, in
+   * the background. {@link Flagz#parse} calls it before finding the objects to scan, e.g. Scala
+   * objects, so that both run at the same time.
+   */
+  public void startScan() {
+  }
+
   private final FlagPropertySyncer propertySyncer = new FlagPropertySyncer();
 
 
   protected FlagField<?> boundFlagField(Field field, Object declaredIn) {
+    return StartupRecorder.timed(Phase.FIELD_BINDING, () -> bindFlagField(field, declaredIn));
+  }
+
+  private FlagField<?> bindFlagField(Field field, Object declaredIn) {
     FlagField<?> flagField = null;
     if (!Flag.class.isAssignableFrom(field.getType())) {
       throw new RuntimeException(
@@ -47,7 +78,9 @@ abstract class FlagFieldScanner {
       flagField.bind(field);
       FlagProperty property = propertySyncer.fieldPropertyAnnotation(field);
       if (property != null) {
-        propertySyncer.handlePropertyAnnotaton(flagField, property);
+        FlagField<?> boundField = flagField;
+        StartupRecorder.timed(Phase.PROPERTY_SYNC,
+            () -> propertySyncer.handlePropertyAnnotaton(boundField, property));
       }
       if (!wasAccessible) {
         field.setAccessible(false);
@@ -59,33 +92,130 @@ abstract class FlagFieldScanner {
     return flagField;
   }
 
+  /** Returns the static final {@link FlagInfo} fields of the class and its superclasses. */
+  @SuppressWarnings("unchecked")
+  static Set<Field> staticFlagFields(Class<?> clazz) {
+    return ReflectionUtils.getAllFields(
+        clazz,
+        ReflectionUtils.withTypeAssignableTo(Flag.class),
+        ReflectionUtils.withAnnotation(FlagInfo.class),
+        ReflectionUtils.withModifier(Modifier.FINAL),
+        ReflectionUtils.withModifier(Modifier.STATIC));
+  }
+
   /**
-   * Scans the entire Java classpath to find static final fields of {@link Flag}.
+   * Finds static final fields of {@link Flag} in the classes listed by {@link FlagProvider}s,
+   * without scanning the classpath. The flags of flagz itself are always included.
+   *
+   * In lazy mode, fields are only reported by {@link #scanUnbound}, except fields annotated with
+   * {@link FlagProperty}. Properties are synced when a flag is bound, so those are bound upfront.
+   * The fields are looked up once, by {@link #scanAndBind}, which keeps the unbound ones for
+   * {@link #scanUnbound}.
    */
-  static class StaticFinalScanner extends FlagFieldScanner {
+  static class ProviderScanner extends FlagFieldScanner {
 
-    private final List<String> prefixes;
+    private static final Set<Class<?>> CORE_FLAG_CLASSES = ImmutableSet.of(
+        Flagz.class, ReflectionsCache.class, JmxFlagFieldRegistrar.class, FlagFile.class);
 
-    public StaticFinalScanner(final List<String> prefixes) {
-      this.prefixes = Preconditions.checkNotNull(prefixes);
+    private final Iterable<FlagProvider> providers;
+    private final boolean lazy;
+    // Fields found by scanAndBind in lazy mode and not bound, handed out once by scanUnbound.
+    private Set<Field> unbound = ImmutableSet.of();
+
+    public ProviderScanner(Iterable<FlagProvider> providers, boolean lazy) {
+      this.providers = Preconditions.checkNotNull(providers);
+      this.lazy = lazy;
     }
 
     @Override
     public Set<FlagField<?>> scanAndBind() {
-      Reflections reflections = ReflectionsCache.reflectionsForPrefixes(prefixes);
       Set<FlagField<?>> fields = new HashSet<>();
-      for (Field field : reflections.getFieldsAnnotatedWith(FlagInfo.class)) {
-        if (!Modifier.isStatic(field.getModifiers())
-            || !Modifier.isFinal(field.getModifiers())) {
-          continue;
+      Set<Field> notBound = new HashSet<>();
+      for (Field field : staticFinalFields()) {
+        if (!lazy || field.isAnnotationPresent(FlagProperty.class)) {
+          fields.add(boundFlagField(field, null)); // null is ok, these are static.
+        } else {
+          notBound.add(field);
         }
-        fields.add(boundFlagField(field, null)); // null is ok, these are static.
       }
+      unbound = notBound;
+      return fields;
+    }
+
+    @Override
+    public Set<Field> scanUnbound() {
+      Set<Field> fields = unbound;
+      unbound = ImmutableSet.of();
+      return fields;
+    }
 
+    /** Returns the flag fields to bind, a field found more than once is only bound once. */
+    protected Set<Field> staticFinalFields() {
+      Set<Class<?>> classes = new HashSet<>(CORE_FLAG_CLASSES);
+      for (FlagProvider provider : providers) {
+        classes.addAll(provider.flagClasses());
+      }
+      Set<Field> fields = new HashSet<>();
+      classes.forEach(clazz -> fields.addAll(staticFlagFields(clazz)));
       return fields;
     }
   }
 
+  /**
+   * Scans the entire Java classpath to find static final fields of {@link Flag}, together with the
+   * ones listed by {@link FlagProvider}s.
+   */
+  static class StaticFinalScanner extends ProviderScanner {
+
+    private final List<String> prefixes;
+    // The classpath scan started by startScan, taken by the next staticFinalFields.
+    private CompletableFuture<Set<Field>> startedScan;
+
+    public StaticFinalScanner(final List<String> prefixes) {
+      this(prefixes, false);
+    }
+
+    public StaticFinalScanner(final List<String> prefixes, boolean lazy) {
+      this(prefixes, ImmutableSet.of(), lazy);
+    }
+
+    public StaticFinalScanner(final List<String> prefixes, Iterable<FlagProvider> providers,
+        boolean lazy) {
+      super(providers, lazy);
+      this.prefixes = Preconditions.checkNotNull(prefixes);
+    }
+
+    @Override
+    public void startScan() {
+      startedScan = StartupRecorder.async(() -> ReflectionsCache.flagFieldsForPrefixes(prefixes));
+    }
+
+    @Override
+    protected Set<Field> staticFinalFields() {
+      CompletableFuture<Set<Field>> started = startedScan;
+      startedScan = null;
+      Set<Field> annotated = StartupRecorder.timed(Phase.CLASSPATH_SCAN, () -> started == null
+          ? ReflectionsCache.flagFieldsForPrefixes(prefixes)
+          : joinScan(started));
+      Set<Field> fields = annotated.stream()
+          .filter(field -> Modifier.isStatic(field.getModifiers())
+              && Modifier.isFinal(field.getModifiers()))
+          .collect(Collectors.toSet());
+      fields.addAll(super.staticFinalFields());
+      return fields;
+    }
+  }
+
+  /** Waits for a scan started in the background, rethrowing what it threw. */
+  private static <T> T joinScan(CompletableFuture<T> scan) {
+    try {
+      return scan.join();
+    } catch (CompletionException exception) {
+      Throwables.propagateIfPossible(exception.getCause());
+      throw exception;
+    }
+  }
+
   /** Scans a set of objects, finding bound final fields. Useful for Scala 'objects'. */
   static class ObjectBoundFinalScanner extends FlagFieldScanner {
 
@@ -113,4 +243,71 @@ abstract class FlagFieldScanner {
       return fields;
     }
   }
+
+  /** Scans the given classes only, finding static final fields. Used for late-loaded classes. */
+  static class ClassScanner extends FlagFieldScanner {
+
+    private final Set<Class<?>> classesToScan;
+
+    public ClassScanner(Set<Class<?>> classesToScan) {
+      this.classesToScan = Preconditions.checkNotNull(classesToScan);
+    }
+
+    @Override
+    public Set<FlagField<?>> scanAndBind() {
+      Set<FlagField<?>> fields = new HashSet<>();
+      for (Class<?> clazz : classesToScan) {
+        staticFlagFields(clazz).stream()
+            .map(f -> boundFlagField(f, null))
+            .forEach(fields::add);
+      }
+      return fields;
+    }
+  }
+
+  /**
+   * Scans the classes of a {@link ClassLoader}, e.g. of a plugin, finding static final fields.
+   *
+   * Only the classpath entries the loader adds on top of its parent are scanned, so classes that
+   * were already seen at startup aren't reflected on again.
+   */
+  static class ClassLoaderScanner extends FlagFieldScanner {
+
+    private final ClassLoader classLoader;
+    private final List<String> prefixes;
+
+    public ClassLoaderScanner(ClassLoader classLoader, List<String> prefixes) {
+      this.classLoader = Preconditions.checkNotNull(classLoader);
+      this.prefixes = Preconditions.checkNotNull(prefixes);
+    }
+
+    @Override
+    public Set<FlagField<?>> scanAndBind() {
+      Set<URL> urls = new HashSet<>();
+      for (String prefix : prefixes) {
+        Collection<URL> parentUrls = classLoader.getParent() == null
+            ? new HashSet<>()
+            : ClasspathHelper.forPackage(prefix, classLoader.getParent());
+        for (URL url : ClasspathHelper.forPackage(prefix, classLoader)) {
+          if (!parentUrls.contains(url)) {
+            urls.add(url);
+          }
+        }
+      }
+      Set<FlagField<?>> fields = new HashSet<>();
+      if (urls.isEmpty()) {
+        return fields;
+      }
+      Reflections reflections = new Reflections(new ConfigurationBuilder()
+          .setUrls(urls)
+          .addClassLoader(classLoader)
+          .setScanners(new FieldAnnotationsScanner()));
+      for (Field field : reflections.getFieldsAnnotatedWith(FlagInfo.class)) {
+        if (Modifier.isStatic(field.getModifiers()) && Modifier.isFinal(field.getModifiers())) {
+          fields.add(boundFlagField(field, null));
+        }
+      }
+      return fields;
+    }
+  }
 }
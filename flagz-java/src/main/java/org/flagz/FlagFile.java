@@ -0,0 +1,450 @@
+package org.flagz;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads flag values from files, for values given as `@/path/to/file`, e.g. large blocklists or
+ * routing tables that don't fit on a command line or in an etcd key.
+ *
+ * The file is memory-mapped and handed to {@link FlagField#parseFile} as a {@link CharSequence},
+ * so that container flags tokenize it in place, one item per line or separator, without first
+ * copying it into one big `String`. Files are UTF-8, decoded as they're read, and ASCII ones are
+ * read straight from the mapping.
+ *
+ * The files of flags set this way are polled every `--flagz_file_poll_ms`, and parsed again
+ * whenever their modification time or size changes. A file that fails to parse leaves the flag
+ * unchanged. Setting the flag to another value stops the polling. Values that start with an `@`
+ * themselves are escaped by doubling it, `@@`.
+ *
+ * Only values set locally, on the command line or through {@link FlagFieldRegistry#setField}, can
+ * refer to files. Values set over JMX or by {@link FlagFieldRegistry#setRemoteField}, e.g. from
+ * etcd, are always taken literally, see {@link #literal}.
+ */
+final class FlagFile {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FlagFile.class);
+
+  static final char REFERENCE = '@';
+
+  @FlagInfo(name = "flagz_file_poll_ms",
+      help = "Interval of checking files of flags set with --flag=@/path for changes, 0 to never "
+          + "reload them.")
+  private static final IntFlag pollMillis = Flagz.valueOf(1000);
+
+  // The files of flags to reload when they change, by flag.
+  private static final Map<FlagField<?>, Version> WATCHED = new ConcurrentHashMap<>();
+  private static ScheduledExecutorService poller;
+
+  private FlagFile() {
+  }
+
+  /**
+   * Parses the value into the field, reading it from the file if it's an `@path` reference, and
+   * polling that file for changes from then on.
+   *
+   * The value is stored through a {@link FlagBatch}, unless it's already being staged in one, so
+   * that starting or stopping to poll the file happens under the field's update lock, along with
+   * storing the value. A reload racing with the store can then tell it's stale, see
+   * {@link #reloadIfChanged}.
+   */
+  static void parse(FlagField<?> field, String value) throws FlagException {
+    if (!FlagBatch.isStaging()) {
+      FlagBatch batch = new FlagBatch();
+      batch.stage(field, value);
+      batch.apply();
+      return;
+    }
+    if (value.isEmpty() || value.charAt(0) != REFERENCE) {
+      field.parseString(value);
+      FlagBatch.whenStored(field, () -> WATCHED.remove(field));
+      return;
+    } else if (value.length() > 1 && value.charAt(1) == REFERENCE) {
+      field.parseString(value.substring(1));
+      FlagBatch.whenStored(field, () -> WATCHED.remove(field));
+      return;
+    }
+    Path path = Paths.get(value.substring(1));
+    Version version;
+    CharSequence content;
+    try {
+      // The version is taken first, so that a change while reading is picked up by the next poll.
+      version = Version.of(path);
+      content = map(path);
+    } catch (IOException exception) {
+      throw new FlagException.IllegalFormat(field, value, exception);
+    }
+    field.parseFile(content);
+    // Staged values, e.g. of a batch that may still be rejected, are only followed once stored.
+    FlagBatch.whenStored(field, () -> watch(field, version));
+  }
+
+  /**
+   * Returns the value escaped so that {@link #parse} takes it as is, never as a file reference.
+   *
+   * Used for values from remote sources, e.g. JMX or etcd, which mustn't make the server read its
+   * local files and expose them through the flag's value.
+   */
+  static String literal(String value) {
+    return !value.isEmpty() && value.charAt(0) == REFERENCE ? REFERENCE + value : value;
+  }
+
+  /** Stops polling the file of the field, e.g. when it's unregistered. */
+  static void unwatch(FlagField<?> field) {
+    WATCHED.remove(field);
+  }
+
+  /** Returns the content of the file without its trailing line break, for single-value flags. */
+  static CharSequence withoutTrailingLineBreak(CharSequence content) {
+    int end = content.length();
+    while (end > 0 && (content.charAt(end - 1) == '\n' || content.charAt(end - 1) == '\r')) {
+      end--;
+    }
+    return content.subSequence(0, end);
+  }
+
+  /** Returns the start of the value, e.g. of the content of a file, for error messages. */
+  static String head(CharSequence value) {
+    return value.subSequence(0, Math.min(value.length(), 30)).toString();
+  }
+
+  /** Maps the file, to be decoded as it's read if it isn't all ASCII. */
+  static CharSequence map(Path path) throws IOException {
+    MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Flag files are limited to 2 GB: " + path);
+      }
+      // The mapping stays valid once the channel is closed.
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    for (int index = 0; index < buffer.limit(); index++) {
+      if (buffer.get(index) < 0) {
+        return Utf8Content.of(buffer, 0, buffer.limit());
+      }
+    }
+    return new AsciiContent(buffer, 0, buffer.limit());
+  }
+
+  private static synchronized void watch(FlagField<?> field, Version version) {
+    if (pollMillis.getAsInt() <= 0) {
+      WATCHED.remove(field);
+      return;
+    }
+    WATCHED.put(field, version);
+    if (poller == null) {
+      poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "flagz-file-poller");
+        thread.setDaemon(true);
+        return thread;
+      });
+      schedulePoll();
+    }
+  }
+
+  private static synchronized void schedulePoll() {
+    poller.schedule(FlagFile::poll, Math.max(1, pollMillis.getAsInt()), TimeUnit.MILLISECONDS);
+  }
+
+  private static void poll() {
+    try {
+      WATCHED.forEach(FlagFile::reloadIfChanged);
+    } finally {
+      schedulePoll();
+    }
+  }
+
+  private static void reloadIfChanged(FlagField<?> field, Version version) {
+    if (pollMillis.getAsInt() <= 0) {
+      return;
+    }
+    try {
+      Version current = Version.of(version.path);
+      if (current.equals(version)) {
+        return;
+      }
+      // Only retried once the file changes again, whether or not it parses.
+      if (!WATCHED.replace(field, version, current)) {
+        return;
+      }
+      FlagBatch reload = new FlagBatch();
+      reload.stageFile(field, map(version.path));
+      // Dropped if a writer set the flag, to another value or file, while the file was parsed.
+      if (reload.applyIf(() -> WATCHED.get(field) == current)) {
+        LOG.info("Reloaded flag {} from {}.", field.name(), version.path);
+      }
+    } catch (IOException | RuntimeException exception) {
+      LOG.warn("Failed reloading flag {} from {}, keeping its value.", field.name(), version.path,
+          exception);
+    }
+  }
+
+  /** The modification time and size of a file, which change when it's written. */
+  private static final class Version {
+    private final Path path;
+    private final FileTime modified;
+    private final long size;
+
+    private Version(Path path, FileTime modified, long size) {
+      this.path = path;
+      this.modified = modified;
+      this.size = size;
+    }
+
+    static Version of(Path path) throws IOException {
+      BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+      return new Version(path, attributes.lastModifiedTime(), attributes.size());
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Version)) {
+        return false;
+      }
+      Version version = (Version) other;
+      return path.equals(version.path) && modified.equals(version.modified)
+          && size == version.size;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(path, modified, size);
+    }
+  }
+
+  /** The characters of a mapped ASCII file, read without copying. */
+  private static final class AsciiContent implements CharSequence {
+    private final ByteBuffer buffer;
+    private final int start;
+    private final int end;
+
+    AsciiContent(ByteBuffer buffer, int start, int end) {
+      this.buffer = buffer;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    public int length() {
+      return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+      return (char) buffer.get(start + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+      return new AsciiContent(buffer, start + from, start + to);
+    }
+
+    @Override
+    public String toString() {
+      byte[] bytes = new byte[length()];
+      for (int index = 0; index < bytes.length; index++) {
+        bytes[index] = buffer.get(start + index);
+      }
+      return new String(bytes, StandardCharsets.US_ASCII);
+    }
+  }
+
+  /**
+   * The characters of a mapped UTF-8 file, decoded as they are read rather than copied upfront.
+   *
+   * Reads are expected to mostly go forward, as tokenizers do. A cursor remembers the code point
+   * read last, and is moved from there, or from either end if that's closer. Not thread-safe, like
+   * the parse that reads it.
+   */
+  private static final class Utf8Content implements CharSequence {
+    private final ByteBuffer buffer;
+    private final int start;
+    private final int end;
+    private final int length;
+    // The index of the first char of the code point at the cursor, and the position of its bytes.
+    private int cursorIndex;
+    private int cursorPosition;
+
+    private Utf8Content(ByteBuffer buffer, int start, int end, int length) {
+      this.buffer = buffer;
+      this.start = start;
+      this.end = end;
+      this.length = length;
+      this.cursorPosition = start;
+    }
+
+    /** Returns the characters of the bytes, checking that they are well-formed UTF-8. */
+    static Utf8Content of(ByteBuffer buffer, int start, int end) throws MalformedInputException {
+      int length = 0;
+      for (int position = start; position < end; ) {
+        int size = checkedSizeAt(buffer, position, end);
+        if (size < 0) {
+          throw new MalformedInputException(position - start);
+        }
+        length += size == 4 ? 2 : 1;
+        position += size;
+      }
+      return new Utf8Content(buffer, start, end, length);
+    }
+
+    @Override
+    public int length() {
+      return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+      if (index < 0 || index >= length) {
+        throw new IndexOutOfBoundsException("Index " + index + " of " + length);
+      }
+      seek(index);
+      int codePoint = codePointAt(cursorPosition);
+      if (!Character.isSupplementaryCodePoint(codePoint)) {
+        return (char) codePoint;
+      }
+      return index == cursorIndex
+          ? Character.highSurrogate(codePoint)
+          : Character.lowSurrogate(codePoint);
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+      if (from < 0 || to > length || from > to) {
+        throw new IndexOutOfBoundsException("Range " + from + "-" + to + " of " + length);
+      }
+      int fromPosition = positionOf(from);
+      int toPosition = positionOf(to);
+      if (fromPosition >= 0 && toPosition >= 0) {
+        return new Utf8Content(buffer, fromPosition, toPosition, to - from);
+      }
+      // Splits a surrogate pair.
+      StringBuilder builder = new StringBuilder(to - from);
+      for (int index = from; index < to; index++) {
+        builder.append(charAt(index));
+      }
+      return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+      ByteBuffer range = buffer.duplicate();
+      range.limit(end);
+      range.position(start);
+      return StandardCharsets.UTF_8.decode(range).toString();
+    }
+
+    /** Returns the position of the char's bytes, or -1 if it's the second of a surrogate pair. */
+    private int positionOf(int index) {
+      if (index == length) {
+        return end;
+      }
+      seek(index);
+      return index == cursorIndex ? cursorPosition : -1;
+    }
+
+    /** Moves the cursor to the code point holding the char. */
+    private void seek(int index) {
+      if (index < cursorIndex - index) {
+        cursorIndex = 0;
+        cursorPosition = start;
+      } else if (length - index < Math.abs(index - cursorIndex)) {
+        cursorIndex = length;
+        cursorPosition = end;
+      }
+      while (index < cursorIndex) {
+        do {
+          cursorPosition--;
+        } while ((buffer.get(cursorPosition) & 0xC0) == 0x80);
+        cursorIndex -= sizeAt(cursorPosition) == 4 ? 2 : 1;
+      }
+      int size;
+      while (index >= cursorIndex + ((size = sizeAt(cursorPosition)) == 4 ? 2 : 1)) {
+        cursorIndex += size == 4 ? 2 : 1;
+        cursorPosition += size;
+      }
+    }
+
+    private int sizeAt(int position) {
+      int lead = buffer.get(position) & 0xFF;
+      return lead < 0x80 ? 1 : lead < 0xE0 ? 2 : lead < 0xF0 ? 3 : 4;
+    }
+
+    private int codePointAt(int position) {
+      int lead = buffer.get(position) & 0xFF;
+      switch (sizeAt(position)) {
+        case 1:
+          return lead;
+        case 2:
+          return (lead & 0x1F) << 6 | continuationAt(position + 1);
+        case 3:
+          return (lead & 0x0F) << 12 | continuationAt(position + 1) << 6
+              | continuationAt(position + 2);
+        default:
+          return (lead & 0x07) << 18 | continuationAt(position + 1) << 12
+              | continuationAt(position + 2) << 6 | continuationAt(position + 3);
+      }
+    }
+
+    private int continuationAt(int position) {
+      return buffer.get(position) & 0x3F;
+    }
+
+    /**
+     * Returns the number of bytes of the sequence starting at the position, or -1 if it isn't
+     * well-formed UTF-8, i.e. truncated, overlong or encoding a surrogate.
+     */
+    private static int checkedSizeAt(ByteBuffer buffer, int position, int end) {
+      int lead = buffer.get(position) & 0xFF;
+      int size;
+      int min = 0x80;
+      int max = 0xBF;
+      if (lead < 0x80) {
+        return 1;
+      } else if (lead >= 0xC2 && lead <= 0xDF) {
+        size = 2;
+      } else if (lead >= 0xE0 && lead <= 0xEF) {
+        size = 3;
+        min = lead == 0xE0 ? 0xA0 : min;
+        max = lead == 0xED ? 0x9F : max;
+      } else if (lead >= 0xF0 && lead <= 0xF4) {
+        size = 4;
+        min = lead == 0xF0 ? 0x90 : min;
+        max = lead == 0xF4 ? 0x8F : max;
+      } else {
+        return -1;
+      }
+      if (position + size > end) {
+        return -1;
+      }
+      int second = buffer.get(position + 1) & 0xFF;
+      if (second < min || second > max) {
+        return -1;
+      }
+      for (int index = 2; index < size; index++) {
+        if ((buffer.get(position + index) & 0xC0) != 0x80) {
+          return -1;
+        }
+      }
+      return size;
+    }
+  }
+}
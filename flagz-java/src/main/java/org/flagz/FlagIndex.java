@@ -0,0 +1,130 @@
+package org.flagz;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Resources;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads the `@FlagInfo` field indexes written at compile time by `FlagIndexProcessor`.
+ *
+ * Classpath entries containing an index don't need to be scanned with Reflections, others still
+ * are, see {@link ReflectionsCache#flagFieldsForPrefixes}.
+ */
+class FlagIndex {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FlagIndex.class);
+
+  // Kept in sync with org.flagz.processor.FlagIndexProcessor, which flagz doesn't depend on.
+  static final String RESOURCE = "META-INF/flagz/index";
+  // Index of the flags of flagz itself, only read in native images. On a classpath the small flagz
+  // jars are scanned like any other entry without an index.
+  static final String CORE_RESOURCE = "META-INF/flagz/core-index";
+
+  /** Returns whether this runs inside a GraalVM native image, which has no classpath to scan. */
+  static boolean inNativeImage() {
+    return System.getProperty("org.graalvm.nativeimage.imagecode") != null;
+  }
+
+  /** Returns the fields listed in all application and flagz indexes visible to the loader. */
+  static Set<Field> allIndexedFields(ClassLoader classLoader) {
+    Set<Field> fields = new HashSet<>();
+    for (String resource : new String[] {RESOURCE, CORE_RESOURCE}) {
+      try {
+        for (URL index : Collections.list(classLoader.getResources(resource))) {
+          fields.addAll(readFields(index, classLoader));
+        }
+      } catch (IOException exception) {
+        throw new FlagException("Couldn't list flagz indexes: " + exception);
+      }
+    }
+    return fields;
+  }
+
+  /**
+   * Returns the indexes visible to the given class loaders, keyed by the classpath entry they were
+   * found in, see {@link #rootKey}.
+   */
+  static Map<String, URL> indexesByRoot(ClassLoader... classLoaders) {
+    ImmutableMap.Builder<String, URL> indexes = ImmutableMap.builder();
+    Set<String> roots = new HashSet<>();
+    for (ClassLoader classLoader : classLoaders) {
+      if (classLoader == null) {
+        continue;
+      }
+      try {
+        Enumeration<URL> resources = classLoader.getResources(RESOURCE);
+        while (resources.hasMoreElements()) {
+          URL index = resources.nextElement();
+          String root = rootOf(index);
+          if (roots.add(root)) {
+            indexes.put(root, index);
+          }
+        }
+      } catch (IOException exception) {
+        LOG.warn("Couldn't list flagz indexes, falling back to classpath scanning.", exception);
+      }
+    }
+    return indexes.build();
+  }
+
+  /**
+   * Returns the fields listed in the index.
+   *
+   * Classes are loaded without being initialized. Entries that no longer resolve are logged and
+   * skipped, so a stale index can't prevent start-up.
+   */
+  static Set<Field> readFields(URL index, ClassLoader classLoader) {
+    Set<Field> fields = new HashSet<>();
+    try {
+      for (String line : Resources.readLines(index, StandardCharsets.UTF_8)) {
+        int separator = line.lastIndexOf('#');
+        if (separator < 0) {
+          continue;
+        }
+        String className = line.substring(0, separator);
+        String fieldName = line.substring(separator + 1);
+        try {
+          Class<?> clazz = Class.forName(className, false, classLoader);
+          fields.add(clazz.getDeclaredField(fieldName));
+        } catch (ClassNotFoundException | NoSuchFieldException | LinkageError exception) {
+          LOG.warn("Flagz index {} lists {}, which can't be found. Skipping.", index, line);
+        }
+      }
+    } catch (IOException exception) {
+      throw new FlagException("Couldn't read the flagz index " + index + ": " + exception);
+    }
+    return fields;
+  }
+
+  /**
+   * Returns the key of a classpath entry in {@link #indexesByRoot}. Jars are keyed by their file,
+   * as {@link org.reflections.util.ClasspathHelper} returns them as `jar:file:/a.jar!/`.
+   */
+  static String rootKey(URL entry) {
+    return rootKey(entry.toExternalForm());
+  }
+
+  /** Strips the index resource path from its URL, e.g. `jar:file:/a.jar!/META-INF/...`. */
+  private static String rootOf(URL index) {
+    String url = index.toExternalForm();
+    return rootKey(url.substring(0, url.length() - RESOURCE.length()));
+  }
+
+  private static String rootKey(String url) {
+    if (url.startsWith("jar:") && url.endsWith("!/")) {
+      return url.substring("jar:".length(), url.length() - "!/".length());
+    }
+    return url;
+  }
+}
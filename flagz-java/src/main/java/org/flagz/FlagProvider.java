@@ -0,0 +1,35 @@
+package org.flagz;
+
+import java.util.Set;
+
+/**
+ * Service provider listing the classes of a library or module that declare static {@link Flag}s.
+ *
+ * Providers are found through {@link java.util.ServiceLoader}, so a library registers one in
+ * `META-INF/services/org.flagz.FlagProvider`, or with `provides org.flagz.FlagProvider with ...`
+ * in its `module-info.java`. Their classes are reflected on directly, without walking the
+ * classpath, which makes discovery fast and predictable where scanning isn't, e.g. in modular
+ * deployments. {@link Flagz#parse} combines them with the scanned flags, and
+ * {@link Flagz#parseProvided} uses them alone.
+ *
+ * ```
+ * public class MyLibraryFlags implements FlagProvider {
+ *   {@literal @}Override
+ *   public Set{@literal <}Class{@literal <}?{@literal >}{@literal >} flagClasses() {
+ *     return ImmutableSet.of(MyServer.class, MyClient.class);
+ *   }
+ * }
+ * ```
+ *
+ * Implementations must be public and have a public no-argument constructor.
+ */
+public interface FlagProvider {
+
+  /**
+   * Returns the classes whose static final {@link FlagInfo} fields are flags.
+   *
+   * Referring to a class literal doesn't initialize it, so this works with
+   * {@link Flagz#parseLazily} too.
+   */
+  Set<Class<?>> flagClasses();
+}
@@ -0,0 +1,146 @@
+package org.flagz;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Pins the values of all flags of a {@link FlagFieldRegistry} for the calling thread.
+ *
+ * While a scope is open, {@link Flag#get} (and the unboxed getters of {@link IntFlag} and friends)
+ * return the values from the {@link FlagSnapshot} taken when the scope was opened, so a unit of
+ * work never observes a flag flip halfway through. Use it with try-with-resources:
+ *
+ * ```
+ * try (FlagScope scope = registry.pin()) {
+ *   processShard(shard);
+ * }
+ * ```
+ *
+ * Scopes are bound to the thread that opened them. Work handed off to other threads can carry the
+ * same pinned values through {@link #wrap(Runnable)} and {@link #wrap(Callable)}. Opening a scope
+ * while another scope of the same registry is open keeps the outer scope's values. Scopes of
+ * different registries nest: each flag reads the value pinned by the innermost scope holding it.
+ */
+public final class FlagScope implements AutoCloseable {
+
+  private static final ThreadLocal<FlagScope> CURRENT = new ThreadLocal<>();
+
+  private final FlagFieldRegistry registry;
+  private final FlagSnapshot snapshot;
+  private final FlagScope previous;
+  private final Thread owner;
+  private boolean closed = false;
+
+  private FlagScope(FlagFieldRegistry registry, FlagSnapshot snapshot, FlagScope previous) {
+    this.registry = registry;
+    this.snapshot = snapshot;
+    this.previous = previous;
+    this.owner = Thread.currentThread();
+  }
+
+  static FlagScope open(FlagFieldRegistry registry, FlagSnapshot snapshot) {
+    FlagScope previous = CURRENT.get();
+    if (previous != null && previous.registry == registry) {
+      snapshot = previous.snapshot;
+    }
+    FlagScope scope = new FlagScope(registry, snapshot, previous);
+    // Until then, flag reads skip the thread-local lookup entirely.
+    BaseFlag.readHooks = true;
+    CURRENT.set(scope);
+    return scope;
+  }
+
+  /** Returns the innermost scope open on the calling thread, if any. */
+  static FlagScope current() {
+    return CURRENT.get();
+  }
+
+  /** Returns the snapshot whose values are pinned by this scope. */
+  public FlagSnapshot snapshot() {
+    return snapshot;
+  }
+
+  /**
+   * Returns the value of the flag pinned by this scope or the scopes it's nested in, innermost
+   * first, or {@link FlagSnapshot#ABSENT} if none of them pins it.
+   */
+  Object pinnedValueOrAbsent(Flag<?> flag) {
+    for (FlagScope scope = this; scope != null; scope = scope.previous) {
+      Object pinned = scope.snapshot.valueOrAbsent(flag);
+      if (pinned != FlagSnapshot.ABSENT) {
+        return pinned;
+      }
+    }
+    return FlagSnapshot.ABSENT;
+  }
+
+  /**
+   * Returns a {@link Runnable} that runs the given one with this scope's values pinned, along with
+   * those of the scopes it's nested in.
+   */
+  public Runnable wrap(Runnable runnable) {
+    Preconditions.checkNotNull(runnable);
+    return () -> {
+      FlagScope enclosing = CURRENT.get();
+      openNested();
+      try {
+        runnable.run();
+      } finally {
+        closeUntil(enclosing);
+      }
+    };
+  }
+
+  /**
+   * Returns a {@link Callable} that calls the given one with this scope's values pinned, along with
+   * those of the scopes it's nested in.
+   */
+  public <V> Callable<V> wrap(Callable<V> callable) {
+    Preconditions.checkNotNull(callable);
+    return () -> {
+      FlagScope enclosing = CURRENT.get();
+      openNested();
+      try {
+        return callable.call();
+      } finally {
+        closeUntil(enclosing);
+      }
+    };
+  }
+
+  /** Opens scopes pinning the values of this scope and of those it's nested in, outermost first. */
+  private void openNested() {
+    if (previous != null) {
+      previous.openNested();
+    }
+    open(registry, snapshot);
+  }
+
+  private static void closeUntil(FlagScope enclosing) {
+    for (FlagScope scope = CURRENT.get(); scope != enclosing; scope = CURRENT.get()) {
+      scope.close();
+    }
+  }
+
+  /**
+   * Unpins the values, restoring the enclosing scope if there is one.
+   *
+   * Scopes must be closed on the thread that opened them, innermost first.
+   */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    Preconditions.checkState(
+        Thread.currentThread() == owner && CURRENT.get() == this,
+        "FlagScope must be closed by the thread that opened it, innermost scope first.");
+    closed = true;
+    if (previous == null) {
+      CURRENT.remove();
+    } else {
+      CURRENT.set(previous);
+    }
+  }
+}
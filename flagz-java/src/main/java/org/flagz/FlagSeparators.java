@@ -0,0 +1,32 @@
+package org.flagz;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation for changing the separators of a container {@link Flag}, e.g. a list or a map.
+ *
+ * By default items are separated by commas and map keys from values by colons, e.g.
+ * `--my_map=foo:123,bar:456`. Separators inside an item can also be escaped with a backslash or
+ * quoted, see {@link ContainerFlagField}, so changing them is mostly useful for readability:
+ *
+ * ```
+ * {@literal @}FlagInfo(name = "routes", help = "upstream per host and port")
+ * {@literal @}FlagSeparators(items = ';', keyValue = '=')
+ * final Flag{@literal <}Map{@literal <}String, String{@literal >}{@literal >} routes = ...
+ * ```
+ *
+ * with `--routes=example.com:80=backend-1;example.com:443=backend-2`.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface FlagSeparators {
+
+  /** Separates the items of a collection, or the entries of a map. */
+  char items() default ',';
+
+  /** Separates the key from the value of a map entry. */
+  char keyValue() default ':';
+}
@@ -0,0 +1,74 @@
+package org.flagz;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * An immutable, consistent view of the values of all flags in a {@link FlagFieldRegistry}.
+ *
+ * The registry publishes a new snapshot copy-on-write whenever any of its flags changes, stamped
+ * with a version that increases with every change. Taking a snapshot through
+ * {@link FlagFieldRegistry#snapshot} is a single reference read, so it is cheap enough to take one
+ * per request and read many flags from it without observing a half-applied update.
+ */
+public final class FlagSnapshot {
+
+  static final FlagSnapshot EMPTY = new FlagSnapshot(0, Collections.emptyMap());
+  static final Object ABSENT = new Object();
+
+  private final long version;
+  // Values along with the flag version they were stored at, so change events report both of the
+  // same change.
+  private final Map<Flag<?>, BaseFlag.Stored<?>> values;
+
+  private FlagSnapshot(long version, Map<Flag<?>, BaseFlag.Stored<?>> values) {
+    this.version = version;
+    this.values = values;
+  }
+
+  /** Returns the registry version this snapshot was taken at. */
+  public long version() {
+    return version;
+  }
+
+  /** Returns the value the given flag had when this snapshot was taken. */
+  @SuppressWarnings("unchecked")
+  public <T> T get(Flag<T> flag) throws FlagException {
+    BaseFlag.Stored<?> stored = values.get(flag);
+    if (stored == null) {
+      throw new FlagException.UnknownFlag(flag.name());
+    }
+    return (T) stored.value;
+  }
+
+  /** Returns the value of the flag, or {@link #ABSENT} if it isn't part of this snapshot. */
+  Object valueOrAbsent(Flag<?> flag) {
+    BaseFlag.Stored<?> stored = values.get(flag);
+    return stored == null ? ABSENT : stored.value;
+  }
+
+  /** Returns the value and version of the flag, or null if it isn't part of this snapshot. */
+  @Nullable
+  BaseFlag.Stored<?> storedOrNull(Flag<?> flag) {
+    return values.get(flag);
+  }
+
+  /** Returns a snapshot of the current values of the given fields, one version after this one. */
+  FlagSnapshot withValuesOf(Collection<? extends BaseFlag<?>> flags) {
+    Map<Flag<?>, BaseFlag.Stored<?>> copy = new IdentityHashMap<>(values);
+    for (BaseFlag<?> flag : flags) {
+      copy.put(flag, flag.lastStored());
+    }
+    return new FlagSnapshot(version + 1, Collections.unmodifiableMap(copy));
+  }
+
+  /** Returns a snapshot without the given flags, one version after this one. */
+  FlagSnapshot withoutValuesOf(Collection<? extends BaseFlag<?>> flags) {
+    Map<Flag<?>, BaseFlag.Stored<?>> copy = new IdentityHashMap<>(values);
+    copy.keySet().removeAll(flags);
+    return new FlagSnapshot(version + 1, Collections.unmodifiableMap(copy));
+  }
+}
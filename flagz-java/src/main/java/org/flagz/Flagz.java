@@ -3,12 +3,11 @@ package org.flagz;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.function.Supplier;
 
 /**
  * Wrapper class containing utility methods for working with {@link Flag}
@@ -41,7 +40,7 @@ import java.util.Set;
 public class Flagz {
 
   @FlagInfo(name = "help", altName = "h", help = "display this help menu")
-  private static final Flag<Boolean> showHelp = Flagz.valueOf(false);
+  private static final BooleanFlag showHelp = Flagz.valueOf(false);
 
   protected Flagz() {
   }
@@ -50,10 +49,40 @@ public class Flagz {
     return new PrimitiveFlagField.NumberFlagField<>(defaultValue);
   }
 
-  public static Flag<Boolean> valueOf(Boolean defaultValue) {
+  public static IntFlag valueOf(int defaultValue) {
+    return new PrimitiveFlagField.IntFlagField(defaultValue);
+  }
+
+  public static LongFlag valueOf(long defaultValue) {
+    return new PrimitiveFlagField.LongFlagField(defaultValue);
+  }
+
+  public static DoubleFlag valueOf(double defaultValue) {
+    return new PrimitiveFlagField.DoubleFlagField(defaultValue);
+  }
+
+  // The float, short and byte overloads exist so that these primitives don't widen to the
+  // specialized int and double flags above.
+  public static Flag<Float> valueOf(float defaultValue) {
+    return new PrimitiveFlagField.NumberFlagField<>(defaultValue);
+  }
+
+  public static Flag<Short> valueOf(short defaultValue) {
+    return new PrimitiveFlagField.NumberFlagField<>(defaultValue);
+  }
+
+  public static Flag<Byte> valueOf(byte defaultValue) {
+    return new PrimitiveFlagField.NumberFlagField<>(defaultValue);
+  }
+
+  public static BooleanFlag valueOf(boolean defaultValue) {
     return new PrimitiveFlagField.BooleanFlagField(defaultValue);
   }
 
+  public static Flag<Boolean> valueOf(Boolean defaultValue) {
+    return new PrimitiveFlagField.BoxedBooleanFlagField(defaultValue);
+  }
+
   public static <E extends Enum<E>> Flag<E> valueOf(E defaultValue) {
     return new PrimitiveFlagField.EnumFlagField<>(defaultValue);
   }
@@ -62,23 +91,64 @@ public class Flagz {
     return new PrimitiveFlagField.StringFlagField(defaultValue);
   }
 
+  // Values of list, set and map flags are immutable, so that readers can share them. They are
+  // array-backed and, for sets and maps, open-addressing, see CompactContainer.
   public static <K, V> Flag<Map<K, V>> valueOf(Map<K, V> defaultMap) {
-    return new ContainerFlagField.MapFlagField<>(defaultMap, HashMap::new);
+    return new ContainerFlagField.MapFlagField<>(
+        CompactMap.copyOf(defaultMap), CompactMap::new);
   }
 
   public static <V> Flag<List<V>> valueOf(List<V> defaultList) {
-    return new ContainerFlagField.CollectionFlagField<>(defaultList, ArrayList::new);
+    return new ContainerFlagField.CollectionFlagField<>(
+        CompactList.copyOf(defaultList), CompactList::new);
   }
 
   public static <V> Flag<Set<V>> valueOf(Set<V> defaultSet) {
-    return new ContainerFlagField.CollectionFlagField<>(defaultSet, HashSet::new);
+    return new ContainerFlagField.CollectionFlagField<>(
+        CompactSet.copyOf(defaultSet), CompactSet::new);
+  }
+
+  /**
+   * Returns a set flag optimized for {@link MembershipFlag#contains}, e.g. for large blocklists.
+   * Each new value is built into a lookup structure once, when it's set.
+   */
+  public static <E> MembershipFlag<E> membershipOf(Set<E> defaultSet) {
+    return new MembershipFlagField.ObjectMembershipFlagField<>(defaultSet);
   }
 
+  /** Returns a membership flag of `int`s, looked up without boxing, see {@link #membershipOf}. */
+  public static IntMembershipFlag intMembershipOf(int... defaultValues) {
+    return new MembershipFlagField.IntMembershipFlagField(defaultValues);
+  }
+
+  /** Returns a membership flag of `long`s, looked up without boxing, see {@link #membershipOf}. */
+  public static LongMembershipFlag longMembershipOf(long... defaultValues) {
+    return new MembershipFlagField.LongMembershipFlagField(defaultValues);
+  }
+
+  /**
+   * Returns a flag whose values are given as JSON, of any type that JSON maps to: plain Java
+   * objects, e.g. `--server={"host":"a","ports":[80,443]}` for a class with `host` and `ports`
+   * fields, nested lists, sets and maps, or scalars.
+   *
+   * Values are parsed once per update. Lists, sets and maps are immutable, and objects are created
+   * through their no-argument constructor, with their fields set from the JSON members. Those
+   * fields can't be final, classes with final fields are rejected. The value is shared by all
+   * readers, so don't change its fields after reading it. Lists, sets and maps of
+   * other containers, e.g. `Flagz.valueOf(Map<String, List<Integer>>)`, take JSON values too.
+   */
+  public static <T> Flag<T> valueOfJson(T defaultValue) {
+    return new StructuredFlagField<>(defaultValue);
+  }
 
   /**
    * Parses the command line arguments and updates as necessary all {@link Flag}
    * objects annotated with {@link FlagInfo}.
    *
+   * Static flags are found by scanning the classpath, and in the classes listed by the
+   * {@link FlagProvider}s on it. A flag name declared twice in either is a
+   * {@link FlagException.NameConflict}.
+   *
    * If "--help" of "-h" is passed in at the command line, then the help menu
    * will be printed and the JVM will exit with a 0 exit status.
    *
@@ -93,14 +163,85 @@ public class Flagz {
    */
   public static FlagFieldRegistry parse(String[] args, List<String> packagePrefixes,
                                         Set<Object> objects) {
-    Set<FlagFieldScanner> scanners = ImmutableSet.of(
-        new FlagFieldScanner.ObjectBoundFinalScanner(objects),
-        new FlagFieldScanner.StaticFinalScanner(packagePrefixes));
-    FlagFieldRegistry registry = new FlagFieldRegistry(scanners);
-    registry.init();
-    registry.parseAll(Utils.parseArgsToFieldMap(args));
-
-    if (showHelp.get()) {
+    return parse(args, packagePrefixes, () -> objects, false);
+  }
+
+  /**
+   * Like {@link #parse(String[], List, Set)}, but doesn't initialize the classes declaring static
+   * flags while discovering them.
+   *
+   * The names of static flags are read from their annotations, which is enough to reject unknown
+   * flags. A flag is bound, initializing its class, once it's needed: when a value is passed for
+   * it, or when it's looked up through the returned registry, e.g. by
+   * {@link FlagFieldRegistry#getField}. Until then it holds its default value, and isn't part of
+   * {@link FlagFieldRegistry#snapshot}. Listing all flags, e.g. for "--help" or JMX, binds all of
+   * them. Flags with a {@link FlagProperty} are always bound upfront.
+   */
+  public static FlagFieldRegistry parseLazily(String[] args, List<String> packagePrefixes,
+                                              Set<Object> objects) {
+    return parse(args, packagePrefixes, () -> objects, true);
+  }
+
+  /**
+   * Like {@link #parse(String[], List, Set)}, but keeps the values of flags that aren't known yet
+   * instead of failing, e.g. of flags of plugins loaded later.
+   *
+   * The values are applied once the classes defining the flags are registered through
+   * {@link FlagFieldRegistry#register}. Values set on the returned registry for unknown flags
+   * are kept the same way.
+   */
+  public static FlagFieldRegistry parseDeferringUnknown(String[] args,
+                                                        List<String> packagePrefixes,
+                                                        Set<Object> objects) {
+    return parse(args, () -> objects, new FlagFieldScanner.StaticFinalScanner(
+        packagePrefixes, ServiceLoader.load(FlagProvider.class), false), true);
+  }
+
+  /**
+   * Parses the arguments, with the objects to scan found by a supplier that is timed as
+   * {@link StartupReport.Phase#SCALA_OBJECT_SCAN}. Used by `ScalaFlagz`.
+   */
+  static FlagFieldRegistry parse(String[] args, List<String> packagePrefixes,
+                                 Supplier<Set<Object>> objects, boolean lazy) {
+    return parse(args, objects, new FlagFieldScanner.StaticFinalScanner(
+        packagePrefixes, ServiceLoader.load(FlagProvider.class), lazy), false);
+  }
+
+  /**
+   * Like {@link #parse(String[], List, Set)}, but finds static flags only in the classes listed by
+   * {@link FlagProvider}s, never scanning the classpath.
+   *
+   * Flags of libraries without a provider aren't found. The flags of flagz itself always are.
+   */
+  public static FlagFieldRegistry parseProvided(String[] args, Set<Object> objects) {
+    FlagFieldScanner staticScanner =
+        new FlagFieldScanner.ProviderScanner(ServiceLoader.load(FlagProvider.class), false);
+    return parse(args, () -> objects, staticScanner, false);
+  }
+
+  private static FlagFieldRegistry parse(String[] args, Supplier<Set<Object>> objects,
+                                         FlagFieldScanner staticScanner,
+                                         boolean deferUnknownFlags) {
+    FlagFieldRegistry registry;
+    try (StartupRecorder recorder = StartupRecorder.open()) {
+      // The classpath is scanned for static flags while the objects are found. Flags are bound,
+      // initializing their classes, on this thread only, so that class initializers referring to
+      // each other can't deadlock.
+      staticScanner.startScan();
+      Set<Object> scannedObjects = recorder.time(StartupReport.Phase.SCALA_OBJECT_SCAN, objects);
+      Set<FlagFieldScanner> scanners = ImmutableSet.of(
+          new FlagFieldScanner.ObjectBoundFinalScanner(scannedObjects), staticScanner);
+      registry = new FlagFieldRegistry(scanners, deferUnknownFlags);
+      registry.init();
+      recorder.time(StartupReport.Phase.ARGUMENT_PARSING, () -> {
+        registry.parseAll(Utils.parseArgsToFieldMap(args));
+        return null;
+      });
+      registry.setStartupReport(recorder.report());
+    }
+    ReflectionsCache.releaseIfEnabled();
+
+    if (showHelp.getAsBoolean()) {
       Utils.printHelpPage(registry.allFields());
       System.exit(0);
     }
@@ -111,4 +252,14 @@ public class Flagz {
   public static FlagFieldRegistry parse(String[] args) {
     return parse(args, ImmutableList.<String>of(), ImmutableSet.<Object>of());
   }
+
+  /**
+   * Returns counters of the classpath scans that {@link #parse} keeps in memory for later calls.
+   *
+   * Set `--flagz_release_reflections_cache` to drop them once parsing is done, and
+   * `--flagz_reflections_cache_size` to bound them for apps that parse many times.
+   */
+  public static ReflectionsCacheStats reflectionsCacheStats() {
+    return ReflectionsCache.stats();
+  }
 }
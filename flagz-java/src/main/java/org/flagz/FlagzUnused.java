@@ -10,7 +10,11 @@ import java.lang.annotation.Target;
  * such, it is useless to specify them). Note that this is subtly stronger than {@link Deprecated}
  * in that deprecated flags might still be read whereas {@link FlagzUnused} may not.
  *
- * Any attempt to get a value from an unused flag will raise a {@link RuntimeException}.
+ * All reads of an unused flag are counted, the counts are available through
+ * {@link FlagFieldRegistry#getUnusedFlagAccessCounts}. Reading call sites are sampled, at most one
+ * read a second is traced, and each sampled site is logged once. A site that only reads in
+ * between samples, e.g. next to a hot loop reading the same flag, may never be logged, so check
+ * the counts rather than the logs to know if a flag is still read.
  */
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.FIELD)
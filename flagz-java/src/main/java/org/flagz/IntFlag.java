@@ -0,0 +1,24 @@
+package org.flagz;
+
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.function.Predicate;
+
+/**
+ * A {@link Flag} holding an `int` that can be read without boxing.
+ *
+ * The value is kept in a primitive volatile field, making {@link #getAsInt()} allocation-free.
+ * Use it instead of {@link #get()} on hot paths.
+ */
+public interface IntFlag extends Flag<Integer>, IntSupplier {
+
+  /** Returns the value of this flag as a primitive `int`. */
+  @Override
+  int getAsInt();
+
+  @Override
+  IntFlag withValidator(Predicate<Integer> predicate);
+
+  @Override
+  IntFlag withListener(Consumer<Integer> predicate);
+}
@@ -0,0 +1,23 @@
+package org.flagz;
+
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A {@link MembershipFlag} of `int`s, e.g. numeric IDs, that are looked up without boxing.
+ *
+ * Values are kept in a hash table of primitives, using a fraction of the memory of a
+ * `Set<Integer>`. Use {@link #contains(int)} on hot paths.
+ */
+public interface IntMembershipFlag extends MembershipFlag<Integer> {
+
+  /** Returns whether the current value of this flag contains the `int`. */
+  boolean contains(int element);
+
+  @Override
+  IntMembershipFlag withValidator(Predicate<Set<Integer>> predicate);
+
+  @Override
+  IntMembershipFlag withListener(Consumer<Set<Integer>> predicate);
+}
@@ -0,0 +1,164 @@
+package org.flagz;
+
+import com.google.common.base.Preconditions;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable set of `int`s optimized for {@link #contains(int)}, the value of an
+ * {@link IntMembershipFlag}.
+ *
+ * Values are appended unboxed while the flag value is parsed. Freezing moves them into an
+ * open-addressing table of primitives, with zero marking free slots and tracked on its own, behind
+ * a {@link BloomPrefilter} for large sets like in {@link MembershipSet}. Until frozen, only
+ * {@link #add} may be called.
+ */
+final class IntMembershipSet extends AbstractSet<Integer> implements CompactContainer {
+
+  private static final int[] EMPTY = {};
+
+  // Only set until the set is frozen.
+  private int[] building = EMPTY;
+  private int buildingSize = 0;
+  private int[] table;
+  private int shift;
+  private boolean containsZero = false;
+  private int size = 0;
+  private BloomPrefilter prefilter = null;
+
+  /** Returns a frozen copy of the values. */
+  static IntMembershipSet copyOf(int... values) {
+    IntMembershipSet set = new IntMembershipSet();
+    for (int value : values) {
+      set.addInt(value);
+    }
+    set.freeze();
+    return set;
+  }
+
+  /** Returns a frozen copy of the values, which can't be null. */
+  static IntMembershipSet copyOf(Collection<Integer> values) {
+    IntMembershipSet set = new IntMembershipSet();
+    values.forEach(set::add);
+    set.freeze();
+    return set;
+  }
+
+  /** Appends the value. Always returns true, as duplicates are only removed by freezing. */
+  @Override
+  public boolean add(Integer value) {
+    Preconditions.checkNotNull(value, "Set flag values can't hold null.");
+    addInt(value);
+    return true;
+  }
+
+  void addInt(int value) {
+    CompactSet.checkNotFrozen(building == null);
+    if (buildingSize == building.length) {
+      building = Arrays.copyOf(building, CompactSet.grownCapacity(buildingSize));
+    }
+    building[buildingSize++] = value;
+  }
+
+  @Override
+  public void freeze() {
+    if (building == null) {
+      return;
+    }
+    int capacity = MembershipSet.tableCapacity(buildingSize);
+    table = new int[capacity];
+    shift = MembershipSet.tableShift(capacity);
+    for (int index = 0; index < buildingSize; index++) {
+      int value = building[index];
+      if (value == 0) {
+        size += containsZero ? 0 : 1;
+        containsZero = true;
+        continue;
+      }
+      int slot = MembershipSet.slot(value, shift);
+      while (table[slot] != 0 && table[slot] != value) {
+        slot = (slot + 1) & (capacity - 1);
+      }
+      if (table[slot] == 0) {
+        table[slot] = value;
+        size++;
+      }
+    }
+    if (size >= MembershipSet.PREFILTER_MIN_SIZE) {
+      prefilter = new BloomPrefilter(size);
+      for (int value : table) {
+        prefilter.add(value);
+      }
+    }
+    building = null;
+  }
+
+  boolean contains(int value) {
+    if (value == 0) {
+      return containsZero;
+    } else if (prefilter != null && !prefilter.mightContain(value)) {
+      return false;
+    }
+    int mask = table.length - 1;
+    for (int slot = MembershipSet.slot(value, shift); table[slot] != 0; slot = (slot + 1) & mask) {
+      if (table[slot] == value) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean contains(Object value) {
+    return value instanceof Integer && contains(((Integer) value).intValue());
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = 0;
+    for (int value : table) {
+      hash += value;
+    }
+    return hash;
+  }
+
+  /** Iterates zero first, then in the order of the table. */
+  @Override
+  public Iterator<Integer> iterator() {
+    return new Iterator<Integer>() {
+      // Slot -1 stands for zero.
+      private int slot = containsZero ? -1 : nextSlot(0);
+
+      @Override
+      public boolean hasNext() {
+        return slot < table.length;
+      }
+
+      @Override
+      public Integer next() {
+        if (slot >= table.length) {
+          throw new NoSuchElementException();
+        }
+        int value = slot < 0 ? 0 : table[slot];
+        slot = nextSlot(slot + 1);
+        return value;
+      }
+
+      private int nextSlot(int from) {
+        while (from < table.length && table[from] == 0) {
+          from++;
+        }
+        return from;
+      }
+    };
+  }
+}
@@ -88,7 +88,8 @@ public class JmxFlagFieldRegistrar {
     @Override
     public void setValue(String value) {
       try {
-        delegateFlag.parseString(value);
+        // Never read from a file, see FlagFile#literal.
+        delegateFlag.parseValue(FlagFile.literal(value));
       } catch (FlagException exception) {
         throw new IllegalArgumentException("Failed parsing flag " + getName(), exception);
       }
@@ -0,0 +1,248 @@
+package org.flagz;
+
+import java.util.Arrays;
+
+/**
+ * Reads a JSON document token by token, in a single pass over the string or file content.
+ *
+ * The reader doesn't build a tree, callers pull the values they expect, see
+ * {@link StructuredValues}. Unquoted scalars, i.e. numbers, booleans and anything else up to the
+ * next delimiter, are returned as text and converted by the caller, which also allows `0x1F` and
+ * `NaN`. Errors are reported as {@link IllegalArgumentException}.
+ */
+final class JsonReader {
+
+  private final CharSequence input;
+  private int position = 0;
+
+  // Closing character and whether an element was read, for each array or object being read.
+  private char[] closers = new char[8];
+  private boolean[] started = new boolean[8];
+  private int depth = 0;
+
+  JsonReader(CharSequence input) {
+    this.input = input;
+  }
+
+  void beginArray() {
+    expect('[');
+    push(']');
+  }
+
+  void beginObject() {
+    expect('{');
+    push('}');
+  }
+
+  /**
+   * Returns whether the current array or object has another element, moving past the comma before
+   * it. Moves past the end of the array or object otherwise.
+   */
+  boolean hasNext() {
+    skipWhitespace();
+    if (position < input.length() && input.charAt(position) == closers[depth - 1]) {
+      position++;
+      depth--;
+      return false;
+    }
+    if (started[depth - 1]) {
+      expect(',');
+    }
+    started[depth - 1] = true;
+    return true;
+  }
+
+  /** Reads the name of the next member of an object, and the colon after it. */
+  String nextName() {
+    skipWhitespace();
+    if (position >= input.length() || input.charAt(position) != '"') {
+      throw error("Expected a quoted member name");
+    }
+    String name = readString();
+    expect(':');
+    return name;
+  }
+
+  /** Reads a string, number, boolean or other unquoted scalar, as text. */
+  String nextScalar() {
+    skipWhitespace();
+    if (position < input.length() && input.charAt(position) == '"') {
+      return readString();
+    }
+    int start = position;
+    while (position < input.length() && !isDelimiter(input.charAt(position))) {
+      position++;
+    }
+    if (start == position) {
+      throw error("Expected a value");
+    }
+    return input.subSequence(start, position).toString();
+  }
+
+  /** Moves past the next value if it's `null`, returning whether it was. */
+  boolean nextNull() {
+    skipWhitespace();
+    int end = position + 4;
+    if (startsWith("null", position)
+        && (end == input.length() || isDelimiter(input.charAt(end)))) {
+      position = end;
+      return true;
+    }
+    return false;
+  }
+
+  /** Checks that nothing but whitespace follows the value read. */
+  void endOfInput() {
+    skipWhitespace();
+    if (position < input.length()) {
+      throw error("Unexpected content after the value");
+    }
+  }
+
+  private String readString() {
+    int start = ++position;
+    StringBuilder builder = null;
+    while (position < input.length()) {
+      char current = input.charAt(position);
+      if (current == '"') {
+        String string = builder == null
+            ? input.subSequence(start, position).toString()
+            : builder.append(input, start, position).toString();
+        position++;
+        return string;
+      } else if (current == '\\') {
+        if (builder == null) {
+          builder = new StringBuilder();
+        }
+        builder.append(input, start, position);
+        position = readEscape(builder, position + 1);
+        start = position;
+      } else {
+        position++;
+      }
+    }
+    throw error("Unterminated string");
+  }
+
+  /** Appends the escaped character at the index, returns the index after the escape. */
+  private int readEscape(StringBuilder builder, int index) {
+    if (index >= input.length()) {
+      throw error("Unterminated escape");
+    }
+    char escaped = input.charAt(index);
+    switch (escaped) {
+      case 'b':
+        builder.append('\b');
+        break;
+      case 'f':
+        builder.append('\f');
+        break;
+      case 'n':
+        builder.append('\n');
+        break;
+      case 'r':
+        builder.append('\r');
+        break;
+      case 't':
+        builder.append('\t');
+        break;
+      case 'u':
+        if (index + 5 > input.length()) {
+          throw error("Unterminated unicode escape");
+        }
+        String hex = input.subSequence(index + 1, index + 5).toString();
+        builder.append((char) Integer.parseInt(hex, 16));
+        return index + 5;
+      default:
+        builder.append(escaped);
+    }
+    return index + 1;
+  }
+
+  private void push(char closer) {
+    if (depth == closers.length) {
+      closers = Arrays.copyOf(closers, depth * 2);
+      started = Arrays.copyOf(started, depth * 2);
+    }
+    closers[depth] = closer;
+    started[depth] = false;
+    depth++;
+  }
+
+  private void expect(char expected) {
+    skipWhitespace();
+    if (position >= input.length() || input.charAt(position) != expected) {
+      throw error("Expected '" + expected + "'");
+    }
+    position++;
+  }
+
+  private boolean startsWith(String prefix, int at) {
+    if (at + prefix.length() > input.length()) {
+      return false;
+    }
+    for (int index = 0; index < prefix.length(); index++) {
+      if (input.charAt(at + index) != prefix.charAt(index)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void skipWhitespace() {
+    while (position < input.length() && Character.isWhitespace(input.charAt(position))) {
+      position++;
+    }
+  }
+
+  private IllegalArgumentException error(String message) {
+    return new IllegalArgumentException(String.format("%s at position %d", message, position));
+  }
+
+  private static boolean isDelimiter(char character) {
+    switch (character) {
+      case ',':
+      case ':':
+      case '[':
+      case ']':
+      case '{':
+      case '}':
+      case '"':
+        return true;
+      default:
+        return Character.isWhitespace(character);
+    }
+  }
+
+  /** Appends the string as a quoted JSON string. */
+  static StringBuilder quote(StringBuilder out, String string) {
+    out.append('"');
+    for (int index = 0; index < string.length(); index++) {
+      char current = string.charAt(index);
+      switch (current) {
+        case '"':
+          out.append("\\\"");
+          break;
+        case '\\':
+          out.append("\\\\");
+          break;
+        case '\n':
+          out.append("\\n");
+          break;
+        case '\r':
+          out.append("\\r");
+          break;
+        case '\t':
+          out.append("\\t");
+          break;
+        default:
+          if (current < 0x20) {
+            out.append(String.format("\\u%04x", (int) current));
+          } else {
+            out.append(current);
+          }
+      }
+    }
+    return out.append('"');
+  }
+}
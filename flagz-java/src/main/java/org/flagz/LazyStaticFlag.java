@@ -0,0 +1,43 @@
+package org.flagz;
+
+import com.google.common.base.Preconditions;
+
+import java.lang.reflect.Field;
+
+/**
+ * Metadata of a static flag found by {@link Flagz#parseLazily}.
+ *
+ * It is read from the annotations of the field, which doesn't initialize the class declaring it.
+ * The registry binds the flag itself, initializing the class, the first time it's needed.
+ */
+class LazyStaticFlag {
+
+  private final Field field;
+  private final String name;
+  private final String altName;
+
+  LazyStaticFlag(Field field) {
+    FlagInfo annotation = Preconditions.checkNotNull(
+        field.getAnnotation(FlagInfo.class),
+        "Lazy flag field must be annotated with @FlagInfo.");
+    this.field = field;
+    this.name = FlagField.flagName(field, annotation);
+    this.altName = annotation.altName();
+  }
+
+  Field field() {
+    return field;
+  }
+
+  String name() {
+    return name;
+  }
+
+  String altName() {
+    return altName;
+  }
+
+  boolean unusedMarker() {
+    return field.isAnnotationPresent(FlagzUnused.class);
+  }
+}
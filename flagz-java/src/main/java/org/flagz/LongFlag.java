@@ -0,0 +1,24 @@
+package org.flagz;
+
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * A {@link Flag} holding a `long` that can be read without boxing.
+ *
+ * The value is kept in a primitive volatile field, making {@link #getAsLong()} allocation-free.
+ * Use it instead of {@link #get()} on hot paths.
+ */
+public interface LongFlag extends Flag<Long>, LongSupplier {
+
+  /** Returns the value of this flag as a primitive `long`. */
+  @Override
+  long getAsLong();
+
+  @Override
+  LongFlag withValidator(Predicate<Long> predicate);
+
+  @Override
+  LongFlag withListener(Consumer<Long> predicate);
+}
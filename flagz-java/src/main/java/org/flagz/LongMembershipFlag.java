@@ -0,0 +1,23 @@
+package org.flagz;
+
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A {@link MembershipFlag} of `long`s, e.g. numeric IDs, that are looked up without boxing.
+ *
+ * Values are kept in a hash table of primitives, using a fraction of the memory of a
+ * `Set<Long>`. Use {@link #contains(long)} on hot paths.
+ */
+public interface LongMembershipFlag extends MembershipFlag<Long> {
+
+  /** Returns whether the current value of this flag contains the `long`. */
+  boolean contains(long element);
+
+  @Override
+  LongMembershipFlag withValidator(Predicate<Set<Long>> predicate);
+
+  @Override
+  LongMembershipFlag withListener(Consumer<Set<Long>> predicate);
+}
@@ -0,0 +1,164 @@
+package org.flagz;
+
+import com.google.common.base.Preconditions;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable set of `long`s optimized for {@link #contains(long)}, the value of a
+ * {@link LongMembershipFlag}.
+ *
+ * Values are appended unboxed while the flag value is parsed. Freezing moves them into an
+ * open-addressing table of primitives, with zero marking free slots and tracked on its own, behind
+ * a {@link BloomPrefilter} for large sets like in {@link MembershipSet}. Until frozen, only
+ * {@link #add} may be called.
+ */
+final class LongMembershipSet extends AbstractSet<Long> implements CompactContainer {
+
+  private static final long[] EMPTY = {};
+
+  // Only set until the set is frozen.
+  private long[] building = EMPTY;
+  private int buildingSize = 0;
+  private long[] table;
+  private int shift;
+  private boolean containsZero = false;
+  private int size = 0;
+  private BloomPrefilter prefilter = null;
+
+  /** Returns a frozen copy of the values. */
+  static LongMembershipSet copyOf(long... values) {
+    LongMembershipSet set = new LongMembershipSet();
+    for (long value : values) {
+      set.addLong(value);
+    }
+    set.freeze();
+    return set;
+  }
+
+  /** Returns a frozen copy of the values, which can't be null. */
+  static LongMembershipSet copyOf(Collection<Long> values) {
+    LongMembershipSet set = new LongMembershipSet();
+    values.forEach(set::add);
+    set.freeze();
+    return set;
+  }
+
+  /** Appends the value. Always returns true, as duplicates are only removed by freezing. */
+  @Override
+  public boolean add(Long value) {
+    Preconditions.checkNotNull(value, "Set flag values can't hold null.");
+    addLong(value);
+    return true;
+  }
+
+  void addLong(long value) {
+    CompactSet.checkNotFrozen(building == null);
+    if (buildingSize == building.length) {
+      building = Arrays.copyOf(building, CompactSet.grownCapacity(buildingSize));
+    }
+    building[buildingSize++] = value;
+  }
+
+  @Override
+  public void freeze() {
+    if (building == null) {
+      return;
+    }
+    int capacity = MembershipSet.tableCapacity(buildingSize);
+    table = new long[capacity];
+    shift = MembershipSet.tableShift(capacity);
+    for (int index = 0; index < buildingSize; index++) {
+      long value = building[index];
+      if (value == 0) {
+        size += containsZero ? 0 : 1;
+        containsZero = true;
+        continue;
+      }
+      int slot = MembershipSet.slot(value, shift);
+      while (table[slot] != 0 && table[slot] != value) {
+        slot = (slot + 1) & (capacity - 1);
+      }
+      if (table[slot] == 0) {
+        table[slot] = value;
+        size++;
+      }
+    }
+    if (size >= MembershipSet.PREFILTER_MIN_SIZE) {
+      prefilter = new BloomPrefilter(size);
+      for (long value : table) {
+        prefilter.add(value);
+      }
+    }
+    building = null;
+  }
+
+  boolean contains(long value) {
+    if (value == 0) {
+      return containsZero;
+    } else if (prefilter != null && !prefilter.mightContain(value)) {
+      return false;
+    }
+    int mask = table.length - 1;
+    for (int slot = MembershipSet.slot(value, shift); table[slot] != 0; slot = (slot + 1) & mask) {
+      if (table[slot] == value) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean contains(Object value) {
+    return value instanceof Long && contains(((Long) value).longValue());
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = 0;
+    for (long value : table) {
+      hash += Long.hashCode(value);
+    }
+    return hash;
+  }
+
+  /** Iterates zero first, then in the order of the table. */
+  @Override
+  public Iterator<Long> iterator() {
+    return new Iterator<Long>() {
+      // Slot -1 stands for zero.
+      private int slot = containsZero ? -1 : nextSlot(0);
+
+      @Override
+      public boolean hasNext() {
+        return slot < table.length;
+      }
+
+      @Override
+      public Long next() {
+        if (slot >= table.length) {
+          throw new NoSuchElementException();
+        }
+        long value = slot < 0 ? 0 : table[slot];
+        slot = nextSlot(slot + 1);
+        return value;
+      }
+
+      private int nextSlot(int from) {
+        while (from < table.length && table[from] == 0) {
+          from++;
+        }
+        return from;
+      }
+    };
+  }
+}
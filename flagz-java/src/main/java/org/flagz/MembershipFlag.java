@@ -0,0 +1,25 @@
+package org.flagz;
+
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A {@link Flag} holding a set that is mostly asked whether it contains an element, e.g. a
+ * blocklist of many thousand entries checked on every request.
+ *
+ * Every new value is built into a lookup structure once, when it's parsed, so that
+ * {@link #contains} on the hot path is cheaper than on a `HashSet`, especially for absent elements.
+ * The value is set like any set flag, e.g. `--blocked_users=alice,bob`.
+ */
+public interface MembershipFlag<E> extends Flag<Set<E>> {
+
+  /** Returns whether the current value of this flag contains the element. */
+  boolean contains(Object element);
+
+  @Override
+  MembershipFlag<E> withValidator(Predicate<Set<E>> predicate);
+
+  @Override
+  MembershipFlag<E> withListener(Consumer<Set<E>> predicate);
+}
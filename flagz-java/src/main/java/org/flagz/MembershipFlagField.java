@@ -0,0 +1,163 @@
+package org.flagz;
+
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Flag implementations of {@link MembershipFlag}s.
+ *
+ * Values are parsed like those of any set flag, into a {@link MembershipSet},
+ * {@link IntMembershipSet} or {@link LongMembershipSet} that is frozen, building its lookup
+ * structure, before it's published. Values set directly through {@link #accept} are copied into
+ * one, so that {@link MembershipFlag#contains} never falls back to the plain set.
+ */
+class MembershipFlagField {
+
+  static class ObjectMembershipFlagField<E>
+      extends ContainerFlagField.CollectionFlagField<E, Set<E>> implements MembershipFlag<E> {
+
+    private volatile MembershipSet<E> lookup;
+
+    ObjectMembershipFlagField(Set<E> defaultValue) {
+      this(MembershipSet.copyOf(defaultValue));
+    }
+
+    private ObjectMembershipFlagField(MembershipSet<E> defaultValue) {
+      super(defaultValue, MembershipSet::new);
+      this.lookup = defaultValue;
+    }
+
+    @Override
+    public boolean contains(Object element) {
+      if (readHooks) {
+        return hookedValue().contains(element);
+      }
+      return lookup.contains(element);
+    }
+
+    @Override
+    void setValue(Set<E> value) {
+      super.setValue(value);
+      this.lookup = value instanceof MembershipSet
+          ? (MembershipSet<E>) value
+          : MembershipSet.copyOf(value);
+    }
+
+    @Override
+    public ObjectMembershipFlagField<E> withValidator(Predicate<Set<E>> predicate) {
+      super.withValidator(predicate);
+      return this;
+    }
+
+    @Override
+    public ObjectMembershipFlagField<E> withListener(Consumer<Set<E>> predicate) {
+      super.withListener(predicate);
+      return this;
+    }
+  }
+
+  static class IntMembershipFlagField
+      extends ContainerFlagField.CollectionFlagField<Integer, Set<Integer>>
+      implements IntMembershipFlag {
+
+    private volatile IntMembershipSet lookup;
+
+    IntMembershipFlagField(int... defaultValues) {
+      this(IntMembershipSet.copyOf(defaultValues));
+    }
+
+    private IntMembershipFlagField(IntMembershipSet defaultValue) {
+      super(defaultValue, IntMembershipSet::new);
+      this.lookup = defaultValue;
+    }
+
+    @Override
+    public boolean contains(int element) {
+      if (readHooks) {
+        Set<Integer> pinned = hookedValue();
+        return pinned instanceof IntMembershipSet
+            ? ((IntMembershipSet) pinned).contains(element)
+            : pinned.contains(element);
+      }
+      return lookup.contains(element);
+    }
+
+    @Override
+    public boolean contains(Object element) {
+      return element instanceof Integer && contains(((Integer) element).intValue());
+    }
+
+    @Override
+    void setValue(Set<Integer> value) {
+      super.setValue(value);
+      this.lookup = value instanceof IntMembershipSet
+          ? (IntMembershipSet) value
+          : IntMembershipSet.copyOf(value);
+    }
+
+    @Override
+    public IntMembershipFlagField withValidator(Predicate<Set<Integer>> predicate) {
+      super.withValidator(predicate);
+      return this;
+    }
+
+    @Override
+    public IntMembershipFlagField withListener(Consumer<Set<Integer>> predicate) {
+      super.withListener(predicate);
+      return this;
+    }
+  }
+
+  static class LongMembershipFlagField
+      extends ContainerFlagField.CollectionFlagField<Long, Set<Long>>
+      implements LongMembershipFlag {
+
+    private volatile LongMembershipSet lookup;
+
+    LongMembershipFlagField(long... defaultValues) {
+      this(LongMembershipSet.copyOf(defaultValues));
+    }
+
+    private LongMembershipFlagField(LongMembershipSet defaultValue) {
+      super(defaultValue, LongMembershipSet::new);
+      this.lookup = defaultValue;
+    }
+
+    @Override
+    public boolean contains(long element) {
+      if (readHooks) {
+        Set<Long> pinned = hookedValue();
+        return pinned instanceof LongMembershipSet
+            ? ((LongMembershipSet) pinned).contains(element)
+            : pinned.contains(element);
+      }
+      return lookup.contains(element);
+    }
+
+    @Override
+    public boolean contains(Object element) {
+      return element instanceof Long && contains(((Long) element).longValue());
+    }
+
+    @Override
+    void setValue(Set<Long> value) {
+      super.setValue(value);
+      this.lookup = value instanceof LongMembershipSet
+          ? (LongMembershipSet) value
+          : LongMembershipSet.copyOf(value);
+    }
+
+    @Override
+    public LongMembershipFlagField withValidator(Predicate<Set<Long>> predicate) {
+      super.withValidator(predicate);
+      return this;
+    }
+
+    @Override
+    public LongMembershipFlagField withListener(Consumer<Set<Long>> predicate) {
+      super.withListener(predicate);
+      return this;
+    }
+  }
+}
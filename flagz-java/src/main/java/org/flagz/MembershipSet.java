@@ -0,0 +1,149 @@
+package org.flagz;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable set optimized for {@link #contains}, the value of a {@link MembershipFlag}.
+ *
+ * Elements are collected in a {@link CompactSet} while the value is parsed. Freezing moves them
+ * into an open-addressing table with their hashes alongside, so that probing compares `int`s
+ * rather than calling `equals`, and sets of at least {@link #PREFILTER_MIN_SIZE} elements get a
+ * {@link BloomPrefilter} that rejects most absent elements without touching the table. Smaller
+ * tables fit in the CPU caches anyway. Until frozen, only {@link #add} may be called.
+ */
+final class MembershipSet<E> extends AbstractSet<E> implements CompactContainer {
+
+  static final int PREFILTER_MIN_SIZE = 1024;
+
+  private static final long SLOT_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+  // Only set until the set is frozen.
+  private CompactSet<E> building = new CompactSet<>();
+  private Object[] slots;
+  private int[] hashes;
+  private int shift;
+  private int size;
+  private BloomPrefilter prefilter = null;
+
+  /** Returns a frozen copy of the elements, without duplicates. */
+  static <E> MembershipSet<E> copyOf(Collection<? extends E> elements) {
+    MembershipSet<E> set = new MembershipSet<>();
+    elements.forEach(set::add);
+    set.freeze();
+    return set;
+  }
+
+  @Override
+  public boolean add(E element) {
+    CompactSet.checkNotFrozen(building == null);
+    return building.add(element);
+  }
+
+  @Override
+  public void freeze() {
+    if (building == null) {
+      return;
+    }
+    size = building.size();
+    int capacity = tableCapacity(size);
+    slots = new Object[capacity];
+    hashes = new int[capacity];
+    shift = tableShift(capacity);
+    for (E element : building) {
+      int hash = element.hashCode();
+      int slot = slot(hash, shift);
+      while (slots[slot] != null) {
+        slot = (slot + 1) & (capacity - 1);
+      }
+      slots[slot] = element;
+      hashes[slot] = hash;
+    }
+    prefilter = prefilter(hashes, slots, size);
+    building = null;
+  }
+
+  @Override
+  public boolean contains(Object element) {
+    if (element == null) {
+      return false;
+    }
+    int hash = element.hashCode();
+    if (prefilter != null && !prefilter.mightContain(hash)) {
+      return false;
+    }
+    int mask = slots.length - 1;
+    for (int slot = slot(hash, shift); slots[slot] != null; slot = (slot + 1) & mask) {
+      if (hashes[slot] == hash && element.equals(slots[slot])) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /** Iterates in the order of the table. */
+  @Override
+  public Iterator<E> iterator() {
+    return new Iterator<E>() {
+      private int slot = nextSlot(0);
+
+      @Override
+      public boolean hasNext() {
+        return slot < slots.length;
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public E next() {
+        if (slot >= slots.length) {
+          throw new NoSuchElementException();
+        }
+        E element = (E) slots[slot];
+        slot = nextSlot(slot + 1);
+        return element;
+      }
+
+      private int nextSlot(int from) {
+        while (from < slots.length && slots[from] == null) {
+          from++;
+        }
+        return from;
+      }
+    };
+  }
+
+  private static BloomPrefilter prefilter(int[] hashes, Object[] slots, int size) {
+    if (size < PREFILTER_MIN_SIZE) {
+      return null;
+    }
+    BloomPrefilter prefilter = new BloomPrefilter(size);
+    for (int slot = 0; slot < slots.length; slot++) {
+      if (slots[slot] != null) {
+        prefilter.add(hashes[slot]);
+      }
+    }
+    return prefilter;
+  }
+
+  /** Returns the power of two number of slots that keeps a table at most half full. */
+  static int tableCapacity(int size) {
+    return Integer.highestOneBit(Math.max(1, size * 2 - 1)) << 1;
+  }
+
+  /** Returns the shift that maps the 64-bit products of {@link #slot} to the slots. */
+  static int tableShift(int capacity) {
+    return Long.numberOfLeadingZeros(capacity) + 1;
+  }
+
+  /** Returns the first slot to probe for the hash, spreading the bits of all of it. */
+  static int slot(long hash, int shift) {
+    return (int) ((hash * SLOT_MULTIPLIER) >>> shift);
+  }
+}
@@ -5,12 +5,82 @@ import com.google.common.collect.ImmutableSet;
 
 import java.util.Set;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * Flag implementations for all primitive Java types.
+ *
+ * `int`, `long`, `double` and `boolean` have specialized implementations that store the value
+ * unboxed, see {@link IntFlag}, {@link LongFlag}, {@link DoubleFlag} and {@link BooleanFlag}.
  */
 class PrimitiveFlagField {
 
+  private static final Set<String> VALID_BOOLEAN_VALUES = ImmutableSet.of("true", "false");
+
+  /**
+   * Parses the value of a boolean flag. An empty value is true, so that `--my_flag` is equal to
+   * `--my_flag=true`.
+   */
+  private static boolean parseBoolean(String value, Flag<?> flag) throws FlagException {
+    if (Strings.isNullOrEmpty(value)) {
+      return true;
+    }
+    String lowerValue = value.toLowerCase();
+    if (!VALID_BOOLEAN_VALUES.contains(lowerValue)) {
+      throw new FlagException.IllegalFormat(
+          flag, value, new IllegalArgumentException("Accepted values ['true', 'false']."));
+    }
+    return lowerValue.equals("true");
+  }
+
+  /**
+   * Base of the flags that also keep their value unboxed, for the allocation-free getters of
+   * {@link IntFlag} and the like.
+   *
+   * Null is rejected as a validator would, so that nothing is stored, and every stored value is
+   * handed to {@link #setUnboxed}. Subclasses read the unboxed copy unless {@link #readHooks} are
+   * on, when they return {@link #hookedValue}.
+   */
+  abstract static class UnboxedFlagField<T, F extends UnboxedFlagField<T, F>>
+      extends FlagField<T> {
+
+    UnboxedFlagField(T defaultValue) {
+      super(defaultValue);
+    }
+
+    /** Keeps the unboxed copy of a value, called right after it's stored. */
+    abstract void setUnboxed(T value);
+
+    @Override
+    final void checkValidators(T value) {
+      if (value == null) {
+        throw new FlagException.BadValue(
+            this, null, new IllegalArgumentException("Unboxed flags can't be null."));
+      }
+      super.checkValidators(value);
+    }
+
+    @Override
+    final void setValue(T value) {
+      super.setValue(value);
+      setUnboxed(value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public F withValidator(Predicate<T> predicate) {
+      super.withValidator(predicate);
+      return (F) this;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public F withListener(Consumer<T> predicate) {
+      super.withListener(predicate);
+      return (F) this;
+    }
+  }
 
   static class EnumFlagField<E extends Enum<E>> extends FlagField<E> {
     public EnumFlagField(E defaultValue) {
@@ -92,28 +162,118 @@ class PrimitiveFlagField {
     }
   }
 
-  static class BooleanFlagField extends FlagField<Boolean> {
+  static class IntFlagField extends UnboxedFlagField<Integer, IntFlagField> implements IntFlag {
 
-    private static final Set<String> VALID_VALUES = ImmutableSet.of("true", "false");
+    private volatile int value;
 
-    BooleanFlagField(Boolean defaultValue) {
+    IntFlagField(int defaultValue) {
       super(defaultValue);
+      this.value = defaultValue;
     }
 
     @Override
-    protected void parseString(String value) {
-      // Handle shorthand of Boolean flags. E.g. --my_flag is equal to --my_flag=true
-      if (Strings.isNullOrEmpty(value)) {
-        accept(true);
-      } else {
-        String lowerValue = value.toLowerCase();
-        if (!VALID_VALUES.contains(lowerValue)) {
-          throw new FlagException.IllegalFormat(
-              this, value,
-              new IllegalArgumentException("Accepted values ['true', 'false']."));
-        }
-        accept(lowerValue.equals("true"));
-      }
+    public int getAsInt() {
+      return readHooks ? hookedValue() : value;
+    }
+
+    @Override
+    void setUnboxed(Integer value) {
+      this.value = value;
+    }
+
+    @Override
+    protected void parseString(String value) throws FlagException {
+      accept((Integer) NumberFlagField.fromString(value, Integer.class, this));
+    }
+  }
+
+  static class LongFlagField extends UnboxedFlagField<Long, LongFlagField> implements LongFlag {
+
+    private volatile long value;
+
+    LongFlagField(long defaultValue) {
+      super(defaultValue);
+      this.value = defaultValue;
+    }
+
+    @Override
+    public long getAsLong() {
+      return readHooks ? hookedValue() : value;
+    }
+
+    @Override
+    void setUnboxed(Long value) {
+      this.value = value;
+    }
+
+    @Override
+    protected void parseString(String value) throws FlagException {
+      accept((Long) NumberFlagField.fromString(value, Long.class, this));
+    }
+  }
+
+  static class DoubleFlagField extends UnboxedFlagField<Double, DoubleFlagField>
+      implements DoubleFlag {
+
+    private volatile double value;
+
+    DoubleFlagField(double defaultValue) {
+      super(defaultValue);
+      this.value = defaultValue;
+    }
+
+    @Override
+    public double getAsDouble() {
+      return readHooks ? hookedValue() : value;
+    }
+
+    @Override
+    void setUnboxed(Double value) {
+      this.value = value;
+    }
+
+    @Override
+    protected void parseString(String value) throws FlagException {
+      accept((Double) NumberFlagField.fromString(value, Double.class, this));
+    }
+  }
+
+  static class BooleanFlagField extends UnboxedFlagField<Boolean, BooleanFlagField>
+      implements BooleanFlag {
+
+    private volatile boolean value;
+
+    BooleanFlagField(boolean defaultValue) {
+      super(defaultValue);
+      this.value = defaultValue;
+    }
+
+    @Override
+    public boolean getAsBoolean() {
+      return readHooks ? hookedValue() : value;
+    }
+
+    @Override
+    void setUnboxed(Boolean value) {
+      this.value = value;
+    }
+
+    @Override
+    protected void parseString(String value) throws FlagException {
+      accept(parseBoolean(value, this));
+    }
+  }
+
+  /** A {@link Boolean} flag that may hold null, like the other boxed flags. */
+  static class BoxedBooleanFlagField extends FlagField<Boolean> {
+
+    BoxedBooleanFlagField(Boolean defaultValue) {
+      super(defaultValue);
+    }
+
+    @Override
+    protected void parseString(String value) throws FlagException {
+      accept(parseBoolean(value, this));
     }
   }
 }
@@ -1,36 +1,208 @@
 package org.flagz;
 
+import com.google.common.base.MoreObjects;
 import com.google.common.collect.ImmutableList;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.reflections.Reflections;
+import org.reflections.Store;
 import org.reflections.scanners.FieldAnnotationsScanner;
 import org.reflections.scanners.SubTypesScanner;
 import org.reflections.util.ClasspathHelper;
 import org.reflections.util.ConfigurationBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.lang.reflect.Field;
 import java.net.URL;
-import java.util.HashMap;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
-/** Contains a cache of Reflection results to speed up multiple reflection operations. */
+/**
+ * Contains a cache of Reflection results to speed up multiple reflection operations.
+ *
+ * Results are only needed while flags are discovered, yet hold the names of all scanned classes.
+ * The least recently used ones are evicted past `flagz_reflections_cache_size` entries, and all
+ * of them can be released once {@link Flagz#parse} is done. Results can also be persisted across
+ * JVM starts, see {@link ScanCache}.
+ */
 class ReflectionsCache {
 
-  static final Map<List<String>, Reflections> packagePrefixesToReflections = new HashMap<>();
+  private static final Logger LOG = LoggerFactory.getLogger(ReflectionsCache.class);
 
-  static synchronized Reflections reflectionsForPrefixes(List<String> prefixes) {
-    if (packagePrefixesToReflections.containsKey(prefixes)) {
-      return packagePrefixesToReflections.get(prefixes);
+  @FlagInfo(name = "flagz_reflections_cache_size",
+      help = "Maximum number of classpath scans kept in memory for later Flagz.parse calls.")
+  private static final IntFlag maxCachedScans = Flagz.valueOf(16);
+
+  @FlagInfo(name = "flagz_release_reflections_cache",
+      help = "Drop all classpath scans kept in memory once Flagz.parse is done.")
+  private static final BooleanFlag releaseAfterParse = Flagz.valueOf(false);
+
+  static final Map<Set<URL>, CachedScan> urlsToReflections = new ConcurrentHashMap<>();
+
+  private static final AtomicLong clock = new AtomicLong();
+  private static final AtomicLong requests = new AtomicLong();
+  private static final AtomicLong scans = new AtomicLong();
+  private static final AtomicLong evictions = new AtomicLong();
+  private static final AtomicLong releases = new AtomicLong();
+  private static final AtomicLong estimatedFreedBytes = new AtomicLong();
+
+  static Reflections reflectionsForPrefixes(List<String> prefixes) {
+    return reflectionsForUrls(urlsToReflect(prefixes));
+  }
+
+  /**
+   * Returns all fields annotated with {@link FlagInfo} in the classpath entries of the prefixes.
+   *
+   * Entries with an index generated by `FlagIndexProcessor` are read from it. All others are
+   * scanned with Reflections, through the {@link ScanCache} if it's enabled, so that jars not built
+   * with the processor, e.g. third-party ones, keep their flags.
+   *
+   * Inside a GraalVM native image nothing is scanned: all flags listed by the indexes built into
+   * the image are returned, regardless of the prefixes.
+   */
+  static Set<Field> flagFieldsForPrefixes(List<String> prefixes) {
+    ClassLoader classLoader = MoreObjects.firstNonNull(
+        ClasspathHelper.contextClassLoader(), ClasspathHelper.staticClassLoader());
+    if (FlagIndex.inNativeImage()) {
+      return FlagIndex.allIndexedFields(classLoader);
+    }
+    Map<String, URL> indexes = FlagIndex.indexesByRoot(classLoader);
+    Set<Field> fields = new HashSet<>();
+    Set<URL> unindexedUrls = new HashSet<>();
+    for (URL url : urlsToReflect(prefixes)) {
+      URL index = indexes.get(FlagIndex.rootKey(url));
+      if (index != null) {
+        fields.addAll(FlagIndex.readFields(index, classLoader));
+      } else {
+        unindexedUrls.add(url);
+      }
+    }
+    if (!unindexedUrls.isEmpty()) {
+      LOG.debug("Scanning classpath entries without a flagz index: {}", unindexedUrls);
+      fields.addAll(reflectionsForUrls(unindexedUrls).getFieldsAnnotatedWith(FlagInfo.class));
     }
-    ConfigurationBuilder builder = new ConfigurationBuilder()
-        .setUrls(urlsToReflect(prefixes))
-        .setScanners(
-            new FieldAnnotationsScanner(),
-            new SubTypesScanner());
-    Reflections reflections = new Reflections(builder);
-    packagePrefixesToReflections.put(prefixes, reflections);
-    return reflections;
+    return fields;
+  }
+
+  /**
+   * Returns the scan of the URLs, scanning them unless they were scanned before.
+   *
+   * The first caller for a set of URLs scans them, concurrent callers for the same set wait for
+   * its result. Scans are memoized as futures, so that no lock is held while scanning, and a scan
+   * may look up another. A failed scan isn't kept, the next caller scans again.
+   */
+  static Reflections reflectionsForUrls(Set<URL> urls) {
+    requests.incrementAndGet();
+    CachedScan cached = urlsToReflections.get(urls);
+    if (cached == null) {
+      StartupRecorder recorder = StartupRecorder.current();
+      CachedScan created = new CachedScan(() -> {
+        String cacheDirectory = System.getProperty(ScanCache.DIRECTORY_PROPERTY);
+        return cacheDirectory == null
+            ? scan(urls, recorder)
+            : ScanCache.loadOrScan(
+                Paths.get(cacheDirectory), urls, toScan -> scan(toScan, recorder));
+      });
+      cached = urlsToReflections.putIfAbsent(urls, created);
+      if (cached == null) {
+        scans.incrementAndGet();
+        cached = created;
+      }
+    }
+    cached.lastUsed = clock.incrementAndGet();
+    evictOverflow();
+    try {
+      return cached.reflections();
+    } catch (RuntimeException | Error exception) {
+      urlsToReflections.remove(urls, cached);
+      throw exception;
+    }
+  }
+
+  /** Drops all scan results if `flagz_release_reflections_cache` is set. */
+  static void releaseIfEnabled() {
+    if (releaseAfterParse.getAsBoolean()) {
+      release();
+    }
+  }
+
+  /** Drops all scan results. Later lookups scan again. */
+  static void release() {
+    for (Map.Entry<Set<URL>, CachedScan> entry : urlsToReflections.entrySet()) {
+      if (urlsToReflections.remove(entry.getKey(), entry.getValue())) {
+        releases.incrementAndGet();
+        estimatedFreedBytes.addAndGet(entry.getValue().estimatedBytes);
+      }
+    }
+  }
+
+  static ReflectionsCacheStats stats() {
+    long cachedBytes = 0;
+    int cachedScans = 0;
+    for (CachedScan cached : urlsToReflections.values()) {
+      cachedBytes += cached.estimatedBytes;
+      cachedScans++;
+    }
+    return new ReflectionsCacheStats(cachedScans, cachedBytes, requests.get(), scans.get(),
+        evictions.get(), releases.get(), estimatedFreedBytes.get());
+  }
+
+  /** Evicts the least recently used scan results past the maximum size. */
+  private static void evictOverflow() {
+    int maxSize = Math.max(1, maxCachedScans.getAsInt());
+    while (urlsToReflections.size() > maxSize) {
+      Map.Entry<Set<URL>, CachedScan> oldest = null;
+      for (Map.Entry<Set<URL>, CachedScan> entry : urlsToReflections.entrySet()) {
+        if (oldest == null || entry.getValue().lastUsed < oldest.getValue().lastUsed) {
+          oldest = entry;
+        }
+      }
+      if (oldest != null && urlsToReflections.remove(oldest.getKey(), oldest.getValue())) {
+        evictions.incrementAndGet();
+        estimatedFreedBytes.addAndGet(oldest.getValue().estimatedBytes);
+      }
+    }
+  }
+
+  /**
+   * Scans each URL separately on the common {@link java.util.concurrent.ForkJoinPool}, and merges
+   * the results, so that scanning many jars scales with the number of cores. Scan times of the URLs
+   * are recorded if the recorder isn't null.
+   */
+  private static Reflections scan(Set<URL> urls, StartupRecorder recorder) {
+    List<Reflections> scanned = urls.parallelStream()
+        .map(url -> {
+          long start = System.nanoTime();
+          Reflections reflections = new Reflections(new ConfigurationBuilder()
+              .setUrls(url)
+              .setScanners(
+                  new FieldAnnotationsScanner(),
+                  new SubTypesScanner()));
+          if (recorder != null) {
+            recorder.recordUrlScan(url, System.nanoTime() - start);
+          }
+          return reflections;
+        })
+        .collect(Collectors.toList());
+    // No scanners, so that the empty instance doesn't scan anything before the merges.
+    Reflections merged = new Reflections(new ConfigurationBuilder().setScanners());
+    // Created upfront, since queries of indexes that no URL contributed to would throw.
+    merged.getStore().getOrCreate(FieldAnnotationsScanner.class.getSimpleName());
+    merged.getStore().getOrCreate(SubTypesScanner.class.getSimpleName());
+    scanned.forEach(merged::merge);
+    return merged;
   }
 
   /**
@@ -42,9 +214,63 @@ class ReflectionsCache {
   private static Set<URL> urlsToReflect(List<String> packagePrefixes) {
     List<String> prefixesWithFlags = ImmutableList.<String>builder().addAll(packagePrefixes)
         .add("org.flagz").build();
-    return prefixesWithFlags
-        .stream()
-        .flatMap(prefix -> ClasspathHelper.forPackage(prefix).stream())
-        .collect(Collectors.toSet());
+    StartupRecorder recorder = StartupRecorder.current();
+    Set<URL> urls = new HashSet<>();
+    for (String prefix : prefixesWithFlags) {
+      Collection<URL> prefixUrls = ClasspathHelper.forPackage(prefix);
+      if (recorder != null) {
+        recorder.recordPrefix(prefix, prefixUrls);
+      }
+      urls.addAll(prefixUrls);
+    }
+    return urls;
+  }
+
+  /**
+   * A cached scan, with what's needed to pick evictions and report memory. The scan runs on the
+   * first thread asking for its result, others wait for it. Until it's done it counts as empty.
+   */
+  static class CachedScan {
+    // Rough per-object overheads of the store's strings and multimap entries.
+    private static final int STRING_OVERHEAD = 40;
+    private static final int ENTRY_OVERHEAD = 32;
+
+    private final FutureTask<Reflections> scan;
+    private volatile long estimatedBytes;
+    private volatile long lastUsed;
+
+    CachedScan(Supplier<Reflections> scanner) {
+      this.scan = new FutureTask<>(() -> {
+        Reflections reflections = scanner.get();
+        estimatedBytes = estimateBytes(reflections);
+        return reflections;
+      });
+    }
+
+    /** Returns the result of the scan, running it unless another thread is or did. */
+    Reflections reflections() {
+      scan.run();
+      try {
+        return Uninterruptibles.getUninterruptibly(scan);
+      } catch (ExecutionException exception) {
+        Throwables.propagateIfPossible(exception.getCause());
+        throw new IllegalStateException("Scanning the classpath failed.", exception.getCause());
+      }
+    }
+
+    private static long estimateBytes(Reflections reflections) {
+      long bytes = 0;
+      Store store = reflections.getStore();
+      for (String index : store.keySet()) {
+        Multimap<String, String> entries = store.get(index);
+        for (String key : entries.keySet()) {
+          bytes += STRING_OVERHEAD + 2L * key.length();
+        }
+        for (String value : entries.values()) {
+          bytes += ENTRY_OVERHEAD + STRING_OVERHEAD + 2L * value.length();
+        }
+      }
+      return bytes;
+    }
   }
 }
@@ -0,0 +1,76 @@
+package org.flagz;
+
+/**
+ * Counters of the classpath scans cached by {@link Flagz#parse}, returned by
+ * {@link Flagz#reflectionsCacheStats}.
+ *
+ * Memory sizes are estimates from the number and length of the class, field and annotation names
+ * held, not measurements of the heap.
+ */
+public final class ReflectionsCacheStats {
+
+  private final int cachedScans;
+  private final long estimatedCachedBytes;
+  private final long requests;
+  private final long scans;
+  private final long evictions;
+  private final long releases;
+  private final long estimatedFreedBytes;
+
+  ReflectionsCacheStats(int cachedScans, long estimatedCachedBytes, long requests, long scans,
+      long evictions, long releases, long estimatedFreedBytes) {
+    this.cachedScans = cachedScans;
+    this.estimatedCachedBytes = estimatedCachedBytes;
+    this.requests = requests;
+    this.scans = scans;
+    this.evictions = evictions;
+    this.releases = releases;
+    this.estimatedFreedBytes = estimatedFreedBytes;
+  }
+
+  /** Returns the number of scan results currently held. */
+  public int cachedScans() {
+    return cachedScans;
+  }
+
+  /** Returns the estimated memory held by the current scan results. */
+  public long estimatedCachedBytes() {
+    return estimatedCachedBytes;
+  }
+
+  /** Returns the number of lookups of scan results, i.e. hits plus scans. */
+  public long requests() {
+    return requests;
+  }
+
+  /** Returns the number of lookups that had to scan the classpath (or read the on-disk cache). */
+  public long scans() {
+    return scans;
+  }
+
+  /** Returns the number of scan results dropped because the cache was full. */
+  public long evictions() {
+    return evictions;
+  }
+
+  /** Returns the number of scan results dropped because the cache was released after init. */
+  public long releases() {
+    return releases;
+  }
+
+  /** Returns the estimated memory freed by evictions and releases. */
+  public long estimatedFreedBytes() {
+    return estimatedFreedBytes;
+  }
+
+  @Override
+  public String toString() {
+    return "ReflectionsCacheStats{cachedScans=" + cachedScans
+        + ", estimatedCachedBytes=" + estimatedCachedBytes
+        + ", requests=" + requests
+        + ", scans=" + scans
+        + ", evictions=" + evictions
+        + ", releases=" + releases
+        + ", estimatedFreedBytes=" + estimatedFreedBytes + "}";
+  }
+}
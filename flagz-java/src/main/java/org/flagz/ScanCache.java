@@ -0,0 +1,277 @@
+package org.flagz;
+
+import com.google.common.collect.Multimap;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.reflections.Reflections;
+import org.reflections.ReflectionsException;
+import org.reflections.serializers.Serializer;
+import org.reflections.util.ConfigurationBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Persists Reflections scan results between JVM starts, for classpath entries without a flag index.
+ *
+ * Enabled by setting the `flagz.scan_cache_dir` system property to a writable directory. A cache
+ * file is keyed by a fingerprint of the scanned entries: their URLs, and the sizes and modification
+ * times of the jars (or of every file in a directory). Jars nested in another jar, e.g. in a fat
+ * jar, are fingerprinted by the outer jar. Any change produces a new fingerprint, so stale results
+ * are never read. Entries that can't be fingerprinted, e.g. fetched over the network, aren't
+ * cached at all. Files are written atomically, so many JVMs can share a directory.
+ *
+ * Only the {@value #MAX_CACHE_FILES} most recently used files are kept, so that the files of
+ * earlier deploys don't pile up. Reading a file marks it as used.
+ */
+class ScanCache implements Serializer {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ScanCache.class);
+
+  static final String DIRECTORY_PROPERTY = "flagz.scan_cache_dir";
+
+  static final int MAX_CACHE_FILES = 8;
+
+  private static final String CACHE_FILE_GLOB = "scan-*.cache";
+  private static final String HEADER = "# flagz scan cache v1";
+  private static final String INDEX_PREFIX = "@";
+
+  /**
+   * Returns the scan results of the URLs from the cache in the directory, or scans and caches them.
+   *
+   * Failing to read or write the cache is logged, and never fails the scan itself.
+   */
+  static Reflections loadOrScan(Path directory, Set<URL> urls,
+      Function<Set<URL>, Reflections> scanner) {
+    ScanCache serializer = new ScanCache();
+    Path cacheFile;
+    try {
+      String fingerprint = fingerprint(urls);
+      if (fingerprint == null) {
+        LOG.debug("Not caching the scan of {}, some entries can't be fingerprinted.", urls);
+        return scanner.apply(urls);
+      }
+      cacheFile = directory.resolve("scan-" + fingerprint + ".cache");
+      if (Files.isRegularFile(cacheFile)) {
+        Reflections reflections;
+        try (InputStream input = Files.newInputStream(cacheFile)) {
+          reflections = serializer.read(input);
+        }
+        markUsed(cacheFile);
+        return reflections;
+      }
+    } catch (IOException | UncheckedIOException | ReflectionsException exception) {
+      LOG.warn("Couldn't read the flagz scan cache in {}, scanning the classpath.", directory,
+          exception);
+      return scanner.apply(urls);
+    }
+    Reflections reflections = scanner.apply(urls);
+    Path temporary = null;
+    try {
+      Files.createDirectories(directory);
+      temporary = Files.createTempFile(directory, "scan-", ".tmp");
+      serializer.save(reflections, temporary.toString());
+      Files.move(temporary, cacheFile, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException | UncheckedIOException exception) {
+      LOG.warn("Couldn't write the flagz scan cache in {}.", directory, exception);
+      deleteQuietly(temporary);
+      return reflections;
+    }
+    prune(directory, MAX_CACHE_FILES);
+    return reflections;
+  }
+
+  /** Deletes all but the given number of most recently used cache files in the directory. */
+  static void prune(Path directory, int keep) {
+    List<Path> files = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, CACHE_FILE_GLOB)) {
+      stream.forEach(files::add);
+    } catch (IOException exception) {
+      LOG.warn("Couldn't list the flagz scan cache in {}.", directory, exception);
+      return;
+    }
+    if (files.size() <= keep) {
+      return;
+    }
+    Map<Path, FileTime> lastUsed = new HashMap<>();
+    for (Path file : files) {
+      try {
+        lastUsed.put(file, Files.getLastModifiedTime(file));
+      } catch (IOException exception) {
+        // Already deleted, e.g. by another JVM sharing the directory.
+        lastUsed.put(file, FileTime.fromMillis(0));
+      }
+    }
+    files.sort(Comparator.comparing(lastUsed::get, Comparator.reverseOrder()));
+    files.subList(keep, files.size()).forEach(ScanCache::deleteQuietly);
+  }
+
+  /**
+   * Returns a hash identifying the given classpath entries in their current state, or null if an
+   * entry isn't a local file whose changes could be detected.
+   */
+  @Nullable
+  static String fingerprint(Set<URL> urls) throws IOException {
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putString(HEADER, StandardCharsets.UTF_8);
+    List<URL> sorted = urls.stream()
+        .sorted(Comparator.comparing(URL::toExternalForm))
+        .collect(Collectors.toList());
+    for (URL url : sorted) {
+      hasher.putString(url.toExternalForm(), StandardCharsets.UTF_8);
+      Path path = pathOf(url);
+      if (path == null) {
+        return null;
+      }
+      if (!Files.exists(path)) {
+        continue;
+      }
+      if (Files.isDirectory(path)) {
+        try (Stream<Path> files = Files.walk(path)) {
+          List<Path> regularFiles =
+              files.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+          for (Path file : regularFiles) {
+            hasher.putString(path.relativize(file).toString(), StandardCharsets.UTF_8);
+            putSizeAndTime(hasher, file);
+          }
+        }
+      } else {
+        putSizeAndTime(hasher, path);
+      }
+    }
+    return hasher.hash().toString();
+  }
+
+  @Override
+  public Reflections read(InputStream inputStream) {
+    // No scanners, so that the empty instance doesn't scan anything before being filled in.
+    Reflections reflections = new Reflections(new ConfigurationBuilder().setScanners());
+    BufferedReader reader =
+        new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+    try {
+      if (!HEADER.equals(reader.readLine())) {
+        throw new ReflectionsException("Not a flagz scan cache.");
+      }
+      Multimap<String, String> index = null;
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith(INDEX_PREFIX)) {
+          index = reflections.getStore().getOrCreate(line.substring(INDEX_PREFIX.length()));
+          continue;
+        }
+        int separator = line.indexOf('\t');
+        if (index == null || separator < 0) {
+          throw new ReflectionsException("Malformed flagz scan cache line: " + line);
+        }
+        index.put(line.substring(0, separator), line.substring(separator + 1));
+      }
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+    return reflections;
+  }
+
+  @Override
+  public File save(Reflections reflections, String filename) {
+    File file = new File(filename);
+    try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+      writer.write(toString(reflections));
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+    return file;
+  }
+
+  @Override
+  public String toString(Reflections reflections) {
+    StringBuilder builder = new StringBuilder(HEADER).append('\n');
+    // Sorted, so that equal scans produce equal files.
+    Map<String, Multimap<String, String>> indexes = new TreeMap<>();
+    for (String index : reflections.getStore().keySet()) {
+      indexes.put(index, reflections.getStore().get(index));
+    }
+    for (Map.Entry<String, Multimap<String, String>> index : indexes.entrySet()) {
+      builder.append(INDEX_PREFIX).append(index.getKey()).append('\n');
+      index.getValue().entries().stream()
+          .map(entry -> entry.getKey() + '\t' + entry.getValue())
+          .sorted()
+          .forEach(line -> builder.append(line).append('\n'));
+    }
+    return builder.toString();
+  }
+
+  private static void putSizeAndTime(Hasher hasher, Path file) throws IOException {
+    hasher.putLong(Files.size(file));
+    hasher.putLong(Files.getLastModifiedTime(file).toMillis());
+  }
+
+  /** Marks the cache file as recently used, so that it's pruned last. */
+  private static void markUsed(Path file) {
+    try {
+      Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+    } catch (IOException exception) {
+      LOG.debug("Couldn't mark {} as used.", file, exception);
+    }
+  }
+
+  private static void deleteQuietly(Path file) {
+    if (file == null) {
+      return;
+    }
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException exception) {
+      LOG.debug("Couldn't delete {}.", file, exception);
+    }
+  }
+
+  /**
+   * Returns the local file or directory of the entry. For a `jar:` URL, e.g.
+   * `jar:file:/app.jar!/BOOT-INF/lib/dependency.jar!/`, that's the outermost jar, which changes
+   * whenever a jar nested in it does.
+   */
+  @Nullable
+  private static Path pathOf(URL url) {
+    String spec = url.toExternalForm();
+    if ("jar".equals(url.getProtocol())) {
+      int separator = spec.indexOf("!/");
+      spec = spec.substring("jar:".length(), separator < 0 ? spec.length() : separator);
+    }
+    if (!spec.startsWith("file:")) {
+      return null;
+    }
+    try {
+      return Paths.get(new URI(spec));
+    } catch (URISyntaxException | IllegalArgumentException exception) {
+      return null;
+    }
+  }
+}
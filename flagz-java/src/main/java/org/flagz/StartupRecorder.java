@@ -0,0 +1,149 @@
+package org.flagz;
+
+import org.flagz.StartupReport.Phase;
+
+import java.net.URL;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Collects the timings of one {@link Flagz#parse} call into a {@link StartupReport}.
+ *
+ * The recorder is bound to the parsing thread while it runs, so that scanners, the registry and
+ * flags can time their work through {@link #timed} without it being passed around. Phases nested
+ * in each other are only counted once, in the innermost one.
+ */
+class StartupRecorder implements AutoCloseable {
+
+  private static final ThreadLocal<StartupRecorder> CURRENT = new ThreadLocal<>();
+
+  // Set by the first recorder opened on any thread, and never reset. Until then flag updates skip
+  // the thread-local lookup entirely, like BaseFlag.readHooks.
+  static boolean recordingUsed = false;
+
+  private final long startNanos = System.nanoTime();
+  private final Map<Phase, Long> phaseNanos = new EnumMap<>(Phase.class);
+  // Written by the threads scanning classpath entries in parallel, see also #async.
+  private final Map<URL, Long> urlScanNanos = new ConcurrentHashMap<>();
+  private final Map<String, Collection<URL>> prefixUrls =
+      Collections.synchronizedMap(new LinkedHashMap<>());
+  private final Map<String, Long> scannerNanos = new LinkedHashMap<>();
+  private final StartupRecorder previous;
+  // Time spent in phases nested in the one running on this thread.
+  private long nestedNanos = 0;
+
+  private StartupRecorder(StartupRecorder previous) {
+    this.previous = previous;
+  }
+
+  /** Starts recording on the calling thread, until the recorder is closed. */
+  static StartupRecorder open() {
+    StartupRecorder recorder = new StartupRecorder(CURRENT.get());
+    recordingUsed = true;
+    CURRENT.set(recorder);
+    return recorder;
+  }
+
+  /** Returns the recorder of the calling thread, if it's within {@link Flagz#parse}. */
+  static StartupRecorder current() {
+    return recordingUsed ? CURRENT.get() : null;
+  }
+
+  /**
+   * Runs the work on the common {@link java.util.concurrent.ForkJoinPool}, recording the classpath
+   * entries it scans if the calling thread is recording.
+   *
+   * Phases aren't timed on other threads, the work must not start any. The caller times waiting
+   * for the result instead, which is what the work adds to the startup time.
+   */
+  static <T> CompletableFuture<T> async(Supplier<T> work) {
+    StartupRecorder recorder = current();
+    if (recorder == null) {
+      return CompletableFuture.supplyAsync(work);
+    }
+    return CompletableFuture.supplyAsync(() -> {
+      StartupRecorder previous = CURRENT.get();
+      CURRENT.set(recorder);
+      try {
+        return work.get();
+      } finally {
+        if (previous == null) {
+          CURRENT.remove();
+        } else {
+          CURRENT.set(previous);
+        }
+      }
+    });
+  }
+
+  /** Runs the work, counting its time towards the phase if the calling thread is recording. */
+  static <T> T timed(Phase phase, Supplier<T> work) {
+    StartupRecorder recorder = current();
+    return recorder == null ? work.get() : recorder.time(phase, work);
+  }
+
+  /** Runs the work, counting its time towards the phase if the calling thread is recording. */
+  static void timed(Phase phase, Runnable work) {
+    timed(phase, () -> {
+      work.run();
+      return null;
+    });
+  }
+
+  <T> T time(Phase phase, Supplier<T> work) {
+    long start = System.nanoTime();
+    long outerNestedNanos = nestedNanos;
+    nestedNanos = 0;
+    try {
+      return work.get();
+    } finally {
+      long elapsed = System.nanoTime() - start;
+      phaseNanos.merge(phase, elapsed - nestedNanos, Long::sum);
+      nestedNanos = outerNestedNanos + elapsed;
+    }
+  }
+
+  /** Records the scan time of a classpath entry. Safe to call from any thread. */
+  void recordUrlScan(URL url, long nanos) {
+    urlScanNanos.merge(url, nanos, Long::sum);
+  }
+
+  /** Records the classpath entries scanned for a package prefix. Safe to call from any thread. */
+  void recordPrefix(String prefix, Collection<URL> urls) {
+    prefixUrls.put(prefix, urls);
+  }
+
+  /** Records the time a scanner took to find and bind its flags. */
+  void recordScanner(FlagFieldScanner scanner, long nanos) {
+    scannerNanos.merge(scanner.getClass().getSimpleName(), nanos, Long::sum);
+  }
+
+  StartupReport report() {
+    Map<Phase, Duration> phases = new EnumMap<>(Phase.class);
+    phaseNanos.forEach((phase, nanos) -> phases.put(phase, Duration.ofNanos(nanos)));
+    Map<String, Duration> prefixes = new LinkedHashMap<>();
+    prefixUrls.forEach((prefix, urls) -> prefixes.put(prefix, Duration.ofNanos(
+        urls.stream().mapToLong(url -> urlScanNanos.getOrDefault(url, 0L)).sum())));
+    Map<String, Duration> scanners = new LinkedHashMap<>();
+    scannerNanos.forEach((scanner, nanos) -> scanners.put(scanner, Duration.ofNanos(nanos)));
+    return new StartupReport(
+        Duration.ofNanos(System.nanoTime() - startNanos), phases, prefixes, scanners);
+  }
+
+  /** Stops recording on the calling thread. */
+  @Override
+  public void close() {
+    if (previous == null) {
+      CURRENT.remove();
+    } else {
+      CURRENT.set(previous);
+    }
+  }
+}
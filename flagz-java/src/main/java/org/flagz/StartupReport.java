@@ -0,0 +1,100 @@
+package org.flagz;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Timings of the phases of the {@link Flagz#parse} call that created a {@link FlagFieldRegistry}.
+ *
+ * Phase durations exclude the phases nested in them, e.g. {@link Phase#FIELD_BINDING} doesn't
+ * include syncing {@link FlagProperty} values, so they add up to at most {@link #total}. The
+ * classpath scan is further broken down per package prefix, and the whole discovery per scanner.
+ * Returned by {@link FlagFieldRegistry#startupReport}.
+ */
+public final class StartupReport {
+
+  /** A phase of {@link Flagz#parse}. */
+  public enum Phase {
+    /** Finding `@FlagInfo` fields on the classpath, through indexes, caches or Reflections. */
+    CLASSPATH_SCAN,
+    /** Finding and initializing Scala objects with flags, only for `ScalaFlagz.parse`. */
+    SCALA_OBJECT_SCAN,
+    /** Reading flag fields, initializing their classes, and binding flags to them. */
+    FIELD_BINDING,
+    /** Reading and syncing the system properties of flags with a {@link FlagProperty}. */
+    PROPERTY_SYNC,
+    /** Splitting the arguments, and parsing and setting their values. */
+    ARGUMENT_PARSING,
+    /** Running validators of flags, including the mappers of flags derived by {@link Flag#map}. */
+    VALIDATION
+  }
+
+  static final StartupReport EMPTY = new StartupReport(
+      Duration.ZERO, ImmutableMap.of(), ImmutableMap.of(), ImmutableMap.of());
+
+  private final Duration total;
+  private final Map<Phase, Duration> phases;
+  private final Map<String, Duration> classpathScanByPrefix;
+  private final Map<String, Duration> discoveryByScanner;
+
+  StartupReport(Duration total, Map<Phase, Duration> phases,
+      Map<String, Duration> classpathScanByPrefix, Map<String, Duration> discoveryByScanner) {
+    this.total = total;
+    Map<Phase, Duration> allPhases = new EnumMap<>(Phase.class);
+    for (Phase phase : Phase.values()) {
+      allPhases.put(phase, phases.getOrDefault(phase, Duration.ZERO));
+    }
+    this.phases = ImmutableMap.copyOf(allPhases);
+    this.classpathScanByPrefix = ImmutableMap.copyOf(classpathScanByPrefix);
+    this.discoveryByScanner = ImmutableMap.copyOf(discoveryByScanner);
+  }
+
+  /** Returns the wall time of the whole {@link Flagz#parse} call. */
+  public Duration total() {
+    return total;
+  }
+
+  /** Returns the time spent in each phase, in the order of {@link Phase}. */
+  public Map<Phase, Duration> phases() {
+    return phases;
+  }
+
+  /** Returns the time spent in the given phase. */
+  public Duration phase(Phase phase) {
+    return phases.get(phase);
+  }
+
+  /**
+   * Returns the time spent scanning the classpath entries of each package prefix.
+   *
+   * Entries are scanned in parallel, so these are summed scan times rather than wall time, and an
+   * entry shared by several prefixes counts for each of them. Scans served from the in-memory or
+   * on-disk cache count as zero. Flagz always adds the `org.flagz` prefix.
+   */
+  public Map<String, Duration> classpathScanByPrefix() {
+    return classpathScanByPrefix;
+  }
+
+  /** Returns the wall time of each flag scanner, including all phases run within it. */
+  public Map<String, Duration> discoveryByScanner() {
+    return discoveryByScanner;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("Flagz startup took ")
+        .append(total.toMillis()).append(" ms:\n");
+    phases.forEach((phase, duration) -> appendLine(builder, phase.name(), duration));
+    classpathScanByPrefix.forEach(
+        (prefix, duration) -> appendLine(builder, "CLASSPATH_SCAN of '" + prefix + "'", duration));
+    discoveryByScanner.forEach((scanner, duration) -> appendLine(builder, scanner, duration));
+    return builder.toString();
+  }
+
+  private static void appendLine(StringBuilder builder, String name, Duration duration) {
+    builder.append(String.format("  %-40s %8.1f ms\n", name, duration.toNanos() / 1e6));
+  }
+}
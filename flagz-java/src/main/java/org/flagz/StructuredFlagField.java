@@ -0,0 +1,43 @@
+package org.flagz;
+
+/**
+ * A {@link FlagField} holding a value of a structured type given as JSON, e.g. a plain Java object
+ * or nested collections. See {@link Flagz#valueOfJson}.
+ *
+ * The value is parsed once per update, straight into its type, and published as is. Readers share
+ * the instance, so they mustn't change the fields of objects, which can't be final. Lists, sets and
+ * maps are immutable.
+ */
+class StructuredFlagField<T> extends FlagField<T> {
+
+  StructuredFlagField(T defaultValue) {
+    super(defaultValue);
+  }
+
+  @Override
+  protected void parseString(String value) throws FlagException {
+    parse(value);
+  }
+
+  /** Reads the JSON straight from the content of the file, see {@link FlagFile}. */
+  @Override
+  protected void parseFile(CharSequence content) throws FlagException {
+    parse(content);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void parse(CharSequence value) throws FlagException {
+    T parsed;
+    try {
+      parsed = (T) StructuredValues.read(value, fieldType(), this);
+    } catch (IllegalArgumentException exception) {
+      throw new FlagException.IllegalFormat(this, FlagFile.head(value), exception);
+    }
+    accept(parsed);
+  }
+
+  @Override
+  public String valueString(T value) {
+    return StructuredValues.write(value);
+  }
+}
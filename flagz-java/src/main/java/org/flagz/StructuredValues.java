@@ -0,0 +1,288 @@
+package org.flagz;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Primitives;
+import com.google.common.reflect.TypeToken;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Reads and writes values of structured flags, e.g. `Map<String, List<Integer>>` or plain Java
+ * objects, as JSON.
+ *
+ * Values are read straight from the {@link JsonReader} into their type, without building an
+ * intermediate tree. Lists, sets and maps are compact and immutable, see {@link CompactContainer},
+ * or Guava immutable collections where declared so. Objects are created
+ * through their no-argument constructor with the JSON members set on their fields. Those fields
+ * can't be final, since writing final fields after construction is undefined for constants that
+ * javac inlines, so classes with final fields are rejected. Objects are fully built before the
+ * flag publishes them, through a volatile write, so readers still see all of their fields.
+ * Scalars follow the rules of {@link ContainerFlagField#itemFromString}. Members that don't match
+ * a field are rejected.
+ */
+final class StructuredValues {
+
+  // Fields of object types by JSON member name, found once per class.
+  private static final Map<Class<?>, Map<String, Field>> PROPERTIES = new ConcurrentHashMap<>();
+
+  private StructuredValues() {
+  }
+
+  /** Returns whether values of the type are read by {@link ContainerFlagField#itemFromString}. */
+  static boolean isScalar(Type type) {
+    if (!(type instanceof Class)) {
+      return false;
+    }
+    Class<?> clazz = Primitives.wrap((Class<?>) type);
+    return Number.class.isAssignableFrom(clazz) || Boolean.class.equals(clazz)
+        || String.class.equals(clazz) || clazz.isEnum();
+  }
+
+  /** Returns whether the type is a Java collection or map holding more than scalars. */
+  static boolean isStructuredContainer(Type type) {
+    if (!(type instanceof ParameterizedType)) {
+      return false;
+    }
+    Class<?> raw = TypeToken.of(type).getRawType();
+    if (!Collection.class.isAssignableFrom(raw) && !Map.class.isAssignableFrom(raw)) {
+      return false;
+    }
+    for (Type argument : ((ParameterizedType) type).getActualTypeArguments()) {
+      if (!isScalar(argument)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Reads a non-null value of the type from the JSON string.
+   *
+   * @throws IllegalArgumentException if the JSON is malformed or doesn't match the type.
+   * @throws FlagException if the type isn't supported, or a scalar doesn't parse.
+   */
+  static Object read(CharSequence json, Type type, Flag<?> flag) {
+    JsonReader reader = new JsonReader(json);
+    Object value = read(reader, type, flag);
+    reader.endOfInput();
+    if (value == null) {
+      throw new IllegalArgumentException("Flag values can't be null");
+    }
+    return value;
+  }
+
+  private static Object read(JsonReader reader, Type type, Flag<?> flag) {
+    if (reader.nextNull()) {
+      return null;
+    }
+    TypeToken<?> token = TypeToken.of(type);
+    Class<?> raw = token.getRawType();
+    if (isScalar(raw)) {
+      return ContainerFlagField.itemFromString(reader.nextScalar(), raw, flag);
+    } else if (Map.class.isAssignableFrom(raw)) {
+      Type keyType = typeArgument(token, Map.class, 0, flag);
+      Type valueType = typeArgument(token, Map.class, 1, flag);
+      if (!isScalar(keyType)) {
+        throw new FlagException.UnsupportedType(flag, type);
+      }
+      CompactMap<Object, Object> map = new CompactMap<>();
+      reader.beginObject();
+      while (reader.hasNext()) {
+        Object key =
+            ContainerFlagField.itemFromString(reader.nextName(), (Class<?>) keyType, flag);
+        map.put(key, checkNotNull(read(reader, valueType, flag)));
+      }
+      map.freeze();
+      return asType(map, raw, ImmutableMap::copyOf, ImmutableMap.class, type, flag);
+    } else if (Set.class.isAssignableFrom(raw)) {
+      Type elementType = typeArgument(token, Set.class, 0, flag);
+      CompactSet<Object> set = new CompactSet<>();
+      reader.beginArray();
+      while (reader.hasNext()) {
+        set.add(checkNotNull(read(reader, elementType, flag)));
+      }
+      set.freeze();
+      return asType(set, raw, ImmutableSet::copyOf, ImmutableSet.class, type, flag);
+    } else if (Iterable.class.isAssignableFrom(raw)) {
+      Type elementType = typeArgument(token, Iterable.class, 0, flag);
+      CompactList<Object> list = new CompactList<>();
+      reader.beginArray();
+      while (reader.hasNext()) {
+        list.add(checkNotNull(read(reader, elementType, flag)));
+      }
+      list.freeze();
+      return asType(list, raw, ImmutableList::copyOf, ImmutableList.class, type, flag);
+    }
+    return readObject(reader, token, flag);
+  }
+
+  private static Object readObject(JsonReader reader, TypeToken<?> token, Flag<?> flag) {
+    Class<?> raw = token.getRawType();
+    Map<String, Field> properties = properties(raw, token.getType(), flag);
+    Object instance = newInstance(raw, token.getType(), flag);
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      Field field = properties.get(name);
+      if (field == null) {
+        throw new IllegalArgumentException(
+            String.format("Unknown member '%s' of %s", name, raw.getSimpleName()));
+      }
+      Object value = read(reader, token.resolveType(field.getGenericType()).getType(), flag);
+      if (value == null && field.getType().isPrimitive()) {
+        throw new IllegalArgumentException(String.format("Member '%s' can't be null", name));
+      }
+      try {
+        field.set(instance, value);
+      } catch (IllegalAccessException exception) {
+        throw new IllegalArgumentException("Can't set member " + name, exception);
+      }
+    }
+    return instance;
+  }
+
+  /** Writes the value as JSON, which {@link #read} reads back. */
+  static String write(Object value) {
+    return write(new StringBuilder(), value).toString();
+  }
+
+  private static StringBuilder write(StringBuilder out, Object value) {
+    if (value == null) {
+      return out.append("null");
+    } else if (value instanceof Byte) {
+      // Bytes are read as unsigned, see PrimitiveFlagField.NumberFlagField.
+      return out.append(Byte.toUnsignedInt((Byte) value));
+    } else if (value instanceof Number || value instanceof Boolean) {
+      return out.append(value);
+    } else if (value instanceof Enum) {
+      return JsonReader.quote(out, ((Enum<?>) value).name());
+    } else if (value instanceof CharSequence) {
+      return JsonReader.quote(out, value.toString());
+    } else if (value instanceof Map) {
+      out.append('{');
+      String separator = "";
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        Object key = entry.getKey();
+        out.append(separator);
+        JsonReader.quote(out, key instanceof Enum ? ((Enum<?>) key).name() : key.toString());
+        write(out.append(':'), entry.getValue());
+        separator = ",";
+      }
+      return out.append('}');
+    } else if (value instanceof Iterable) {
+      out.append('[');
+      String separator = "";
+      for (Object element : (Iterable<?>) value) {
+        write(out.append(separator), element);
+        separator = ",";
+      }
+      return out.append(']');
+    }
+    out.append('{');
+    String separator = "";
+    for (Map.Entry<String, Field> property : properties(value.getClass(), null, null).entrySet()) {
+      out.append(separator);
+      JsonReader.quote(out, property.getKey()).append(':');
+      try {
+        write(out, property.getValue().get(value));
+      } catch (IllegalAccessException exception) {
+        throw new IllegalStateException("Can't read member " + property.getKey(), exception);
+      }
+      separator = ",";
+    }
+    return out.append('}');
+  }
+
+  /**
+   * Returns the instance fields of the class and its superclasses, by name.
+   *
+   * @throws FlagException.UnsupportedType if any of them is final.
+   */
+  private static Map<String, Field> properties(Class<?> clazz, Type type, Flag<?> flag) {
+    Type unsupported = type == null ? clazz : type;
+    if (clazz.isInterface() || Modifier.isAbstract(clazz.getModifiers()) || clazz.isArray()
+        || clazz.getName().startsWith("java.")) {
+      throw new FlagException.UnsupportedType(flag, unsupported);
+    }
+    return PROPERTIES.computeIfAbsent(clazz, key -> {
+      List<Class<?>> hierarchy = new ArrayList<>();
+      for (Class<?> current = key; current != Object.class; current = current.getSuperclass()) {
+        hierarchy.add(current);
+      }
+      Map<String, Field> properties = new LinkedHashMap<>();
+      for (Class<?> current : Lists.reverse(hierarchy)) {
+        for (Field field : current.getDeclaredFields()) {
+          int modifiers = field.getModifiers();
+          if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers)
+              && !field.isSynthetic()) {
+            if (Modifier.isFinal(modifiers)) {
+              throw new FlagException.UnsupportedType(flag, unsupported, String.format(
+                  "field '%s' of %s is final, fields of JSON objects are set after construction",
+                  field.getName(), current.getSimpleName()));
+            }
+            field.setAccessible(true);
+            properties.put(field.getName(), field);
+          }
+        }
+      }
+      return properties;
+    });
+  }
+
+  private static Object newInstance(Class<?> clazz, Type type, Flag<?> flag) {
+    try {
+      Constructor<?> constructor = clazz.getDeclaredConstructor();
+      constructor.setAccessible(true);
+      return constructor.newInstance();
+    } catch (NoSuchMethodException exception) {
+      throw new FlagException.UnsupportedType(flag, type);
+    } catch (ReflectiveOperationException exception) {
+      throw new IllegalArgumentException("Can't create " + clazz.getSimpleName(), exception);
+    }
+  }
+
+  private static Type typeArgument(TypeToken<?> token, Class<?> supertype, int index,
+      Flag<?> flag) {
+    Type argument = token.resolveType(supertype.getTypeParameters()[index]).getType();
+    if (!(argument instanceof Class) && !(argument instanceof ParameterizedType)) {
+      throw new FlagException.UnsupportedType(flag, token.getType());
+    }
+    return argument;
+  }
+
+  /**
+   * Returns the compact container if the declared type allows it, or else a Guava immutable copy,
+   * e.g. for an `ImmutableList` field of an object.
+   */
+  private static <C> Object asType(C compact, Class<?> raw, Function<C, ?> copier,
+      Class<?> immutable, Type type, Flag<?> flag) {
+    if (raw.isInstance(compact)) {
+      return compact;
+    } else if (raw.isAssignableFrom(immutable)) {
+      return copier.apply(compact);
+    }
+    throw new FlagException.UnsupportedType(flag, type);
+  }
+
+  private static Object checkNotNull(Object element) {
+    if (element == null) {
+      throw new IllegalArgumentException("Collections can't hold null");
+    }
+    return element;
+  }
+}
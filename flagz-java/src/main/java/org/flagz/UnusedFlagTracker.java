@@ -0,0 +1,68 @@
+package org.flagz;
+
+import com.google.common.collect.ImmutableSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks reads of a {@link Flag} marked with {@link FlagzUnused}.
+ *
+ * Every read bumps a counter and finds its calling site, which is logged the first time it's seen,
+ * so each place still reading a deprecated flag is reported exactly once however hot it is. Finding
+ * the caller takes a stack trace per read, a cost only reads of flags marked unused pay.
+ */
+class UnusedFlagTracker {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FlagFieldRegistry.class);
+
+  private final BaseFlag<?> flag;
+  private final Set<String> flagClassNames;
+  private final LongAdder accesses = new LongAdder();
+  private final Set<StackTraceElement> reportedCallSites = ConcurrentHashMap.newKeySet();
+
+  UnusedFlagTracker(BaseFlag<?> flag) {
+    this.flag = flag;
+    ImmutableSet.Builder<String> names = ImmutableSet.builder();
+    names.add(UnusedFlagTracker.class.getName());
+    for (Class<?> clazz = flag.getClass(); clazz != Object.class; clazz = clazz.getSuperclass()) {
+      names.add(clazz.getName());
+    }
+    this.flagClassNames = names.build();
+  }
+
+  /** Records a single read of the flag. */
+  void recordAccess() {
+    accesses.increment();
+    StackTraceElement callSite = callSite();
+    if (callSite != null && reportedCallSites.add(callSite)) {
+      LOG.error(
+          "Trying to get a value from flag: {}, which is marked as unused. "
+              + "Read at {}, {} reads so far.",
+          flag.name(), callSite, accessCount());
+    }
+  }
+
+  /** Returns the number of reads since the flag was bound. */
+  long accessCount() {
+    return accesses.sum();
+  }
+
+  /** Returns the set of call sites reported so far. */
+  Set<StackTraceElement> reportedCallSites() {
+    return ImmutableSet.copyOf(reportedCallSites);
+  }
+
+  /** Returns the first frame outside the flag classes, i.e. the code reading the flag. */
+  private StackTraceElement callSite() {
+    for (StackTraceElement element : new Throwable().getStackTrace()) {
+      if (!flagClassNames.contains(element.getClassName())) {
+        return element;
+      }
+    }
+    return null;
+  }
+}
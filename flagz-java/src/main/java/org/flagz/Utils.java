@@ -50,6 +50,9 @@ class Utils {
    * "--flagName=stringValue"
    * and creates a map (flagName) -> (stringValue).
    *
+   * Values of the form "@/path/to/file" are kept as they are, the flag reads the file when it's
+   * set, see {@link FlagFile}.
+   *
    * @param args strings of the form "--flagName=stringValue"
    */
   static Map<String, String> parseArgsToFieldMap(String[] args) {
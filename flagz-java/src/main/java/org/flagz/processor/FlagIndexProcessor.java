@@ -0,0 +1,144 @@
+package org.flagz.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Annotation processor writing an index of all static `@FlagInfo` fields of a compilation.
+ *
+ * The index is a `META-INF/flagz/index` resource with one `binary.ClassName#fieldName` line per
+ * field. When a classpath entry contains it, `Flagz.parse` reads the index instead of scanning the
+ * entry's classes with Reflections, which makes start-up of big binaries fast.
+ *
+ * The index only covers the sources of one compilation, so don't use it with incremental
+ * compilation that recompiles a subset of the classes of a jar.
+ *
+ * Options:
+ *
+ *  * `-Aflagz.native_image=true` also writes GraalVM native-image configuration next to the index:
+ *    a `reflect-config.json` registering the flag fields for reflection, and a
+ *    `resource-config.json` including the index in the image. Inside a native image, `Flagz.parse`
+ *    then reads the indexes built into it instead of scanning the classpath.
+ *  * `-Aflagz.index_resource=...` changes the name of the index resource. Flagz uses it for the
+ *    index of its own flags, which doesn't count as an application index.
+ */
+@SupportedAnnotationTypes(FlagIndexProcessor.FLAG_INFO)
+@SupportedOptions({FlagIndexProcessor.NATIVE_IMAGE_OPTION, FlagIndexProcessor.RESOURCE_OPTION})
+public class FlagIndexProcessor extends AbstractProcessor {
+
+  static final String FLAG_INFO = "org.flagz.FlagInfo";
+  static final String NATIVE_IMAGE_OPTION = "flagz.native_image";
+  static final String RESOURCE_OPTION = "flagz.index_resource";
+  public static final String INDEX_RESOURCE = "META-INF/flagz/index";
+  public static final String NATIVE_IMAGE_DIRECTORY = "META-INF/native-image/flagz/";
+
+  private final Set<String> entries = new TreeSet<>();
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    for (TypeElement annotation : annotations) {
+      for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+        // Non-static flags are only found on objects passed to Flagz.parse, not on the classpath.
+        if (element.getKind() == ElementKind.FIELD
+            && element.getModifiers().contains(Modifier.STATIC)) {
+          TypeElement owner = (TypeElement) element.getEnclosingElement();
+          entries.add(
+              processingEnv.getElementUtils().getBinaryName(owner) + "#" + element.getSimpleName());
+        }
+      }
+    }
+    if (roundEnv.processingOver() && !entries.isEmpty()) {
+      String indexResource =
+          processingEnv.getOptions().getOrDefault(RESOURCE_OPTION, INDEX_RESOURCE);
+      StringBuilder index = new StringBuilder();
+      entries.forEach(entry -> index.append(entry).append('\n'));
+      writeResource(indexResource, index.toString());
+      if (Boolean.parseBoolean(processingEnv.getOptions().get(NATIVE_IMAGE_OPTION))) {
+        // Directories of all jars in an image are read, so each needs its own.
+        String directory = NATIVE_IMAGE_DIRECTORY + digest(index.toString()) + "/";
+        writeResource(directory + "reflect-config.json", reflectConfig());
+        writeResource(directory + "resource-config.json", resourceConfig(indexResource));
+      }
+    }
+    return false;
+  }
+
+  /** Registers the flag fields for reflection, grouped by their class. */
+  private String reflectConfig() {
+    Map<String, List<String>> classFields = new TreeMap<>();
+    for (String entry : entries) {
+      int separator = entry.lastIndexOf('#');
+      classFields.computeIfAbsent(entry.substring(0, separator), name -> new ArrayList<>())
+          .add(entry.substring(separator + 1));
+    }
+    StringBuilder config = new StringBuilder("[\n");
+    for (Map.Entry<String, List<String>> classEntry : classFields.entrySet()) {
+      config.append("  {\"name\": \"").append(classEntry.getKey()).append("\", \"fields\": [");
+      for (int i = 0; i < classEntry.getValue().size(); i++) {
+        config.append(i == 0 ? "" : ", ")
+            .append("{\"name\": \"").append(classEntry.getValue().get(i)).append("\"}");
+      }
+      config.append("]},\n");
+    }
+    config.setLength(config.length() - ",\n".length());
+    return config.append("\n]\n").toString();
+  }
+
+  private static String resourceConfig(String indexResource) {
+    return "{\"resources\": {\"includes\": [{\"pattern\": \"\\\\Q" + indexResource
+        + "\\\\E\"}]}}\n";
+  }
+
+  private void writeResource(String name, String content) {
+    try {
+      FileObject resource = processingEnv.getFiler()
+          .createResource(StandardLocation.CLASS_OUTPUT, "", name);
+      try (Writer writer = resource.openWriter()) {
+        writer.write(content);
+      }
+    } catch (IOException exception) {
+      processingEnv.getMessager().printMessage(
+          Diagnostic.Kind.ERROR, "Couldn't write " + name + " of the flagz index: " + exception);
+    }
+  }
+
+  private static String digest(String content) {
+    try {
+      byte[] hash = MessageDigest.getInstance("SHA-256")
+          .digest(content.getBytes(StandardCharsets.UTF_8));
+      StringBuilder hex = new StringBuilder();
+      for (int i = 0; i < 6; i++) {
+        hex.append(String.format("%02x", hash[i]));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException exception) {
+      throw new IllegalStateException("SHA-256 is always available.", exception);
+    }
+  }
+}
@@ -8,6 +8,9 @@ import java.util.List;
 import java.util.Set;
 import java.util.function.Consumer;
 
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
 /**
@@ -73,4 +76,26 @@ public class BaseFlagTest {
     registry.setField("test_flag_string", "foo");
     verify(mockConsumer).accept("foo");
   }
+
+  @Test
+  public void testVersionIncrementsOnChange() {
+    String[] args = {};
+    FlagFieldRegistry registry = Flagz.parse(args, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    assertThat(flagMap.version(), is(0L));
+    registry.setField("test_flag_string", "foo");
+    flagMap.accept("foo");
+    assertThat(flagMap.version(), is(2L));
+  }
+
+  @Test
+  public void testVersionUnchangedOnRejectedValue() {
+    String[] args = {"--test_flag_int=50"};
+    Flagz.parse(args, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    try {
+      flagInt.accept(-1);
+      fail("Expected the validator to reject the value.");
+    } catch (FlagException.BadValue expected) {
+      assertThat(flagInt.version(), is(1L));
+    }
+  }
 }
@@ -0,0 +1,102 @@
+package org.flagz;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/** Tests of the compact containers holding list, set and map flag values. */
+public class CompactContainersTest {
+
+  private static final List<String> EMPTY_PACKAGE_PREFIXES = ImmutableList.of();
+
+  @FlagInfo(name = "test_compact_list_flag", help = "")
+  final Flag<List<String>> listFlag = Flagz.valueOf(ImmutableList.of("a"));
+
+  @FlagInfo(name = "test_compact_set_flag", help = "")
+  final Flag<Set<Integer>> setFlag = Flagz.valueOf(ImmutableSet.of(1));
+
+  @FlagInfo(name = "test_compact_map_flag", help = "")
+  final Flag<Map<String, Integer>> mapFlag = Flagz.valueOf(ImmutableMap.of("a", 1));
+
+  final Set<Object> setOfThisTest = ImmutableSet.of(this);
+
+  @Test
+  public void testParsedValuesAreCompact() {
+    String[] args = {"--test_compact_list_flag=x,y,x", "--test_compact_set_flag=3,1,3,2",
+        "--test_compact_map_flag=b:2,a:1,b:3"};
+    Flagz.parse(args, EMPTY_PACKAGE_PREFIXES, setOfThisTest);
+    assertThat(listFlag.get(), instanceOf(CompactList.class));
+    assertThat(listFlag.get(), equalTo(ImmutableList.of("x", "y", "x")));
+    assertThat(setFlag.get(), instanceOf(CompactSet.class));
+    assertThat(setFlag.get(), equalTo(ImmutableSet.of(1, 2, 3)));
+    assertThat(new ArrayList<>(setFlag.get()), equalTo(ImmutableList.of(3, 1, 2)));
+    assertThat(mapFlag.get(), instanceOf(CompactMap.class));
+    assertThat(mapFlag.get(), equalTo(ImmutableMap.of("b", 3, "a", 1)));
+    assertThat(((FlagField<Map<String, Integer>>) mapFlag).valueString(mapFlag.get()),
+        equalTo("b:3,a:1"));
+  }
+
+  @Test
+  public void testDefaultValuesAreCompact() {
+    Flagz.parse(new String[] {}, EMPTY_PACKAGE_PREFIXES, setOfThisTest);
+    assertThat(listFlag.get(), instanceOf(CompactList.class));
+    assertThat(setFlag.get(), instanceOf(CompactSet.class));
+    assertThat(mapFlag.get(), instanceOf(CompactMap.class));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testListIsImmutable() {
+    Flagz.parse(new String[] {"--test_compact_list_flag=x"}, EMPTY_PACKAGE_PREFIXES,
+        setOfThisTest);
+    listFlag.get().add("y");
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testSetIteratorIsImmutable() {
+    Iterator<Integer> iterator = setFlag.get().iterator();
+    iterator.next();
+    iterator.remove();
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testMapIsImmutable() {
+    Flagz.parse(new String[] {"--test_compact_map_flag=x:1"}, EMPTY_PACKAGE_PREFIXES,
+        setOfThisTest);
+    mapFlag.get().put("y", 2);
+  }
+
+  @Test
+  public void testLargeSetAndMap() {
+    CompactSet<Integer> set = new CompactSet<>();
+    CompactMap<Integer, String> map = new CompactMap<>();
+    for (int i = 0; i < 10000; i += 3) {
+      set.add(i);
+      map.put(i, Integer.toString(i));
+    }
+    set.freeze();
+    map.freeze();
+    for (int i = 0; i < 10000; i++) {
+      assertThat(set.contains(i), is(i % 3 == 0));
+      assertThat(map.get(i), equalTo(i % 3 == 0 ? Integer.toString(i) : null));
+    }
+    assertThat(set.size(), is(3334));
+    assertThat(map.size(), is(3334));
+    assertThat(map.hashCode(), is(ImmutableMap.copyOf(map).hashCode()));
+    assertThat(set.hashCode(), is(ImmutableSet.copyOf(set).hashCode()));
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void testNullElementsRejected() {
+    new CompactList<String>().add(null);
+  }
+}
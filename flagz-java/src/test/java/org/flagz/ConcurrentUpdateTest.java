@@ -0,0 +1,160 @@
+package org.flagz;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Stress tests for {@link FlagFieldRegistry} updated from many threads at once.
+ *
+ * Writers race on the same flags through the registry while readers check that they never see a
+ * partially applied value. Afterwards, no update may be lost: every one must have been counted by
+ * the flag's version, seen by its listener in order, and published to the registry snapshot.
+ */
+public class ConcurrentUpdateTest {
+
+  public static final String[] EMPTY_ARGS = {};
+  public static final List<String> EMPTY_PACKAGE_PREFIXES = ImmutableList.of();
+
+  private static final int WRITERS = 4;
+  private static final int READERS = 2;
+  private static final int WRITES_PER_WRITER = 2000;
+
+  @FlagInfo(name = "test_concurrent_int", help = "some int")
+  final Flag<Integer> flagInt = Flagz.valueOf(Integer.valueOf(0));
+
+  @FlagInfo(name = "test_concurrent_map", help = "some map")
+  final Flag<Map<String, Integer>> flagMap = Flagz.valueOf(ImmutableMap.of("a", 0, "b", 0));
+
+  final Set<Object> SET_OF_THIS_TEST = ImmutableSet.of(this);
+
+  @Test
+  public void testRacingUpdatesAreNotLostOrTorn() throws Exception {
+    FlagFieldRegistry registry = Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    List<Integer> seenValues = Collections.synchronizedList(new ArrayList<>());
+    flagInt.withListener(seenValues::add);
+    long snapshotVersionBefore = registry.snapshot().version();
+
+    ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS);
+    CountDownLatch start = new CountDownLatch(1);
+    AtomicBoolean writing = new AtomicBoolean(true);
+    List<Future<?>> writers = new ArrayList<>();
+    List<Future<Boolean>> readers = new ArrayList<>();
+    try {
+      for (int w = 0; w < WRITERS; w++) {
+        int writer = w;
+        writers.add(executor.submit(() -> {
+          start.await();
+          for (int i = 0; i < WRITES_PER_WRITER; i++) {
+            int value = writer * WRITES_PER_WRITER + i;
+            registry.setField("test_concurrent_int", Integer.toString(value));
+            registry.setField("test_concurrent_map", "a:" + value + ",b:" + value);
+          }
+          return null;
+        }));
+      }
+      for (int r = 0; r < READERS; r++) {
+        readers.add(executor.submit(() -> {
+          start.await();
+          boolean consistent = true;
+          while (writing.get()) {
+            Map<String, Integer> map = flagMap.get();
+            FlagSnapshot snapshot = registry.snapshot();
+            Map<String, Integer> snapshotMap = snapshot.get(flagMap);
+            consistent &= map.get("a").equals(map.get("b"));
+            consistent &= snapshotMap.get("a").equals(snapshotMap.get("b"));
+          }
+          return consistent;
+        }));
+      }
+      start.countDown();
+      for (Future<?> writer : writers) {
+        writer.get(60, TimeUnit.SECONDS);
+      }
+      writing.set(false);
+      for (Future<Boolean> reader : readers) {
+        assertTrue("Reader saw a torn map value.", reader.get(60, TimeUnit.SECONDS));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    int totalWrites = WRITERS * WRITES_PER_WRITER;
+    assertThat(flagInt.version(), is((long) totalWrites));
+    assertThat(flagMap.version(), is((long) totalWrites));
+    assertThat(seenValues.size(), is(totalWrites));
+    int[] lastOfWriter = new int[WRITERS];
+    Arrays.fill(lastOfWriter, -1);
+    for (int value : seenValues) {
+      int writer = value / WRITES_PER_WRITER;
+      assertTrue("Listener saw updates out of order.", value > lastOfWriter[writer]);
+      lastOfWriter[writer] = value;
+    }
+    assertThat(seenValues.get(totalWrites - 1), is(flagInt.get()));
+    FlagSnapshot snapshot = registry.snapshot();
+    assertThat(snapshot.version(), is(snapshotVersionBefore + 2 * totalWrites));
+    assertThat(snapshot.get(flagInt), is(flagInt.get()));
+    assertThat(snapshot.get(flagMap), is(flagMap.get()));
+  }
+
+  @Test
+  public void testSlowListenerDoesNotBlockWriters() throws Exception {
+    FlagFieldRegistry registry = Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    CountDownLatch listening = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    List<Integer> seenValues = Collections.synchronizedList(new ArrayList<>());
+    flagInt.withListener(value -> {
+      seenValues.add(value);
+      listening.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException exception) {
+        Thread.currentThread().interrupt();
+      }
+    });
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> slowWriter = executor.submit(() -> {
+        registry.setField("test_concurrent_int", "1");
+        return null;
+      });
+      assertTrue(listening.await(10, TimeUnit.SECONDS));
+      // Doesn't wait for the listener still running for the previous value.
+      registry.setField("test_concurrent_int", "2");
+      assertThat(flagInt.get(), is(2));
+      assertThat(flagInt.version(), is(2L));
+      assertThat(seenValues, is(ImmutableList.of(1)));
+      // The writer reads its own value back, though the listeners haven't seen it yet.
+      assertThat(registry.snapshot().get(flagInt), is(2));
+      try (FlagScope scope = registry.pin()) {
+        assertThat(flagInt.get(), is(2));
+      }
+
+      release.countDown();
+      slowWriter.get(10, TimeUnit.SECONDS);
+      assertThat(seenValues, is(ImmutableList.of(1, 2)));
+    } finally {
+      release.countDown();
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package org.flagz;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link ConstantFlagAccess} getters.
+ */
+public class ConstantFlagAccessTest {
+
+  public static final String[] EMPTY_ARGS = {};
+  public static final List<String> EMPTY_PACKAGE_PREFIXES = ImmutableList.of();
+
+  @FlagInfo(name = "test_constant_bool", help = "some bool")
+  final BooleanFlag flagBool = Flagz.valueOf(false);
+
+  @FlagInfo(name = "test_constant_long", help = "some long")
+  final LongFlag flagLong = Flagz.valueOf(10L);
+
+  @FlagInfo(name = "test_constant_string", help = "some string")
+  final Flag<String> flagString = Flagz.valueOf("foo");
+
+  final Set<Object> SET_OF_THIS_TEST = ImmutableSet.of(this);
+
+  @Test
+  public void testGetterFollowsUnboxedChanges() throws Throwable {
+    FlagFieldRegistry registry = Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    MethodHandle getter = ConstantFlagAccess.getter(flagBool);
+    assertThat(getter.type(), is(MethodType.methodType(boolean.class)));
+    assertThat((boolean) getter.invokeExact(), is(false));
+    registry.setField("test_constant_bool", "true");
+    assertThat((boolean) getter.invokeExact(), is(true));
+  }
+
+  @Test
+  public void testGetterSeesValueSetBeforeCreation() throws Throwable {
+    String[] args = {"--test_constant_long=20"};
+    Flagz.parse(args, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    MethodHandle getter = ConstantFlagAccess.getter(flagLong);
+    assertThat((long) getter.invokeExact(), is(20L));
+    flagLong.accept(30L);
+    assertThat((long) getter.invokeExact(), is(30L));
+  }
+
+  @Test
+  public void testGetterForObjectFlag() throws Throwable {
+    Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    MethodHandle getter = ConstantFlagAccess.getter(flagString);
+    assertThat((Object) getter.invokeExact(), is((Object) "foo"));
+    flagString.accept("bar");
+    assertThat((Object) getter.invokeExact(), is((Object) "bar"));
+  }
+}
@@ -40,6 +40,10 @@ public class ContainerFlagFieldTest {
   final Flag<Map<String, String>> stringMapFlag = Flagz.valueOf(ImmutableMap.of("key1", "value1", "key2", "value2"));
 
 
+  @FlagInfo(name = "test_map_separators_flag", help = "")
+  @FlagSeparators(items = ';', keyValue = '=')
+  final Flag<Map<String, String>> separatorsMapFlag = Flagz.valueOf(ImmutableMap.of("a:1", "b,2"));
+
   final Set<Object> SET_OF_THIS_TEST = ImmutableSet.of(this);
 
 
@@ -147,4 +151,33 @@ public class ContainerFlagFieldTest {
     assertThat(enumMapReal.valueString(enumMapReal.get()), equalTo("NORMAL:1337"));
     assertThat(stringMapReal.valueString(stringMapReal.get()), equalTo("key1:value1,key2:value2"));
   }
+
+  @Test
+  public void testMaps_Set_Escaped() {
+    String[] args = {"--test_map_string_flag=\"a,b\":c\\:d,e:\"\""};
+    Flagz.parse(args, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    assertThat(stringMapFlag.get(), equalTo(ImmutableMap.of("a,b", "c:d", "e", "")));
+  }
+
+  @Test
+  public void testMaps_StringValue_RoundTrips() {
+    Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    FlagField<Map<String, String>> stringMapReal = (FlagField<Map<String, String>>) stringMapFlag;
+    Map<String, String> value = ImmutableMap.of("a,b", "c:d", "e\\", "\"f\"");
+
+    stringMapReal.parseString(stringMapReal.valueString(value));
+    assertThat(stringMapFlag.get(), equalTo(value));
+  }
+
+  @Test
+  public void testMaps_Separators() {
+    String[] args = {"--test_map_separators_flag=host:80=x,y;host:443=z"};
+    Flagz.parse(args, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    assertThat(separatorsMapFlag.get(),
+        equalTo(ImmutableMap.of("host:80", "x,y", "host:443", "z")));
+    FlagField<Map<String, String>> separatorsMapReal =
+        (FlagField<Map<String, String>>) separatorsMapFlag;
+    assertThat(separatorsMapReal.valueString(ImmutableMap.of("host:80", "x,y")),
+        equalTo("host:80=x,y"));
+  }
 }
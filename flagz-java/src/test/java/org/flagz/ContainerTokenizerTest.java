@@ -0,0 +1,110 @@
+package org.flagz;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for splitting container flag values with {@link ContainerTokenizer}.
+ */
+public class ContainerTokenizerTest {
+
+  @Test
+  public void testPlainItems() {
+    assertThat(items("a,b,,c,"), is(ImmutableList.of("a", "b", "c")));
+  }
+
+  @Test
+  public void testValueQuotedAsAWhole() {
+    assertThat(items("\"a,b\""), is(ImmutableList.of("a", "b")));
+  }
+
+  @Test
+  public void testEscapedSeparators() {
+    assertThat(items("a\\,b,c\\\\,d"), is(ImmutableList.of("a,b", "c\\", "d")));
+  }
+
+  @Test
+  public void testBackslashBeforeOtherCharactersIsKept() {
+    assertThat(items("\\d+,a\\b"), is(ImmutableList.of("\\d+", "a\\b")));
+  }
+
+  @Test
+  public void testQuotedItems() {
+    assertThat(items("\"a,b\",c,\"\",\"d\\\"e\""), is(ImmutableList.of("a,b", "c", "", "d\"e")));
+  }
+
+  @Test
+  public void testQuotesWithinItemsAreKept() {
+    assertThat(items("say \"hi\",b"), is(ImmutableList.of("say \"hi\"", "b")));
+  }
+
+  @Test
+  public void testEntries() {
+    assertThat(entries("a:1,\"b:c\":2,d\\:e:\"3,4\""),
+        is(ImmutableList.of("a=1", "b:c=2", "d:e=3,4")));
+  }
+
+  @Test
+  public void testCustomSeparators() {
+    ContainerTokenizer tokens = new ContainerTokenizer("a:80=x;b:443=y", ';', '=');
+    List<String> entries = new ArrayList<>();
+    while (tokens.next()) {
+      entries.add(tokens.key() + " " + tokens.value());
+    }
+    assertThat(entries, is(ImmutableList.of("a:80 x", "b:443 y")));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnterminatedQuote() {
+    items("a,\"b,c");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testEntryWithoutSeparator() {
+    entries("a:1,b");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testEntryWithTwoSeparators() {
+    entries("a:1:2");
+  }
+
+  @Test
+  public void testEscapeRoundTrips() {
+    List<String> strings = ImmutableList.of("plain", "a,b", "c:d", "\"quoted\"", "back\\slash", "");
+    StringBuilder joined = new StringBuilder();
+    for (String string : strings) {
+      String key = ContainerTokenizer.escape(string, ',', ':');
+      joined.append(key).append(':').append(key).append(',');
+    }
+    List<String> expected = new ArrayList<>();
+    strings.forEach(string -> expected.add(string + "=" + string));
+    assertThat(entries(joined.toString()), is(expected));
+    assertThat(ContainerTokenizer.escape("plain", ',', ':'), is("plain"));
+  }
+
+  private static List<String> items(String value) {
+    ContainerTokenizer tokens =
+        new ContainerTokenizer(value, ',', ContainerTokenizer.NO_SEPARATOR);
+    List<String> items = new ArrayList<>();
+    while (tokens.next()) {
+      items.add(tokens.value());
+    }
+    return items;
+  }
+
+  private static List<String> entries(String value) {
+    ContainerTokenizer tokens = new ContainerTokenizer(value, ',', ':');
+    List<String> entries = new ArrayList<>();
+    while (tokens.next()) {
+      entries.add(tokens.key() + "=" + tokens.value());
+    }
+    return entries;
+  }
+}
@@ -0,0 +1,116 @@
+package org.flagz;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for read-only flags created through {@link Flag#map}.
+ */
+public class DerivedFlagFieldTest {
+
+  public static final String[] EMPTY_ARGS = {};
+  public static final List<String> EMPTY_PACKAGE_PREFIXES = ImmutableList.of();
+
+  final AtomicInteger compilations = new AtomicInteger();
+
+  @FlagInfo(name = "test_derived_regex", help = "some regex")
+  final Flag<String> regexFlag = Flagz.valueOf("fo+");
+
+  final Flag<Pattern> patternFlag = regexFlag.map(regex -> {
+    compilations.incrementAndGet();
+    return Pattern.compile(regex);
+  });
+
+  final Flag<Boolean> matchesFooFlag = patternFlag.map(pattern -> pattern.matcher("foo").matches());
+
+  final Flag<Integer> groupsFlag = patternFlag.map(pattern -> {
+    int groups = pattern.matcher("").groupCount();
+    if (groups > 1) {
+      throw new IllegalArgumentException("At most one group.");
+    }
+    return groups;
+  });
+
+  @FlagInfo(name = "test_derived_doubled", help = "twice some int")
+  final Flag<Integer> doubledFlag = Flagz.valueOf(0).map(value -> value * 2);
+
+  final Set<Object> SET_OF_THIS_TEST = ImmutableSet.of(this);
+
+  @Test
+  public void testDefaultIsMapped() {
+    Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    assertThat(patternFlag.get().pattern(), is("fo+"));
+    assertThat(matchesFooFlag.get(), is(true));
+  }
+
+  @Test
+  public void testMappedOncePerChange() {
+    FlagFieldRegistry registry = Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    int before = compilations.get();
+    registry.setField("test_derived_regex", "ba+r");
+    Pattern pattern = patternFlag.get();
+    assertThat(pattern.pattern(), is("ba+r"));
+    assertThat(patternFlag.get(), sameInstance(pattern));
+    assertThat(matchesFooFlag.get(), is(false));
+    assertThat(compilations.get(), is(before + 1));
+    assertThat(patternFlag.version(), is(regexFlag.version()));
+  }
+
+  @Test
+  public void testRejectedMappingLeavesSourceUnchanged() {
+    FlagFieldRegistry registry = Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    try {
+      registry.setField("test_derived_regex", "(unclosed");
+    } catch (FlagException.BadValue exception) {
+      // Expected.
+    }
+    assertThat(regexFlag.get(), is("fo+"));
+    assertThat(patternFlag.get().pattern(), is("fo+"));
+  }
+
+  @Test
+  public void testRejectedByDerivedOfDerivedLeavesChainUnchanged() {
+    FlagFieldRegistry registry = Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    registry.setField("test_derived_regex", "(a)b");
+    assertThat(groupsFlag.get(), is(1));
+    try {
+      registry.setField("test_derived_regex", "(a)(b)");
+    } catch (FlagException.BadValue exception) {
+      // Expected.
+    }
+    assertThat(regexFlag.get(), is("(a)b"));
+    assertThat(patternFlag.get().pattern(), is("(a)b"));
+    assertThat(groupsFlag.get(), is(1));
+  }
+
+  @Test
+  public void testDerivedFlagsInRegistryAndSnapshot() {
+    FlagFieldRegistry registry = Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    assertThat(registry.getDerivedFields().contains(patternFlag), is(true));
+    assertThat(registry.getDerivedFields().contains(matchesFooFlag), is(true));
+    registry.setField("test_derived_regex", "bar");
+    assertThat(registry.snapshot().get(matchesFooFlag), is(false));
+  }
+
+  @Test(expected = FlagException.ReadOnly.class)
+  public void testDerivedFlagCantBeSetByName() {
+    FlagFieldRegistry registry = Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    registry.setField("test_derived_doubled", "4");
+  }
+
+  @Test(expected = FlagException.ReadOnly.class)
+  public void testDerivedFlagCantBeAccepted() {
+    Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    patternFlag.accept(Pattern.compile("x"));
+  }
+}
@@ -0,0 +1,117 @@
+package org.flagz;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for batch updates through {@link FlagFieldRegistry#setFields}.
+ */
+public class FlagBatchTest {
+
+  public static final String[] EMPTY_ARGS = {};
+  public static final List<String> EMPTY_PACKAGE_PREFIXES = ImmutableList.of();
+
+  @FlagInfo(name = "test_batch_pool_size", help = "some int")
+  final Flag<Integer> poolSize = Flagz.valueOf(Integer.valueOf(4))
+      .withValidator(Validators.inRange(1, 100));
+
+  @FlagInfo(name = "test_batch_queue_size", help = "some int")
+  final Flag<Integer> queueSize = Flagz.valueOf(Integer.valueOf(40));
+
+  @FlagInfo(name = "test_batch_name", help = "some string")
+  final Flag<String> poolName = Flagz.valueOf("pool");
+
+  final Flag<String> upperPoolName = poolName.map(String::toUpperCase);
+
+  final Set<Object> SET_OF_THIS_TEST = ImmutableSet.of(this);
+
+  @Test
+  public void testAllValuesPublishedInOneSnapshot() {
+    FlagFieldRegistry registry = Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    long versionBefore = registry.snapshot().version();
+    registry.setFields(ImmutableMap.of(
+        "test_batch_pool_size", "8",
+        "test_batch_queue_size", "80",
+        "test_batch_name", "bigger"));
+
+    FlagSnapshot snapshot = registry.snapshot();
+    assertThat(snapshot.version(), is(versionBefore + 1));
+    assertThat(snapshot.get(poolSize), is(8));
+    assertThat(snapshot.get(queueSize), is(80));
+    assertThat(snapshot.get(poolName), is("bigger"));
+    assertThat(snapshot.get(upperPoolName), is("BIGGER"));
+    assertThat(poolSize.version(), is(1L));
+  }
+
+  @Test
+  public void testListenersSeeWholeBatch() {
+    FlagFieldRegistry registry = Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    List<String> resizes = new ArrayList<>();
+    poolSize.withListener(value -> resizes.add(value + "/" + queueSize.get()));
+    queueSize.withListener(value -> resizes.add(poolSize.get() + "/" + value));
+    registry.setFields(ImmutableMap.of(
+        "test_batch_pool_size", "8",
+        "test_batch_queue_size", "80"));
+    assertThat(resizes, is((List<String>) ImmutableList.of("8/80", "8/80")));
+  }
+
+  @Test
+  public void testChangeListenerCalledOncePerBatch() {
+    FlagFieldRegistry registry = Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    List<Set<Flag<?>>> changes = new ArrayList<>();
+    registry.withChangeListener(flags -> {
+      assertThat(registry.snapshot().get(poolSize), is(poolSize.get()));
+      changes.add(flags);
+    });
+    registry.setFields(ImmutableMap.of(
+        "test_batch_pool_size", "8",
+        "test_batch_queue_size", "80",
+        "test_batch_name", "bigger"));
+    assertThat(changes, is((List<Set<Flag<?>>>) ImmutableList.<Set<Flag<?>>>of(
+        ImmutableSet.of(poolSize, queueSize, poolName, upperPoolName))));
+
+    registry.setField("test_batch_pool_size", "9");
+    assertThat(changes.size(), is(2));
+    assertThat(changes.get(1), is((Set<Flag<?>>) ImmutableSet.<Flag<?>>of(poolSize)));
+  }
+
+  @Test
+  public void testRejectedValueLeavesAllFlagsUnchanged() {
+    FlagFieldRegistry registry = Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    FlagSnapshot before = registry.snapshot();
+    try {
+      registry.setFields(ImmutableMap.of(
+          "test_batch_queue_size", "80",
+          "test_batch_pool_size", "1000"));
+      fail("Expected the pool size to be rejected.");
+    } catch (FlagException.BadValue expected) {
+      // Expected.
+    }
+    assertThat(queueSize.get(), is(40));
+    assertThat(queueSize.version(), is(0L));
+    assertThat(poolSize.get(), is(4));
+    assertThat(registry.snapshot().version(), is(before.version()));
+  }
+
+  @Test(expected = FlagException.UnknownFlag.class)
+  public void testUnknownFlagRejectsBatch() {
+    FlagFieldRegistry registry = Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    try {
+      registry.setFields(ImmutableMap.of(
+          "test_batch_queue_size", "80",
+          "test_batch_missing", "1"));
+    } finally {
+      assertThat(queueSize.get(), is(40));
+    }
+  }
+}
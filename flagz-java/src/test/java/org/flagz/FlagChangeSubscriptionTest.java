@@ -0,0 +1,150 @@
+package org.flagz;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for registry-wide change events through {@link FlagFieldRegistry#subscribe}.
+ */
+public class FlagChangeSubscriptionTest {
+
+  public static final String[] EMPTY_ARGS = {};
+  public static final List<String> EMPTY_PACKAGE_PREFIXES = ImmutableList.of();
+
+  @FlagInfo(name = "test_changes_int", help = "some int")
+  final Flag<Integer> flagInt = Flagz.valueOf(Integer.valueOf(1));
+
+  @FlagInfo(name = "test_changes_string", help = "some string")
+  final Flag<String> flagString = Flagz.valueOf("foo");
+
+  final Set<Object> SET_OF_THIS_TEST = ImmutableSet.of(this);
+
+  final List<FlagChangeEvent> events = new ArrayList<>();
+
+  @Test
+  public void testEventCarriesOldAndNewValue() {
+    FlagFieldRegistry registry = Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    registry.subscribe(Runnable::run, events::add);
+    registry.setField("test_changes_int", "2");
+    flagString.accept("bar");
+
+    assertThat(events.size(), is(2));
+    assertThat(events.get(0).name(), is("test_changes_int"));
+    assertThat(events.get(0).oldValue(), is((Object) 1));
+    assertThat(events.get(0).newValue(), is((Object) 2));
+    assertThat(events.get(0).version(), is(1L));
+    assertThat(events.get(1).name(), is("test_changes_string"));
+    assertThat(events.get(1).newValue(), is((Object) "bar"));
+  }
+
+  @Test
+  public void testSlowSubscriberGetsCoalescedEvents() {
+    FlagFieldRegistry registry = Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    ManualExecutor executor = new ManualExecutor();
+    FlagChangeSubscription subscription = registry.subscribe(executor, events::add);
+    for (int i = 2; i <= 10; i++) {
+      flagInt.accept(i);
+    }
+    flagString.accept("bar");
+    assertThat(subscription.pendingEvents(), is(2));
+    executor.runAll();
+
+    assertThat(events.size(), is(2));
+    assertThat(events.get(0).oldValue(), is((Object) 1));
+    assertThat(events.get(0).newValue(), is((Object) 10));
+    assertThat(events.get(0).version(), is(9L));
+    assertThat(events.get(1).newValue(), is((Object) "bar"));
+  }
+
+  @Test
+  public void testBatchProducesEventPerFlag() {
+    FlagFieldRegistry registry = Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    registry.subscribe(Runnable::run, events::add);
+    registry.setFields(ImmutableMap.of("test_changes_int", "5", "test_changes_string", "baz"));
+    assertThat(events.size(), is(2));
+  }
+
+  @Test
+  public void testFailingSubscriberDoesNotAffectUpdates() {
+    FlagFieldRegistry registry = Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    registry.subscribe(Runnable::run, event -> {
+      throw new IllegalStateException("subscriber failure");
+    });
+    registry.subscribe(Runnable::run, events::add);
+    registry.setField("test_changes_int", "2");
+    assertThat(flagInt.get(), is(2));
+    assertThat(events.size(), is(1));
+  }
+
+  @Test
+  public void testClosedSubscriptionStopsDelivery() {
+    FlagFieldRegistry registry = Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    ManualExecutor executor = new ManualExecutor();
+    FlagChangeSubscription subscription = registry.subscribe(executor, events::add);
+    flagInt.accept(2);
+    subscription.close();
+    flagInt.accept(3);
+    executor.runAll();
+    assertThat(events.size(), is(0));
+  }
+
+  @Test
+  public void testOutOfOrderEventsKeepTheNewestValue() {
+    FlagFieldRegistry registry = Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    ManualExecutor executor = new ManualExecutor();
+    FlagChangeSubscription subscription = registry.subscribe(executor, events::add);
+    BaseFlag<?> flag = (BaseFlag<?>) flagInt;
+    // Racing writers can offer their events after the CAS in either order.
+    subscription.offer(new FlagChangeEvent(flag, 2, 3, 2));
+    subscription.offer(new FlagChangeEvent(flag, 1, 2, 1));
+    executor.runAll();
+    subscription.offer(new FlagChangeEvent(flag, 1, 2, 1));
+    executor.runAll();
+
+    assertThat(events.size(), is(1));
+    assertThat(events.get(0).oldValue(), is((Object) 1));
+    assertThat(events.get(0).newValue(), is((Object) 3));
+    assertThat(events.get(0).version(), is(2L));
+  }
+
+  @Test
+  public void testEventVersionMatchesItsValue() {
+    FlagFieldRegistry registry = Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    registry.subscribe(Runnable::run, events::add);
+    for (int i = 2; i <= 5; i++) {
+      flagInt.accept(i);
+    }
+    for (FlagChangeEvent event : events) {
+      assertThat(event.version(), is(((Integer) event.newValue()) - 1L));
+    }
+    assertThat(events.size(), is(4));
+  }
+
+  /** Runs the submitted tasks only when asked to, like a subscriber thread that is busy. */
+  static class ManualExecutor implements Executor {
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+    @Override
+    public void execute(Runnable command) {
+      tasks.add(command);
+    }
+
+    void runAll() {
+      while (!tasks.isEmpty()) {
+        tasks.poll().run();
+      }
+    }
+  }
+}
@@ -0,0 +1,224 @@
+package org.flagz;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/** Tests of flag values read from files given as `@/path/to/file`. */
+public class FlagFileTest {
+
+  private static final List<String> EMPTY_PACKAGE_PREFIXES = ImmutableList.of();
+
+  @FlagInfo(name = "test_file_string", help = "")
+  final Flag<String> stringFlag = Flagz.valueOf("default");
+
+  @FlagInfo(name = "test_file_set", help = "")
+  final MembershipFlag<String> setFlag = Flagz.membershipOf(ImmutableSet.of());
+
+  @FlagInfo(name = "test_file_map", help = "")
+  final Flag<Map<String, Integer>> mapFlag = Flagz.valueOf(ImmutableMap.of());
+
+  @FlagInfo(name = "test_file_json", help = "")
+  final Flag<Map<String, List<Integer>>> jsonFlag = Flagz.valueOf(ImmutableMap.of());
+
+  final Set<Object> setOfThisTest = ImmutableSet.of(this);
+
+  private Path directory;
+  private FlagFieldRegistry registry;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("flagz");
+    registry = Flagz.parse(new String[] {}, EMPTY_PACKAGE_PREFIXES, setOfThisTest);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    registry.setField("flagz_file_poll_ms", "1000");
+    for (File file : directory.toFile().listFiles()) {
+      file.delete();
+    }
+    Files.delete(directory);
+  }
+
+  @Test
+  public void testCommandLineFileReference() throws IOException {
+    Path file = write("string.txt", "from file\n");
+    Flagz.parse(new String[] {"--test_file_string=@" + file}, EMPTY_PACKAGE_PREFIXES,
+        setOfThisTest);
+    assertThat(stringFlag.get(), is("from file"));
+  }
+
+  @Test
+  public void testEscapedReference() {
+    registry.setField("test_file_string", "@@handle");
+    assertThat(stringFlag.get(), is("@handle"));
+  }
+
+  @Test
+  public void testContainersSplitAtLines() throws IOException {
+    Path file = write("set.txt", "alice\nbob,carol\r\n\n\"d\\\"ave\"\n");
+    registry.setField("test_file_set", "@" + file);
+    assertThat(setFlag.get(), equalTo(ImmutableSet.of("alice", "bob", "carol", "d\"ave")));
+    assertTrue(setFlag.contains("carol"));
+
+    registry.setField("test_file_map", "@" + write("map.txt", "a:1\nb:0x10\n"));
+    assertThat(mapFlag.get(), equalTo(ImmutableMap.of("a", 1, "b", 16)));
+  }
+
+  @Test
+  public void testUnicodeContent() throws IOException {
+    Path file = write("unicode.txt", "zo\u00eb\n\u0142\u00f3d\u017a\n");
+    registry.setField("test_file_set", "@" + file);
+    assertThat(setFlag.get(), equalTo(ImmutableSet.of("zo\u00eb", "\u0142\u00f3d\u017a")));
+  }
+
+  @Test
+  public void testUnicodeContentDecodedInPlace() throws IOException {
+    String text = "a\u00e9b\u20ac\ud83d\ude00c\n\u0142\ud83c\udf89\n";
+    CharSequence content = FlagFile.map(write("decoded.txt", text));
+
+    assertThat(content.length(), is(text.length()));
+    assertThat(content.toString(), is(text));
+    for (int index = 0; index < text.length(); index++) {
+      assertThat(content.charAt(index), is(text.charAt(index)));
+    }
+    for (int index = text.length() - 1; index >= 0; index--) {
+      assertThat(content.charAt(index), is(text.charAt(index)));
+    }
+    for (int from = 0; from <= text.length(); from++) {
+      for (int to = from; to <= text.length(); to++) {
+        CharSequence range = content.subSequence(from, to);
+        assertThat(range.length(), is(to - from));
+        assertThat(range.toString(), is(text.substring(from, to)));
+      }
+    }
+  }
+
+  @Test(expected = FlagException.IllegalFormat.class)
+  public void testMalformedUtf8() throws IOException {
+    Path file = Files.write(directory.resolve("malformed.txt"),
+        new byte[] {'a', (byte) 0xC3, '\n', (byte) 0xA9});
+    registry.setField("test_file_string", "@" + file);
+  }
+
+  @Test
+  public void testJsonContent() throws IOException {
+    registry.setField("test_file_json", "@" + write("map.json", "{\n  \"x\": [1, 2]\n}\n"));
+    assertThat(jsonFlag.get(), equalTo(ImmutableMap.of("x", ImmutableList.of(1, 2))));
+  }
+
+  @Test(expected = FlagException.IllegalFormat.class)
+  public void testMissingFile() {
+    registry.setField("test_file_string", "@" + directory.resolve("missing.txt"));
+  }
+
+  @Test
+  public void testReloadedWhenModified() throws Exception {
+    registry.setField("flagz_file_poll_ms", "10");
+    Path file = write("reload.txt", "a\n");
+    registry.setField("test_file_set", "@" + file);
+    assertThat(setFlag.get(), equalTo(ImmutableSet.of("a")));
+
+    Files.write(file, "a\nb\n".getBytes(StandardCharsets.UTF_8));
+    Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+    for (int attempt = 0; attempt < 500 && !setFlag.contains("b"); attempt++) {
+      Thread.sleep(10);
+    }
+    assertThat(setFlag.get(), equalTo(ImmutableSet.of("a", "b")));
+
+    // Once set to another value, the file is no longer followed.
+    registry.setField("test_file_set", "c");
+    Files.write(file, "d\n".getBytes(StandardCharsets.UTF_8));
+    Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 10000));
+    Thread.sleep(100);
+    assertThat(setFlag.get(), equalTo(ImmutableSet.of("c")));
+  }
+
+  @Test
+  public void testRejectedBatchDoesNotFollowFile() throws Exception {
+    registry.setField("flagz_file_poll_ms", "10");
+    Path file = write("rejected.txt", "a\n");
+    try {
+      registry.setFields(ImmutableMap.of(
+          "test_file_set", "@" + file,
+          "test_file_map", "not a map"));
+      fail("Batch with a bad value was applied.");
+    } catch (FlagException expected) {
+    }
+
+    // A followed file, reloaded by the same poll that would reload the rejected one.
+    Path followed = write("followed.txt", "before\n");
+    registry.setField("test_file_string", "@" + followed);
+    Files.write(followed, "after\n".getBytes(StandardCharsets.UTF_8));
+    FileTime modified = FileTime.fromMillis(System.currentTimeMillis() + 5000);
+    Files.setLastModifiedTime(followed, modified);
+    Files.setLastModifiedTime(file, modified);
+    for (int attempt = 0; attempt < 500 && !stringFlag.get().equals("after"); attempt++) {
+      Thread.sleep(10);
+    }
+    assertThat(stringFlag.get(), is("after"));
+    assertThat(setFlag.get(), equalTo(ImmutableSet.of()));
+  }
+
+  @Test
+  public void testReloadLosesToRacingStore() throws Exception {
+    registry.setField("flagz_file_poll_ms", "10");
+    Path file = write("racing.txt", "a\n");
+    registry.setField("test_file_string", "@" + file);
+    CountDownLatch reloading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    stringFlag.withValidator(value -> {
+      if (value.equals("b")) {
+        reloading.countDown();
+        Uninterruptibles.awaitUninterruptibly(release);
+      }
+      return true;
+    });
+    try {
+      Files.write(file, "b\n".getBytes(StandardCharsets.UTF_8));
+      Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+      assertTrue(reloading.await(5, TimeUnit.SECONDS));
+
+      // Set while the poller is parsing the changed file.
+      registry.setField("test_file_string", "operator");
+    } finally {
+      release.countDown();
+    }
+    Thread.sleep(200);
+    assertThat(stringFlag.get(), is("operator"));
+  }
+
+  @Test
+  public void testRemoteValuesAreLiteral() throws IOException {
+    Path file = write("remote.txt", "secret\n");
+    registry.setRemoteField("test_file_string", "@" + file);
+    assertThat(stringFlag.get(), is("@" + file));
+
+    registry.setRemoteFields(ImmutableMap.of("test_file_set", "@" + file));
+    assertThat(setFlag.get(), equalTo(ImmutableSet.of("@" + file)));
+  }
+
+  private Path write(String name, String content) throws IOException {
+    return Files.write(directory.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,128 @@
+package org.flagz;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+import org.flagz.testclasses.StaticFlags;
+import org.junit.Test;
+import org.reflections.util.ClasspathHelper;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for reading compile-time flag indexes through {@link FlagIndex}.
+ */
+public class FlagIndexTest {
+
+  @Test
+  public void testIndexFoundForClasspathEntry() throws Exception {
+    File root = writeIndex("org.flagz.testclasses.StaticFlags#testAltNameFlag\n");
+    URL rootUrl = root.toURI().toURL();
+    try (URLClassLoader loader = new URLClassLoader(new URL[] {rootUrl}, null)) {
+      Map<String, URL> indexes = FlagIndex.indexesByRoot(loader);
+      assertThat(indexes.keySet(), is((Set<String>) ImmutableSet.of(rootUrl.toExternalForm())));
+    }
+  }
+
+  @Test
+  public void testJarIndexIsReadAndOtherEntriesScanned() throws Exception {
+    File jar = writeJar("org.flagz.testclasses.StaticFlags#testAltNameFlag\n");
+    URL jarEntry = new URL("jar:" + jar.toURI().toURL() + "!/");
+    Thread thread = Thread.currentThread();
+    ClassLoader contextLoader = thread.getContextClassLoader();
+    try (URLClassLoader loader =
+        new URLClassLoader(new URL[] {jar.toURI().toURL()}, getClass().getClassLoader())) {
+      thread.setContextClassLoader(loader);
+      assertThat(FlagIndex.indexesByRoot(loader).containsKey(FlagIndex.rootKey(jarEntry)),
+          is(true));
+
+      ReflectionsCache.urlsToReflections.clear();
+      Set<Field> fields = ReflectionsCache.flagFieldsForPrefixes(ImmutableList.of());
+
+      assertTrue(fields.contains(StaticFlags.class.getDeclaredField("testAltNameFlag")));
+      // All other entries, e.g. the directories of the flagz classes, are still scanned.
+      Set<URL> unindexed = new HashSet<>(ClasspathHelper.forPackage("org.flagz"));
+      assertTrue(unindexed.remove(jarEntry));
+      assertThat(ReflectionsCache.urlsToReflections.keySet(),
+          is((Set<Set<URL>>) ImmutableSet.of(unindexed)));
+    } finally {
+      thread.setContextClassLoader(contextLoader);
+    }
+  }
+
+  @Test
+  public void testStaleEntriesAreSkipped() throws Exception {
+    File root = writeIndex(
+        "org.flagz.testclasses.StaticFlags#testAltNameFlag\n"
+            + "org.flagz.testclasses.StaticFlags#removedFlag\n"
+            + "org.flagz.testclasses.RemovedClass#someFlag\n");
+    URL index = new File(root, FlagIndex.RESOURCE).toURI().toURL();
+    Set<Field> fields = FlagIndex.readFields(index, getClass().getClassLoader());
+    assertThat(fields, is((Set<Field>) ImmutableSet.of(
+        StaticFlags.class.getDeclaredField("testAltNameFlag"))));
+  }
+
+  @Test
+  public void testNativeImageReadsIndexesWithoutScanning() throws Exception {
+    File root =
+        writeIndex(FlagIndex.RESOURCE, "org.flagz.testclasses.StaticFlags#testAltNameFlag\n");
+    File coreRoot = writeIndex(FlagIndex.CORE_RESOURCE, "org.flagz.Flagz#showHelp\n");
+    URL[] urls = {root.toURI().toURL(), coreRoot.toURI().toURL()};
+    Thread thread = Thread.currentThread();
+    ClassLoader contextLoader = thread.getContextClassLoader();
+    long scans = ReflectionsCache.stats().requests();
+    try (URLClassLoader loader = new URLClassLoader(urls, getClass().getClassLoader())) {
+      thread.setContextClassLoader(loader);
+      System.setProperty("org.graalvm.nativeimage.imagecode", "runtime");
+      Set<Field> fields = ReflectionsCache.flagFieldsForPrefixes(ImmutableList.of());
+
+      assertThat(fields, is((Set<Field>) ImmutableSet.of(
+          StaticFlags.class.getDeclaredField("testAltNameFlag"),
+          Flagz.class.getDeclaredField("showHelp"))));
+      assertThat(ReflectionsCache.stats().requests(), is(scans));
+    } finally {
+      System.clearProperty("org.graalvm.nativeimage.imagecode");
+      thread.setContextClassLoader(contextLoader);
+    }
+  }
+
+  /** Writes a jar with the index, and a directory entry for `org.flagz` to be found by prefix. */
+  private static File writeJar(String content) throws Exception {
+    File jar = File.createTempFile("flagz-index", ".jar");
+    jar.deleteOnExit();
+    try (JarOutputStream output = new JarOutputStream(new FileOutputStream(jar))) {
+      output.putNextEntry(new JarEntry("org/flagz/"));
+      output.closeEntry();
+      output.putNextEntry(new JarEntry(FlagIndex.RESOURCE));
+      output.write(content.getBytes(StandardCharsets.UTF_8));
+      output.closeEntry();
+    }
+    return jar;
+  }
+
+  private static File writeIndex(String content) throws Exception {
+    return writeIndex(FlagIndex.RESOURCE, content);
+  }
+
+  private static File writeIndex(String resource, String content) throws Exception {
+    File root = Files.createTempDir();
+    File index = new File(root, resource);
+    Files.createParentDirs(index);
+    Files.write(content, index, StandardCharsets.UTF_8);
+    return root;
+  }
+}
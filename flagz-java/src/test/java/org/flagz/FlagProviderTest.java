@@ -0,0 +1,103 @@
+package org.flagz;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+import org.flagz.FlagRegistrationTest.PluginClassLoader;
+import org.flagz.testclasses.LazyFlags;
+import org.flagz.testclasses.ProvidedFlags;
+import org.flagz.testclasses.StaticFlags;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for finding flags through {@link FlagProvider}s instead of, or next to, scanning.
+ */
+public class FlagProviderTest {
+
+  private static final String[] EMPTY_ARGS = {};
+
+  private ClassLoader contextLoader;
+  private URLClassLoader providerLoader;
+
+  @Before
+  public void setUp() throws Exception {
+    File root = Files.createTempDir();
+    File services = new File(root, "META-INF/services/" + FlagProvider.class.getName());
+    Files.createParentDirs(services);
+    Files.write(ProvidedFlags.Provider.class.getName() + "\n", services, StandardCharsets.UTF_8);
+    providerLoader =
+        new URLClassLoader(new URL[] {root.toURI().toURL()}, getClass().getClassLoader());
+    contextLoader = Thread.currentThread().getContextClassLoader();
+    Thread.currentThread().setContextClassLoader(providerLoader);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    Thread.currentThread().setContextClassLoader(contextLoader);
+    providerLoader.close();
+    ProvidedFlags.resetToDefaults();
+  }
+
+  @Test
+  public void testProvidedFlagsFoundWithoutScanning() {
+    FlagFieldRegistry registry =
+        Flagz.parseProvided(new String[] {"--t_provided=5"}, ImmutableSet.of());
+
+    assertThat(ProvidedFlags.providedIntFlag.get(), is(5));
+    Set<String> names = registry.getAllFields().stream()
+        .map(Flag::name)
+        .collect(Collectors.toSet());
+    assertTrue(names.contains("help"));
+    assertTrue(names.contains("flagz_file_poll_ms"));
+    assertFalse(names.contains("test_flag_full_name"));
+  }
+
+  @Test
+  public void testProvidedFlagsCombinedWithScannedOnes() {
+    FlagFieldRegistry registry = Flagz.parse(
+        new String[] {"--test_provided_int=6"}, ImmutableList.of(), ImmutableSet.of());
+
+    assertThat(ProvidedFlags.providedIntFlag.get(), is(6));
+    assertThat(registry.getField("test_flag_full_name"), is((Flag) StaticFlags.testFullNameFlag));
+  }
+
+  @Test
+  public void testProvidedClassesAreNotInitializedWhenLazy() throws Exception {
+    String lazyName = LazyFlags.class.getName();
+    Class<?> lazyClass = new PluginClassLoader(lazyName).loadClass(lazyName);
+    int initializations = LazyFlags.Initializations.count.get();
+    FlagFieldRegistry registry = new FlagFieldRegistry(ImmutableSet.of(
+        new FlagFieldScanner.ProviderScanner(
+            ImmutableSet.<FlagProvider>of(() -> ImmutableSet.of(lazyClass)), true)));
+    registry.init();
+    assertThat(LazyFlags.Initializations.count.get(), is(initializations));
+
+    registry.getField("test_lazy_int");
+    assertThat(LazyFlags.Initializations.count.get(), is(initializations + 1));
+  }
+
+  @Test(expected = FlagException.NameConflict.class)
+  public void testConflictBetweenProvidedAndScannedFlags() throws Exception {
+    String staticFlagsName = StaticFlags.class.getName();
+    Class<?> copy = new PluginClassLoader(staticFlagsName).loadClass(staticFlagsName);
+    FlagProvider provider = () -> ImmutableSet.of(copy);
+    FlagFieldRegistry registry = new FlagFieldRegistry(ImmutableSet.of(
+        new FlagFieldScanner.StaticFinalScanner(
+            ImmutableList.of(), ImmutableSet.of(provider), false)));
+    registry.init();
+  }
+}
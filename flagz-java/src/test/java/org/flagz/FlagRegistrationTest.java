@@ -0,0 +1,186 @@
+package org.flagz;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteStreams;
+import org.flagz.testclasses.PluginFlags;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for registering flags of late-loaded classes through {@link FlagFieldRegistry#register}.
+ *
+ * The registries here only know the flags of {@link Flagz} itself, standing in for an application
+ * started without its plugins, which are represented by {@link PluginFlags}.
+ */
+public class FlagRegistrationTest {
+
+  private static final String PLUGIN_CLASS = "org.flagz.testclasses.PluginFlags";
+
+  private FlagFieldRegistry registry;
+  private FlagFieldRegistry deferring;
+
+  @Before
+  public void setUp() {
+    registry = newRegistry(false);
+    deferring = newRegistry(true);
+  }
+
+  @After
+  public void tearDown() {
+    PluginFlags.resetToDefaults();
+  }
+
+  @Test(expected = FlagException.UnknownFlag.class)
+  public void testUnknownFlagFailsWithoutDeferral() {
+    registry.parseAll(ImmutableMap.of("test_plugin_int", "7"));
+  }
+
+  @Test(expected = FlagException.UnknownFlag.class)
+  public void testSetUnknownFlagFailsWithoutDeferral() {
+    registry.setField("test_plugin_int", "7");
+  }
+
+  @Test
+  public void testRegisterAppliesDeferredArgs() {
+    deferring.parseAll(ImmutableMap.of("t_plugin", "7"));
+    Set<Flag<?>> registered = deferring.register(PluginFlags.class);
+
+    assertThat(registered, is((Set<Flag<?>>) ImmutableSet.<Flag<?>>of(PluginFlags.pluginIntFlag)));
+    assertThat(PluginFlags.pluginIntFlag.get(), is(7));
+    assertThat(deferring.getField("test_plugin_int"), is((Flag) PluginFlags.pluginIntFlag));
+    assertThat(deferring.snapshot().get(PluginFlags.pluginIntFlag), is(7));
+  }
+
+  @Test
+  public void testUnknownFlagRejectedBeforeKnownValuesAreSet() {
+    registry.register(PluginFlags.class);
+    try {
+      registry.parseAll(ImmutableMap.of("t_plugin", "7", "test_other_plugin_int", "8"));
+      fail("Expected the unknown flag to be rejected.");
+    } catch (FlagException.UnknownFlag expected) {
+      // Expected.
+    }
+    assertThat(PluginFlags.pluginIntFlag.get(), is(1));
+  }
+
+  @Test
+  public void testDeferralIsPerRegistry() {
+    deferring.setField("test_plugin_int", "9");
+    try {
+      registry.setField("test_plugin_int", "8");
+      fail("Expected the unknown flag to be rejected.");
+    } catch (FlagException.UnknownFlag expected) {
+      // Expected.
+    }
+    deferring.register(PluginFlags.class);
+    assertThat(PluginFlags.pluginIntFlag.get(), is(9));
+  }
+
+  @Test
+  public void testAltNamesOfRegisteredFlagsAreSetNotDeferred() {
+    deferring.register(PluginFlags.class);
+    deferring.setField("t_plugin", "5");
+    assertThat(PluginFlags.pluginIntFlag.get(), is(5));
+    deferring.setFields(ImmutableMap.of("t_plugin", "6"));
+    assertThat(PluginFlags.pluginIntFlag.get(), is(6));
+  }
+
+  @Test
+  public void testRegisterTwiceIsNoop() {
+    registry.register(PluginFlags.class);
+    assertTrue(registry.register(PluginFlags.class).isEmpty());
+  }
+
+  @Test
+  public void testSetFieldDeferredUntilRegister() {
+    deferring.setField("test_plugin_int", "9");
+    deferring.register(PluginFlags.class);
+    assertThat(PluginFlags.pluginIntFlag.get(), is(9));
+  }
+
+  @Test
+  public void testBadDeferredValueLeavesRegistryUnchanged() {
+    deferring.setField("test_plugin_int", "nine");
+    try {
+      deferring.register(PluginFlags.class);
+      fail("Expected the deferred value to fail parsing.");
+    } catch (FlagException.IllegalFormat expected) {
+      // Expected.
+    }
+    assertTrue(deferring.getAllFields().stream().noneMatch(f -> f == PluginFlags.pluginIntFlag));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testUnregisterClassLoader() throws Exception {
+    PluginClassLoader loader = new PluginClassLoader(PLUGIN_CLASS);
+    Class<?> pluginClass = loader.loadClass(PLUGIN_CLASS);
+    registry.register(pluginClass);
+    Flag<Integer> pluginFlag = (Flag<Integer>) registry.getField("test_plugin_int");
+    pluginFlag.accept(42);
+
+    Set<Flag<?>> unregistered = registry.unregister(loader);
+    assertThat(unregistered, is((Set<Flag<?>>) ImmutableSet.<Flag<?>>of(pluginFlag)));
+    try {
+      registry.getField("test_plugin_int");
+      fail("Expected the plugin flag to be gone.");
+    } catch (FlagException.UnknownFlag expected) {
+      // Expected.
+    }
+    assertThat(registry.snapshot().valueOrAbsent(pluginFlag), is(FlagSnapshot.ABSENT));
+
+    // A reloaded plugin picks up the value its flag had when it was unloaded.
+    PluginClassLoader reloaded = new PluginClassLoader(PLUGIN_CLASS);
+    registry.register(reloaded.loadClass(PLUGIN_CLASS));
+    assertThat(registry.getField("test_plugin_int").get(), is((Object) 42));
+  }
+
+  private static FlagFieldRegistry newRegistry(boolean deferUnknownFlags) {
+    FlagFieldRegistry registry = new FlagFieldRegistry(ImmutableSet.of(
+        new FlagFieldScanner.ClassScanner(ImmutableSet.of(Flagz.class))), deferUnknownFlags);
+    registry.init();
+    return registry;
+  }
+
+  /** Loads its own copy of the plugin class, like the class loader of a plugin would. */
+  static class PluginClassLoader extends ClassLoader {
+
+    private final String pluginClass;
+
+    PluginClassLoader(String pluginClass) {
+      super(FlagRegistrationTest.class.getClassLoader());
+      this.pluginClass = pluginClass;
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+      if (!name.equals(pluginClass)) {
+        return super.loadClass(name, resolve);
+      }
+      synchronized (getClassLoadingLock(name)) {
+        Class<?> loaded = findLoadedClass(name);
+        if (loaded == null) {
+          String resource = name.replace('.', '/') + ".class";
+          try (InputStream stream = getParent().getResourceAsStream(resource)) {
+            byte[] bytes = ByteStreams.toByteArray(stream);
+            loaded = defineClass(name, bytes, 0, bytes.length);
+          } catch (IOException exception) {
+            throw new ClassNotFoundException(name, exception);
+          }
+        }
+        return loaded;
+      }
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package org.flagz;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for pinning flag values to a thread through {@link FlagScope}.
+ */
+public class FlagScopeTest {
+
+  public static final String[] EMPTY_ARGS = {};
+  public static final List<String> EMPTY_PACKAGE_PREFIXES = ImmutableList.of();
+
+  @FlagInfo(name = "test_scope_int", help = "some int")
+  final IntFlag flagInt = Flagz.valueOf(10);
+
+  @FlagInfo(name = "test_scope_string", help = "some string")
+  final Flag<String> flagString = Flagz.valueOf("foo");
+
+  final Set<Object> SET_OF_THIS_TEST = ImmutableSet.of(this);
+
+  /** Flags of a second registry. */
+  static class OtherFlags {
+    @FlagInfo(name = "test_scope_other_int", help = "some int of another registry")
+    final IntFlag otherInt = Flagz.valueOf(1);
+  }
+
+  @Test
+  public void testPinnedValuesSurviveUpdates() {
+    FlagFieldRegistry registry = Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    try (FlagScope scope = registry.pin()) {
+      registry.setField("test_scope_int", "20");
+      flagString.accept("bar");
+      assertThat(flagInt.getAsInt(), is(10));
+      assertThat(flagInt.get(), is(10));
+      assertThat(flagString.get(), is("foo"));
+    }
+    assertThat(flagInt.getAsInt(), is(20));
+    assertThat(flagString.get(), is("bar"));
+  }
+
+  @Test
+  public void testNestedScopeKeepsOuterValues() {
+    FlagFieldRegistry registry = Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    try (FlagScope outer = registry.pin()) {
+      flagInt.accept(20);
+      try (FlagScope inner = registry.pin()) {
+        assertThat(flagInt.getAsInt(), is(10));
+      }
+      assertThat(flagInt.getAsInt(), is(10));
+    }
+    assertThat(flagInt.getAsInt(), is(20));
+  }
+
+  @Test
+  public void testScopesOfDifferentRegistriesNest() throws Exception {
+    FlagFieldRegistry registry = Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    OtherFlags other = new OtherFlags();
+    FlagFieldRegistry otherRegistry =
+        Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, ImmutableSet.of(other));
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try (FlagScope outer = registry.pin()) {
+      flagInt.accept(20);
+      try (FlagScope inner = otherRegistry.pin()) {
+        other.otherInt.accept(2);
+        assertThat(flagInt.getAsInt(), is(10));
+        assertThat(other.otherInt.getAsInt(), is(1));
+        Future<Integer> pinned = executor.submit(
+            inner.wrap(() -> flagInt.getAsInt() + other.otherInt.getAsInt()));
+        assertThat(pinned.get(), is(11));
+      }
+      assertThat(other.otherInt.getAsInt(), is(2));
+      assertThat(flagInt.getAsInt(), is(10));
+    } finally {
+      executor.shutdown();
+    }
+    assertThat(flagInt.getAsInt(), is(20));
+  }
+
+  @Test
+  public void testOtherThreadsSeeLiveValues() throws Exception {
+    FlagFieldRegistry registry = Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try (FlagScope scope = registry.pin()) {
+      flagInt.accept(20);
+      Future<Integer> unpinned = executor.submit(flagInt::getAsInt);
+      Future<Integer> pinned = executor.submit(scope.wrap(flagInt::getAsInt));
+      assertThat(unpinned.get(), is(20));
+      assertThat(pinned.get(), is(10));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testClosingOutOfOrderThrows() {
+    FlagFieldRegistry registry = Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    FlagScope outer = registry.pin();
+    FlagScope inner = registry.pin();
+    try {
+      outer.close();
+    } finally {
+      inner.close();
+      outer.close();
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package org.flagz;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link FlagSnapshot} views of {@link FlagFieldRegistry}.
+ */
+public class FlagSnapshotTest {
+
+  public static final String[] EMPTY_ARGS = {};
+  public static final List<String> EMPTY_PACKAGE_PREFIXES = ImmutableList.of();
+
+  @FlagInfo(name = "test_snapshot_int", help = "some int")
+  final IntFlag flagInt = Flagz.valueOf(10);
+
+  @FlagInfo(name = "test_snapshot_string", help = "some string")
+  final Flag<String> flagString = Flagz.valueOf("foo");
+
+  final Set<Object> SET_OF_THIS_TEST = ImmutableSet.of(this);
+
+  @Test
+  public void testSnapshotHoldsParsedValues() {
+    String[] args = {"--test_snapshot_int=20"};
+    FlagFieldRegistry registry = Flagz.parse(args, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    FlagSnapshot snapshot = registry.snapshot();
+    assertThat(snapshot.get(flagInt), is(20));
+    assertThat(snapshot.get(flagString), is("foo"));
+  }
+
+  @Test
+  public void testSnapshotIsReusedWithoutChanges() {
+    FlagFieldRegistry registry = Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    assertThat(registry.snapshot(), sameInstance(registry.snapshot()));
+  }
+
+  @Test
+  public void testEveryRegistryFollowsFlag() {
+    FlagFieldRegistry first = Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    FlagFieldRegistry second = Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    flagInt.accept(40);
+    assertThat(first.snapshot().get(flagInt), is(40));
+    assertThat(second.snapshot().get(flagInt), is(40));
+    try (FlagScope scope = first.pin()) {
+      assertThat(flagInt.getAsInt(), is(40));
+    }
+  }
+
+  @Test
+  public void testSnapshotIsImmutable() {
+    FlagFieldRegistry registry = Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    FlagSnapshot before = registry.snapshot();
+    registry.setField("test_snapshot_string", "changed");
+    flagInt.accept(30);
+    FlagSnapshot after = registry.snapshot();
+
+    assertThat(before.get(flagString), is("foo"));
+    assertThat(before.get(flagInt), is(10));
+    assertThat(after.get(flagString), is("changed"));
+    assertThat(after.get(flagInt), is(30));
+    assertThat(after.version(), is(before.version() + 2));
+  }
+
+  @Test
+  public void testVersionIncreasesOnEveryChange() {
+    FlagFieldRegistry registry = Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    long previous = registry.snapshot().version();
+    for (int i = 0; i < 5; i++) {
+      registry.setField("test_snapshot_int", Integer.toString(i));
+      long current = registry.snapshot().version();
+      assertTrue(current > previous);
+      previous = current;
+    }
+  }
+
+  @Test(expected = FlagException.UnknownFlag.class)
+  public void testFlagFromOtherRegistryThrows() {
+    OtherFlags other = new OtherFlags();
+    Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, ImmutableSet.of(other));
+    FlagFieldRegistry registry = Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    registry.snapshot().get(other.otherFlag);
+  }
+
+  static class OtherFlags {
+    @FlagInfo(name = "test_snapshot_other", help = "flag in another registry")
+    final Flag<String> otherFlag = Flagz.valueOf("bar");
+  }
+}
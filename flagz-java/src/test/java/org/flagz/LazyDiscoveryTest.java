@@ -0,0 +1,199 @@
+package org.flagz;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.flagz.FlagRegistrationTest.PluginClassLoader;
+import org.flagz.testclasses.LazyFlags;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for discovering static flags without initializing their classes, see
+ * {@link Flagz#parseLazily}.
+ *
+ * Each test loads its own, uninitialized copy of {@link LazyFlags}, since other tests initialize
+ * the one on the classpath.
+ */
+public class LazyDiscoveryTest {
+
+  private static final String LAZY_CLASS = "org.flagz.testclasses.LazyFlags";
+
+  // Used by the static initializer of ReachingFlags on another thread, which couldn't read a field
+  // of the class it is initializing.
+  private static volatile FlagFieldRegistry reachingRegistry;
+
+  private Class<?> lazyClass;
+  private FlagFieldRegistry registry;
+  private int initializations;
+
+  @Before
+  public void setUp() throws Exception {
+    lazyClass = new PluginClassLoader(LAZY_CLASS).loadClass(LAZY_CLASS);
+    initializations = LazyFlags.Initializations.count.get();
+    Set<Field> lazyFields = Arrays.stream(lazyClass.getDeclaredFields())
+        .filter(field -> field.isAnnotationPresent(FlagInfo.class))
+        .collect(Collectors.toSet());
+    registry = new FlagFieldRegistry(ImmutableSet.of(
+        new FlagFieldScanner.ClassScanner(ImmutableSet.of(Flagz.class)),
+        new FlagFieldScanner() {
+          @Override
+          public Set<FlagField<?>> scanAndBind() {
+            return ImmutableSet.of();
+          }
+
+          @Override
+          public Set<Field> scanUnbound() {
+            return lazyFields;
+          }
+        }));
+    registry.init();
+  }
+
+  @Test
+  public void testDiscoveryDoesNotInitializeClass() {
+    registry.parseAll(ImmutableMap.of());
+    assertThat(LazyFlags.Initializations.count.get(), is(initializations));
+  }
+
+  @Test(expected = FlagException.UnknownFlag.class)
+  public void testUnknownFlagIsRejected() {
+    try {
+      registry.parseAll(ImmutableMap.of("test_lazy_unknown", "7"));
+    } finally {
+      assertThat(LazyFlags.Initializations.count.get(), is(initializations));
+    }
+  }
+
+  @Test
+  public void testPassedValueBindsClass() throws Exception {
+    registry.parseAll(ImmutableMap.of("t_lazy", "7"));
+
+    assertThat(LazyFlags.Initializations.count.get(), is(initializations + 1));
+    Flag<?> lazyIntFlag = (Flag<?>) lazyClass.getField("lazyIntFlag").get(null);
+    assertThat(lazyIntFlag.get(), is((Object) 7));
+    assertThat(registry.getField("test_lazy_int"), sameInstance((Object) lazyIntFlag));
+    // The other flag of the class is bound along.
+    assertThat(registry.snapshot().get(registry.getField("test_lazy_string")), is((Object) "foo"));
+  }
+
+  @Test
+  public void testGetFieldBindsOnDemand() throws Exception {
+    Flag<?> lazyStringFlag = registry.getField("test_lazy_string");
+
+    assertThat(LazyFlags.Initializations.count.get(), is(initializations + 1));
+    assertThat(lazyStringFlag, sameInstance(lazyClass.getField("lazyStringFlag").get(null)));
+    registry.setField("test_lazy_string", "bar");
+    assertThat(lazyStringFlag.get(), is((Object) "bar"));
+  }
+
+  @Test
+  public void testListingFlagsBindsAll() {
+    Set<String> names = registry.allFields().stream()
+        .map(FlagField::name)
+        .collect(Collectors.toSet());
+    assertTrue(names.contains("test_lazy_int"));
+    assertTrue(names.contains("test_lazy_string"));
+  }
+
+  @Test(expected = FlagException.NameConflict.class)
+  public void testConflictWithBoundFlagIsRejected() throws Exception {
+    Field conflicting = lazyClass.getField("lazyIntFlag");
+    FlagFieldRegistry conflicted = new FlagFieldRegistry(ImmutableSet.of(
+        new FlagFieldScanner.ClassScanner(ImmutableSet.of(LazyFlags.class)),
+        new FlagFieldScanner() {
+          @Override
+          public Set<FlagField<?>> scanAndBind() {
+            return ImmutableSet.of();
+          }
+
+          @Override
+          public Set<Field> scanUnbound() {
+            return ImmutableSet.of(conflicting);
+          }
+        }));
+    conflicted.init();
+  }
+
+  @Test
+  public void testParseLazilyFindsStaticFlags() {
+    String[] args = {"--test_lazy_string=bar"};
+    FlagFieldRegistry parsed =
+        Flagz.parseLazily(args, ImmutableList.of("org.flagz"), ImmutableSet.of());
+    try {
+      assertThat(parsed.getField("test_lazy_string"),
+          sameInstance((Object) LazyFlags.lazyStringFlag));
+      assertThat(LazyFlags.lazyStringFlag.get(), is("bar"));
+    } finally {
+      LazyFlags.lazyStringFlag.accept("foo");
+    }
+  }
+
+  @Test
+  public void testStaticInitializerReachingRegistryFromOtherThread() throws Exception {
+    Set<Field> lazyFields = ImmutableSet.of(
+        ReachingFlags.class.getDeclaredField("reachingFlag"),
+        ReachedFlags.class.getDeclaredField("reachedFlag"));
+    FlagFieldRegistry reaching = new FlagFieldRegistry(ImmutableSet.of(
+        new FlagFieldScanner() {
+          @Override
+          public Set<FlagField<?>> scanAndBind() {
+            return ImmutableSet.of();
+          }
+
+          @Override
+          public Set<Field> scanUnbound() {
+            return lazyFields;
+          }
+        }));
+    reaching.init();
+    reachingRegistry = reaching;
+    // Initializing ReachingFlags waits for a thread binding ReachedFlags through the registry.
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Flag<?>> bound = executor.submit(() -> reaching.getField("test_lazy_reaching"));
+      assertThat(bound.get(10, TimeUnit.SECONDS).get(), is((Object) "reaching"));
+      assertThat(reaching.getField("test_lazy_reached").get(), is((Object) "reached"));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static void bindReachedFlags() {
+    reachingRegistry.getField("test_lazy_reached");
+  }
+
+  static class ReachingFlags {
+    @FlagInfo(name = "test_lazy_reaching", help = "")
+    static final Flag<String> reachingFlag = Flagz.valueOf("reaching");
+
+    static {
+      Thread thread = new Thread(LazyDiscoveryTest::bindReachedFlags);
+      thread.start();
+      try {
+        thread.join();
+      } catch (InterruptedException exception) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  static class ReachedFlags {
+    @FlagInfo(name = "test_lazy_reached", help = "")
+    static final Flag<String> reachedFlag = Flagz.valueOf("reached");
+  }
+}
@@ -0,0 +1,128 @@
+package org.flagz;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/** Tests of {@link MembershipFlag}s and the sets holding their values. */
+public class MembershipFlagTest {
+
+  private static final List<String> EMPTY_PACKAGE_PREFIXES = ImmutableList.of();
+
+  @FlagInfo(name = "test_membership_string_flag", help = "")
+  final MembershipFlag<String> stringFlag = Flagz.membershipOf(ImmutableSet.of("alice"));
+
+  @FlagInfo(name = "test_membership_int_flag", help = "")
+  final IntMembershipFlag intFlag = Flagz.intMembershipOf(7, 3);
+
+  @FlagInfo(name = "test_membership_long_flag", help = "")
+  final LongMembershipFlag longFlag = Flagz.longMembershipOf(1L << 40);
+
+  final Set<Object> setOfThisTest = ImmutableSet.of(this);
+
+  @Test
+  public void testDefaults() {
+    Flagz.parse(new String[] {}, EMPTY_PACKAGE_PREFIXES, setOfThisTest);
+    assertTrue(stringFlag.contains("alice"));
+    assertFalse(stringFlag.contains("bob"));
+    assertTrue(intFlag.contains(3));
+    assertFalse(intFlag.contains(4));
+    assertTrue(longFlag.contains(1L << 40));
+    assertThat(intFlag.get(), equalTo(ImmutableSet.of(3, 7)));
+  }
+
+  @Test
+  public void testParse() {
+    String[] args = {"--test_membership_string_flag=bob,carol", "--test_membership_int_flag=5,-1,5",
+        "--test_membership_long_flag=0x10,2"};
+    Flagz.parse(args, EMPTY_PACKAGE_PREFIXES, setOfThisTest);
+    assertFalse(stringFlag.contains("alice"));
+    assertTrue(stringFlag.contains("carol"));
+    assertFalse(stringFlag.contains(null));
+    assertTrue(intFlag.contains(-1));
+    assertTrue(intFlag.contains((Object) 5));
+    assertFalse(intFlag.contains(7));
+    assertThat(intFlag.get(), instanceOf(IntMembershipSet.class));
+    assertThat(intFlag.get().size(), is(2));
+    assertTrue(longFlag.contains(16L));
+    assertFalse(longFlag.contains(1L << 40));
+    String valueString = ((FlagField<Set<Integer>>) intFlag).valueString(intFlag.get());
+    assertThat(ImmutableSet.copyOf(valueString.split(",")), equalTo(ImmutableSet.of("-1", "5")));
+  }
+
+  @Test
+  public void testZeroAndEmptySets() {
+    assertFalse(IntMembershipSet.copyOf().contains(0));
+    assertThat(IntMembershipSet.copyOf().size(), is(0));
+    IntMembershipSet withZero = IntMembershipSet.copyOf(0, 0, 2);
+    assertTrue(withZero.contains(0));
+    assertThat(withZero, equalTo(ImmutableSet.of(0, 2)));
+    assertThat(withZero.hashCode(), is(ImmutableSet.of(0, 2).hashCode()));
+    assertFalse(MembershipSet.copyOf(ImmutableSet.of()).contains("a"));
+  }
+
+  @Test
+  public void testAcceptedSetIsCopiedForLookup() {
+    Flagz.parse(new String[] {}, EMPTY_PACKAGE_PREFIXES, setOfThisTest);
+    stringFlag.accept(new HashSet<>(ImmutableSet.of("dave")));
+    assertTrue(stringFlag.contains("dave"));
+    intFlag.accept(ImmutableSet.of(42));
+    assertTrue(intFlag.contains(42));
+    assertFalse(intFlag.contains(7));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testValueIsImmutable() {
+    Flagz.parse(new String[] {"--test_membership_int_flag=1"}, EMPTY_PACKAGE_PREFIXES,
+        setOfThisTest);
+    intFlag.get().add(2);
+  }
+
+  @Test
+  public void testLargeSetsWithPrefilter() {
+    Random random = new Random(42);
+    Set<Long> expected = new HashSet<>();
+    LongMembershipSet longs = new LongMembershipSet();
+    MembershipSet<String> strings = new MembershipSet<>();
+    for (int i = 0; i < 100000; i++) {
+      long value = random.nextLong();
+      expected.add(value);
+      longs.addLong(value);
+      strings.add(Long.toString(value));
+    }
+    longs.freeze();
+    strings.freeze();
+    assertThat(longs.size(), is(expected.size()));
+    assertThat(longs, equalTo(expected));
+    for (long value : expected) {
+      assertTrue(longs.contains(value));
+      assertTrue(strings.contains(Long.toString(value)));
+    }
+    for (int i = 0; i < 10000; i++) {
+      long absent = random.nextLong();
+      assertThat(longs.contains(absent), is(expected.contains(absent)));
+      assertThat(strings.contains(Long.toString(absent)), is(expected.contains(absent)));
+    }
+  }
+
+  @Test
+  public void testPrefilterRejectsMostAbsentHashes() {
+    BloomPrefilter prefilter = new BloomPrefilter(100000);
+    for (int hash = 0; hash < 100000; hash++) {
+      prefilter.add(hash);
+    }
+    int passed = 0;
+    for (int hash = 100000; hash < 200000; hash++) {
+      passed += prefilter.mightContain(hash) ? 1 : 0;
+    }
+    assertTrue("False positives: " + passed, passed < 3000);
+  }
+}
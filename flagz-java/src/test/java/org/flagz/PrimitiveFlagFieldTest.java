@@ -13,6 +13,7 @@ import java.util.Set;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 /**
  * Tests of flags of primitive types.
@@ -58,6 +59,21 @@ public class PrimitiveFlagFieldTest {
   @FlagInfo(name = "test_enum_flag", help = "")
   final Flag<SomeEnum> enumFlag = Flagz.valueOf(SomeEnum.NORMAL);
 
+  @FlagInfo(name = "test_int_unboxed_flag", help = "")
+  final IntFlag unboxedIntFlag = Flagz.valueOf(42);
+
+  @FlagInfo(name = "test_long_unboxed_flag", help = "")
+  final LongFlag unboxedLongFlag = Flagz.valueOf(4200000000L);
+
+  @FlagInfo(name = "test_double_unboxed_flag", help = "")
+  final DoubleFlag unboxedDoubleFlag = Flagz.valueOf(4.2);
+
+  @FlagInfo(name = "test_bool_unboxed_flag", help = "")
+  final BooleanFlag unboxedBooleanFlag = Flagz.valueOf(true);
+
+  @FlagInfo(name = "test_boxed_bool_flag", help = "")
+  final Flag<Boolean> boxedBooleanFlag = Flagz.valueOf((Boolean) null);
+
   @CustomAnnotation
   @FlagInfo(name = "test_annotated_flag", help = "")
   final Flag<String> annotatedFlag = Flagz.valueOf("");
@@ -269,4 +285,78 @@ public class PrimitiveFlagFieldTest {
     String[] args = {"--test_enum_flag=RUBBISH"};
     Flagz.parse(args, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
   }
+
+  @Test
+  public void testBoxedBoolean_NullDefault() {
+    FlagFieldRegistry registry = Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    assertThat(boxedBooleanFlag.get(), is((Boolean) null));
+    registry.setField("test_boxed_bool_flag", "");
+    assertThat(boxedBooleanFlag.get(), is(true));
+    boxedBooleanFlag.accept(null);
+    assertThat(boxedBooleanFlag.get(), is((Boolean) null));
+  }
+
+  @Test
+  public void testUnboxed_Default() {
+    Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    assertThat(unboxedIntFlag.getAsInt(), is(42));
+    assertThat(unboxedLongFlag.getAsLong(), is(4200000000L));
+    assertThat(unboxedDoubleFlag.getAsDouble(), is(4.2));
+    assertThat(unboxedBooleanFlag.getAsBoolean(), is(true));
+  }
+
+  @Test
+  public void testUnboxed_Set() {
+    String[] args = {"--test_int_unboxed_flag=0x10", "--test_long_unboxed_flag=99999999999",
+        "--test_double_unboxed_flag=0.5", "--test_bool_unboxed_flag=false"};
+    Flagz.parse(args, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    assertThat(unboxedIntFlag.getAsInt(), is(16));
+    assertThat(unboxedIntFlag.get(), is(16));
+    assertThat(unboxedLongFlag.getAsLong(), is(99999999999L));
+    assertThat(unboxedDoubleFlag.getAsDouble(), is(0.5));
+    assertThat(unboxedBooleanFlag.getAsBoolean(), is(false));
+  }
+
+  @Test
+  public void testUnboxed_DynamicSet() {
+    FlagFieldRegistry registry = Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    registry.setField("test_int_unboxed_flag", "7");
+    unboxedLongFlag.accept(8L);
+    assertThat(unboxedIntFlag.getAsInt(), is(7));
+    assertThat(unboxedLongFlag.getAsLong(), is(8L));
+  }
+
+  @Test
+  public void testUnboxed_FieldType() {
+    Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    assertThat(((FlagField<?>) unboxedIntFlag).fieldType(), is(Integer.class));
+    assertThat(((FlagField<?>) unboxedBooleanFlag).fieldType(), is(Boolean.class));
+  }
+
+  @Test(expected = FlagException.IllegalFormat.class)
+  public void testUnboxed_Bad() {
+    String[] args = {"--test_int_unboxed_flag=99.9"};
+    Flagz.parse(args, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+  }
+
+  @Test
+  public void testUnboxed_NullRejected() {
+    Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, SET_OF_THIS_TEST);
+    List<Flag<?>> flags = ImmutableList.of(
+        unboxedIntFlag, unboxedLongFlag, unboxedDoubleFlag, unboxedBooleanFlag);
+    for (Flag<?> flag : flags) {
+      Object before = flag.get();
+      long version = flag.version();
+      try {
+        flag.accept(null);
+        fail("Null accepted by " + flag.name());
+      } catch (FlagException.BadValue expected) {
+        // Nothing stored, so the boxed and unboxed values still agree.
+      }
+      assertThat(flag.get(), is(before));
+      assertThat(flag.version(), is(version));
+    }
+    assertThat(unboxedIntFlag.getAsInt(), is(42));
+    assertThat(unboxedBooleanFlag.getAsBoolean(), is(true));
+  }
 }
@@ -0,0 +1,125 @@
+package org.flagz;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.flagz.testclasses.StaticFlags;
+import org.junit.Test;
+import org.reflections.Reflections;
+
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the parallel, memoized and bounded classpath scanning of {@link ReflectionsCache}.
+ */
+public class ReflectionsCacheTest {
+
+  private static final String[] EMPTY_ARGS = {};
+  private static final List<String> PREFIXES = ImmutableList.of("org.flagz");
+
+  @Test
+  public void testResultsOfAllUrlsAreMerged() throws Exception {
+    ReflectionsCache.urlsToReflections.clear();
+    Set<Field> fields = ReflectionsCache.flagFieldsForPrefixes(PREFIXES);
+    // Flags from the main and the test classpath entries.
+    assertTrue(fields.contains(Flagz.class.getDeclaredField("showHelp")));
+    assertTrue(fields.contains(StaticFlags.class.getDeclaredField("testAltNameFlag")));
+  }
+
+  @Test
+  public void testConcurrentCallersShareOneScan() throws Exception {
+    ReflectionsCache.urlsToReflections.clear();
+    int threads = 8;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<Reflections>> results = new ArrayList<>();
+    try {
+      for (int i = 0; i < threads; i++) {
+        results.add(executor.submit(() -> {
+          start.await();
+          return ReflectionsCache.reflectionsForPrefixes(PREFIXES);
+        }));
+      }
+      start.countDown();
+      Reflections first = results.get(0).get();
+      for (Future<Reflections> result : results) {
+        assertThat(result.get(), sameInstance(first));
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testCachedScanRunsOnceAndRethrows() throws Exception {
+    AtomicInteger runs = new AtomicInteger();
+    ReflectionsCache.CachedScan failing = new ReflectionsCache.CachedScan(() -> {
+      runs.incrementAndGet();
+      throw new IllegalArgumentException("bad jar");
+    });
+    for (int i = 0; i < 2; i++) {
+      try {
+        failing.reflections();
+        fail("Expected the scan's exception.");
+      } catch (IllegalArgumentException expected) {
+        assertThat(expected.getMessage(), is("bad jar"));
+      }
+    }
+    assertThat(runs.get(), is(1));
+  }
+
+  @Test
+  public void testReleaseAfterParseDropsScans() throws Exception {
+    ReflectionsCache.urlsToReflections.clear();
+    String[] args = {"--flagz_release_reflections_cache"};
+    ReflectionsCacheStats before = Flagz.reflectionsCacheStats();
+    FlagFieldRegistry registry = Flagz.parse(args, PREFIXES, ImmutableSet.of());
+    try {
+      ReflectionsCacheStats after = Flagz.reflectionsCacheStats();
+      assertThat(after.cachedScans(), is(0));
+      assertThat(after.releases(), is(before.releases() + 1));
+      assertTrue(after.estimatedFreedBytes() > before.estimatedFreedBytes());
+    } finally {
+      registry.setField("flagz_release_reflections_cache", "false");
+    }
+  }
+
+  @Test
+  public void testLeastRecentlyUsedScanIsEvicted() throws Exception {
+    ReflectionsCache.urlsToReflections.clear();
+    FlagFieldRegistry registry = Flagz.parse(EMPTY_ARGS, PREFIXES, ImmutableSet.of());
+    registry.setField("flagz_reflections_cache_size", "2");
+    try {
+      Set<URL> first = ImmutableSet.of(new URL("file:/nonexistent/first.jar"));
+      Set<URL> second = ImmutableSet.of(new URL("file:/nonexistent/second.jar"));
+      Set<URL> third = ImmutableSet.of(new URL("file:/nonexistent/third.jar"));
+      ReflectionsCache.urlsToReflections.clear();
+      long evictions = Flagz.reflectionsCacheStats().evictions();
+      ReflectionsCache.reflectionsForUrls(first);
+      ReflectionsCache.reflectionsForUrls(second);
+      ReflectionsCache.reflectionsForUrls(first);
+      ReflectionsCache.reflectionsForUrls(third);
+
+      assertThat(ReflectionsCache.urlsToReflections.keySet(), is(ImmutableSet.of(first, third)));
+      ReflectionsCacheStats stats = Flagz.reflectionsCacheStats();
+      assertThat(stats.cachedScans(), is(2));
+      assertThat(stats.evictions(), is(evictions + 1));
+    } finally {
+      registry.setField("flagz_reflections_cache_size", "16");
+    }
+  }
+}
@@ -0,0 +1,162 @@
+package org.flagz;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+import org.flagz.testclasses.StaticFlags;
+import org.junit.Test;
+import org.reflections.Reflections;
+import org.reflections.scanners.FieldAnnotationsScanner;
+import org.reflections.scanners.SubTypesScanner;
+import org.reflections.util.ConfigurationBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for persisting scan results across JVM starts through {@link ScanCache}.
+ */
+public class ScanCacheTest {
+
+  private static final Set<URL> TEST_CLASSES = ImmutableSet.of(
+      StaticFlags.class.getProtectionDomain().getCodeSource().getLocation());
+
+  @Test
+  public void testScanResultsSurviveSerialization() throws Exception {
+    Reflections scanned = scan(TEST_CLASSES);
+    ScanCache serializer = new ScanCache();
+    String serialized = serializer.toString(scanned);
+    Reflections read = serializer.read(
+        new ByteArrayInputStream(serialized.getBytes(StandardCharsets.UTF_8)));
+
+    Set<Field> fields = read.getFieldsAnnotatedWith(FlagInfo.class);
+    assertThat(fields, is(scanned.getFieldsAnnotatedWith(FlagInfo.class)));
+    assertTrue(fields.contains(StaticFlags.class.getDeclaredField("testAltNameFlag")));
+    assertThat(serializer.toString(read), is(serialized));
+  }
+
+  @Test
+  public void testSecondLoadReadsCacheFile() throws Exception {
+    File directory = Files.createTempDir();
+    AtomicInteger scans = new AtomicInteger();
+    Reflections first = ScanCache.loadOrScan(directory.toPath(), TEST_CLASSES, urls -> {
+      scans.incrementAndGet();
+      return scan(urls);
+    });
+    Reflections second = ScanCache.loadOrScan(directory.toPath(), TEST_CLASSES, urls -> {
+      scans.incrementAndGet();
+      return scan(urls);
+    });
+
+    assertThat(scans.get(), is(1));
+    assertThat(directory.list().length, is(1));
+    assertThat(second.getFieldsAnnotatedWith(FlagInfo.class),
+        is(first.getFieldsAnnotatedWith(FlagInfo.class)));
+  }
+
+  @Test
+  public void testCorruptCacheFileFallsBackToScanning() throws Exception {
+    File directory = Files.createTempDir();
+    String fingerprint = ScanCache.fingerprint(TEST_CLASSES);
+    Files.write("garbage", new File(directory, "scan-" + fingerprint + ".cache"),
+        StandardCharsets.UTF_8);
+    Reflections reflections = ScanCache.loadOrScan(directory.toPath(), TEST_CLASSES,
+        ScanCacheTest::scan);
+
+    assertTrue(reflections.getFieldsAnnotatedWith(FlagInfo.class)
+        .contains(StaticFlags.class.getDeclaredField("testAltNameFlag")));
+  }
+
+  @Test
+  public void testFingerprintChangesWithJarContents() throws Exception {
+    File jar = new File(Files.createTempDir(), "dependency.jar");
+    Files.write("one", jar, StandardCharsets.UTF_8);
+    Set<URL> urls = ImmutableSet.of(jar.toURI().toURL());
+    String before = ScanCache.fingerprint(urls);
+    assertThat(ScanCache.fingerprint(urls), is(before));
+
+    Files.write("two!", jar, StandardCharsets.UTF_8);
+    assertThat(ScanCache.fingerprint(urls), not(is(before)));
+  }
+
+  @Test
+  public void testNestedJarFingerprintFollowsOuterJar() throws Exception {
+    File jar = new File(Files.createTempDir(), "application.jar");
+    Files.write("one", jar, StandardCharsets.UTF_8);
+    Set<URL> urls = ImmutableSet.of(
+        new URL("jar:" + jar.toURI() + "!/BOOT-INF/lib/dependency.jar!/"));
+    String before = ScanCache.fingerprint(urls);
+
+    Files.write("two!", jar, StandardCharsets.UTF_8);
+    assertThat(ScanCache.fingerprint(urls), not(is(before)));
+  }
+
+  @Test
+  public void testEntriesWithoutLocalFileAreNotCached() throws Exception {
+    File directory = Files.createTempDir();
+    Set<URL> urls = ImmutableSet.<URL>builder()
+        .addAll(TEST_CLASSES)
+        .add(new URL("http://example.com/dependency.jar"))
+        .build();
+    assertThat(ScanCache.fingerprint(urls), is(nullValue()));
+
+    AtomicInteger scans = new AtomicInteger();
+    for (int i = 0; i < 2; i++) {
+      ScanCache.loadOrScan(directory.toPath(), urls, toScan -> {
+        scans.incrementAndGet();
+        return scan(TEST_CLASSES);
+      });
+    }
+    assertThat(scans.get(), is(2));
+    assertThat(directory.list().length, is(0));
+  }
+
+  @Test
+  public void testLeastRecentlyUsedFilesArePruned() throws Exception {
+    File directory = Files.createTempDir();
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < 4; i++) {
+      File file = new File(directory, "scan-" + i + ".cache");
+      Files.write("", file, StandardCharsets.UTF_8);
+      assertTrue(file.setLastModified(now - 1000 * (4 - i)));
+    }
+    File unrelated = new File(directory, "unrelated.txt");
+    Files.write("", unrelated, StandardCharsets.UTF_8);
+    assertTrue(unrelated.setLastModified(now - 10000));
+
+    ScanCache.prune(directory.toPath(), 2);
+    assertThat(ImmutableSet.copyOf(directory.list()),
+        is(ImmutableSet.of("scan-2.cache", "scan-3.cache", "unrelated.txt")));
+  }
+
+  @Test
+  public void testStaleFingerprintsArePrunedOnWrite() throws Exception {
+    File directory = Files.createTempDir();
+    for (int i = 0; i < ScanCache.MAX_CACHE_FILES; i++) {
+      File file = new File(directory, "scan-stale" + i + ".cache");
+      Files.write("", file, StandardCharsets.UTF_8);
+      assertTrue(file.setLastModified(System.currentTimeMillis() - 1000 * (60 - i)));
+    }
+    File oldest = new File(directory, "scan-stale0.cache");
+    ScanCache.loadOrScan(directory.toPath(), TEST_CLASSES, ScanCacheTest::scan);
+
+    assertThat(directory.list().length, is(ScanCache.MAX_CACHE_FILES));
+    assertThat(oldest.exists(), is(false));
+  }
+
+  private static Reflections scan(Set<URL> urls) {
+    return new Reflections(new ConfigurationBuilder()
+        .setUrls(urls)
+        .setScanners(new FieldAnnotationsScanner(), new SubTypesScanner()));
+  }
+}
@@ -0,0 +1,70 @@
+package org.flagz;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.flagz.StartupReport.Phase;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the {@link StartupReport} of registries created by {@link Flagz#parse}.
+ */
+public class StartupReportTest {
+
+  public static final List<String> PACKAGE_PREFIXES = ImmutableList.of("org.flagz.testclasses");
+
+  @FlagInfo(name = "test_startup_int", help = "some validated int")
+  final Flag<Integer> flagInt = Flagz.valueOf(10).withValidator(value -> {
+    sleepMillis(5);
+    return value > 0;
+  });
+
+  final Set<Object> SET_OF_THIS_TEST = ImmutableSet.of(this);
+
+  @Test
+  public void testPhasesAreRecorded() {
+    String[] args = {"--test_startup_int=20"};
+    StartupReport report =
+        Flagz.parse(args, PACKAGE_PREFIXES, SET_OF_THIS_TEST).startupReport();
+
+    assertThat(report.phases().keySet(), is(ImmutableSet.copyOf(Phase.values())));
+    assertTrue(report.phase(Phase.VALIDATION).compareTo(Duration.ofMillis(5)) >= 0);
+    Duration phases = report.phases().values().stream().reduce(Duration.ZERO, Duration::plus);
+    assertTrue(phases.compareTo(report.total()) <= 0);
+    assertTrue(report.phase(Phase.ARGUMENT_PARSING).compareTo(report.total()) < 0);
+  }
+
+  @Test
+  public void testBreakdownPerPrefixAndScanner() {
+    String[] args = {};
+    StartupReport report =
+        Flagz.parse(args, PACKAGE_PREFIXES, SET_OF_THIS_TEST).startupReport();
+
+    assertThat(report.classpathScanByPrefix().keySet(),
+        is(ImmutableSet.of("org.flagz.testclasses", "org.flagz")));
+    assertThat(report.discoveryByScanner().keySet(),
+        is(ImmutableSet.of("ObjectBoundFinalScanner", "StaticFinalScanner")));
+  }
+
+  @Test
+  public void testRegistriesNotCreatedByParseHaveEmptyReport() {
+    FlagFieldRegistry registry = new FlagFieldRegistry(ImmutableSet.of());
+    registry.init();
+    assertThat(registry.startupReport().total(), is(Duration.ZERO));
+  }
+
+  private static void sleepMillis(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,154 @@
+package org.flagz;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.flagz.testclasses.SomeEnum;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests of flags holding nested containers and objects, given as JSON.
+ *
+ * Like {@link ContainerFlagFieldTest}, flags are declared in-object to test value parsing only.
+ */
+public class StructuredFlagFieldTest {
+
+  private static final String[] EMPTY_ARGS = {};
+  private static final List<String> EMPTY_PACKAGE_PREFIXES = ImmutableList.of();
+
+  /** An object flag value. */
+  static class Endpoint {
+    private String host;
+    private int port;
+    private List<SomeEnum> modes;
+
+    Endpoint() {
+      this("localhost", 80, ImmutableList.of());
+    }
+
+    Endpoint(String host, int port, List<SomeEnum> modes) {
+      this.host = host;
+      this.port = port;
+      this.modes = modes;
+    }
+  }
+
+  /** Final fields can't be set from JSON members. */
+  static class FinalEndpoint {
+    private final String host = "localhost";
+  }
+
+  @FlagInfo(name = "test_map_of_lists_flag", help = "")
+  final Flag<Map<String, List<Integer>>> mapOfListsFlag =
+      Flagz.valueOf(ImmutableMap.of("a", ImmutableList.of(1, 2)));
+
+  @FlagInfo(name = "test_list_of_sets_flag", help = "")
+  final Flag<List<Set<String>>> listOfSetsFlag = Flagz.valueOf(ImmutableList.of());
+
+  @FlagInfo(name = "test_endpoint_flag", help = "")
+  final Flag<Endpoint> endpointFlag = Flagz.valueOfJson(new Endpoint());
+
+  @FlagInfo(name = "test_endpoints_flag", help = "")
+  final Flag<Map<String, Endpoint>> endpointsFlag = Flagz.valueOfJson(ImmutableMap.of());
+
+  @FlagInfo(name = "test_final_endpoint_flag", help = "")
+  final Flag<FinalEndpoint> finalEndpointFlag = Flagz.valueOfJson(new FinalEndpoint());
+
+  final Set<Object> setOfThisTest = ImmutableSet.of(this);
+
+  @Test
+  public void testMapOfLists() {
+    String[] args = {"--test_map_of_lists_flag={\"x\": [1, 0x10], \"y\": []}"};
+    Flagz.parse(args, EMPTY_PACKAGE_PREFIXES, setOfThisTest);
+    assertThat(mapOfListsFlag.get(), equalTo(ImmutableMap.of(
+        "x", ImmutableList.of(1, 16), "y", ImmutableList.of())));
+    assertThat(mapOfListsFlag.get(), instanceOf(CompactMap.class));
+    assertThat(mapOfListsFlag.get().get("x"), instanceOf(CompactList.class));
+  }
+
+  @Test
+  public void testListOfSets() {
+    String[] args = {"--test_list_of_sets_flag=[[\"a,b\", \"c\\\"d\"], []]"};
+    Flagz.parse(args, EMPTY_PACKAGE_PREFIXES, setOfThisTest);
+    assertThat(listOfSetsFlag.get(), equalTo(ImmutableList.of(
+        ImmutableSet.of("a,b", "c\"d"), ImmutableSet.of())));
+  }
+
+  @Test
+  public void testObject() {
+    String[] args = {
+        "--test_endpoint_flag={\"host\": \"example.com\", \"modes\": [\"WACKY\"]}"};
+    Flagz.parse(args, EMPTY_PACKAGE_PREFIXES, setOfThisTest);
+    Endpoint endpoint = endpointFlag.get();
+    assertThat(endpoint.host, is("example.com"));
+    assertThat(endpoint.port, is(80));
+    assertThat(endpoint.modes, equalTo(ImmutableList.of(SomeEnum.WACKY)));
+  }
+
+  @Test
+  public void testMapOfObjects() {
+    String[] args = {"--test_endpoints_flag={\"web\": {\"port\": 8080}}"};
+    Flagz.parse(args, EMPTY_PACKAGE_PREFIXES, setOfThisTest);
+    assertThat(endpointsFlag.get().get("web").port, is(8080));
+    assertThat(endpointsFlag.get().get("web").host, is("localhost"));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testStringValueRoundTrips() {
+    Flagz.parse(EMPTY_ARGS, EMPTY_PACKAGE_PREFIXES, setOfThisTest);
+    FlagField<Endpoint> endpointReal = (FlagField<Endpoint>) endpointFlag;
+    FlagField<Map<String, List<Integer>>> mapOfListsReal =
+        (FlagField<Map<String, List<Integer>>>) mapOfListsFlag;
+
+    String endpointString = endpointReal.valueString(
+        new Endpoint("a\"b", 443, ImmutableList.of(SomeEnum.CRAZY, SomeEnum.NORMAL)));
+    assertThat(endpointString,
+        is("{\"host\":\"a\\\"b\",\"port\":443,\"modes\":[\"CRAZY\",\"NORMAL\"]}"));
+    endpointReal.parseString(endpointString);
+    assertThat(endpointFlag.get().host, is("a\"b"));
+    assertThat(endpointFlag.get().modes,
+        equalTo(ImmutableList.of(SomeEnum.CRAZY, SomeEnum.NORMAL)));
+
+    assertThat(mapOfListsReal.valueString(mapOfListsFlag.get()), is("{\"a\":[1,2]}"));
+  }
+
+  @Test(expected = FlagException.IllegalFormat.class)
+  public void testUnknownMember() {
+    String[] args = {"--test_endpoint_flag={\"hots\": \"example.com\"}"};
+    Flagz.parse(args, EMPTY_PACKAGE_PREFIXES, setOfThisTest);
+  }
+
+  @Test(expected = FlagException.IllegalFormat.class)
+  public void testMalformedJson() {
+    String[] args = {"--test_map_of_lists_flag={\"x\": [1, 2}"};
+    Flagz.parse(args, EMPTY_PACKAGE_PREFIXES, setOfThisTest);
+  }
+
+  @Test(expected = FlagException.IllegalFormat.class)
+  public void testBadNestedScalar() {
+    String[] args = {"--test_map_of_lists_flag={\"x\": [1, \"two\"]}"};
+    Flagz.parse(args, EMPTY_PACKAGE_PREFIXES, setOfThisTest);
+  }
+
+  @Test(expected = FlagException.IllegalFormat.class)
+  public void testTrailingContent() {
+    String[] args = {"--test_list_of_sets_flag=[] []"};
+    Flagz.parse(args, EMPTY_PACKAGE_PREFIXES, setOfThisTest);
+  }
+
+  @Test(expected = FlagException.UnsupportedType.class)
+  public void testFinalFieldsAreRejected() {
+    String[] args = {"--test_final_endpoint_flag={\"host\": \"example.com\"}"};
+    Flagz.parse(args, EMPTY_PACKAGE_PREFIXES, setOfThisTest);
+  }
+}
@@ -2,13 +2,16 @@ package org.flagz;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
 import org.junit.Test;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 /**
@@ -88,6 +91,40 @@ public class UnusedFlagTest {
     assertThat(generatedMessage, is(expectedMessage));
   }
 
+  @Test
+  public void testAccessCountsOnlyUnusedFlags() {
+    String[] args = {};
+    FlagFieldRegistry registry = Flagz.parse(args, EMPTY_PACKAGE_PREFIXES, mixed);
+    Map<String, Long> before = registry.getUnusedFlagAccessCounts();
+    for (int i = 0; i < 3; i++) {
+      unusedFlags.flagOtherInt.get();
+      usedFlags.flagInt.get();
+    }
+    Map<String, Long> counts = registry.getUnusedFlagAccessCounts();
+    assertThat(counts.keySet(), is(ImmutableSet.of(
+        "test_flag_other_int", "test_flag_other_string", "test_flag_other_float")));
+    assertThat(counts.get("test_flag_other_int") - before.get("test_flag_other_int"), is(3L));
+    assertThat(counts.get("test_flag_other_string"), is(before.get("test_flag_other_string")));
+  }
+
+  @Test
+  public void testEveryCallSiteReportedOnce() {
+    Flagz.parse(new String[] {}, EMPTY_PACKAGE_PREFIXES, onlyUnused);
+    UnusedFlagTracker tracker = ((BaseFlag<?>) unusedFlags.flagOtherStr).unusedTracker;
+    Set<StackTraceElement> before = tracker.reportedCallSites();
+    for (int i = 0; i < 3; i++) {
+      unusedFlags.flagOtherStr.get();
+    }
+    unusedFlags.flagOtherStr.get();
+
+    Set<StackTraceElement> reported = Sets.difference(tracker.reportedCallSites(), before);
+    assertThat(reported.size(), is(2));
+    for (StackTraceElement callSite : reported) {
+      assertThat(callSite.getMethodName(), is("testEveryCallSiteReportedOnce"));
+    }
+    assertThat(((BaseFlag<?>) usedFlags.flagStr).unusedTracker, is(nullValue()));
+  }
+
   static class UsedFlags {
     @FlagInfo(name = "test_flag_int", help = "some int")
     public final Flag<Integer> flagInt = Flagz.valueOf(200);
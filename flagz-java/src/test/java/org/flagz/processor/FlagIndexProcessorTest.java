@@ -0,0 +1,120 @@
+package org.flagz.processor;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import org.junit.Test;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the flag index written by {@link FlagIndexProcessor}.
+ */
+public class FlagIndexProcessorTest {
+
+  private static final String SOURCE = String.join("\n",
+      "package org.example;",
+      "import org.flagz.Flag;",
+      "import org.flagz.FlagInfo;",
+      "import org.flagz.Flagz;",
+      "class Server {",
+      "  @FlagInfo(name = \"port\", help = \"port to listen on\")",
+      "  static final Flag<Integer> port = Flagz.valueOf(8080);",
+      "  @FlagInfo(name = \"instance_name\", help = \"not static, so not indexed\")",
+      "  final Flag<String> instanceName = Flagz.valueOf(\"\");",
+      "  static class Limits {",
+      "    @FlagInfo(name = \"max_connections\", help = \"limit of connections\")",
+      "    private static final Flag<Integer> maxConnections = Flagz.valueOf(100);",
+      "  }",
+      "}");
+
+  @Test
+  public void testIndexListsStaticFlagFields() throws Exception {
+    File output = Files.createTempDir();
+    assertTrue("Compilation failed.", compile(output, SOURCE));
+
+    File index = new File(output, FlagIndexProcessor.INDEX_RESOURCE);
+    List<String> entries = Files.readLines(index, StandardCharsets.UTF_8);
+    assertThat(entries, is((List<String>) ImmutableList.of(
+        "org.example.Server#port",
+        "org.example.Server$Limits#maxConnections")));
+  }
+
+  @Test
+  public void testNoIndexWithoutFlags() throws Exception {
+    File output = Files.createTempDir();
+    assertTrue("Compilation failed.", compile(output, "package org.example; class Empty {}"));
+    assertTrue(!new File(output, FlagIndexProcessor.INDEX_RESOURCE).exists());
+  }
+
+  @Test
+  public void testNativeImageConfigRegistersFlagFields() throws Exception {
+    File output = Files.createTempDir();
+    assertTrue("Compilation failed.",
+        compile(output, SOURCE, "-Aflagz.native_image=true", "-Aflagz.index_resource=flags.idx"));
+
+    assertTrue(new File(output, "flags.idx").exists());
+    assertTrue(!new File(output, FlagIndexProcessor.INDEX_RESOURCE).exists());
+    File[] directories = new File(output, FlagIndexProcessor.NATIVE_IMAGE_DIRECTORY).listFiles();
+    assertThat(directories.length, is(1));
+    String reflectConfig = Files.toString(
+        new File(directories[0], "reflect-config.json"), StandardCharsets.UTF_8);
+    assertThat(reflectConfig, is(String.join("\n",
+        "[",
+        "  {\"name\": \"org.example.Server\", \"fields\": [{\"name\": \"port\"}]},",
+        "  {\"name\": \"org.example.Server$Limits\", \"fields\": [{\"name\": \"maxConnections\"}]}",
+        "]",
+        "")));
+    String resourceConfig = Files.toString(
+        new File(directories[0], "resource-config.json"), StandardCharsets.UTF_8);
+    assertTrue(resourceConfig.contains("\\\\Qflags.idx\\\\E"));
+  }
+
+  @Test
+  public void testNoNativeImageConfigByDefault() throws Exception {
+    File output = Files.createTempDir();
+    assertTrue("Compilation failed.", compile(output, SOURCE));
+    assertTrue(!new File(output, FlagIndexProcessor.NATIVE_IMAGE_DIRECTORY).exists());
+  }
+
+  private static boolean compile(File output, String source, String... processorOptions)
+      throws Exception {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    try (StandardJavaFileManager files = compiler.getStandardFileManager(null, null, null)) {
+      List<String> options = ImmutableList.<String>builder()
+          .add("-classpath", System.getProperty("java.class.path"))
+          .add("-d", output.getPath())
+          .add(processorOptions)
+          .build();
+      JavaCompiler.CompilationTask task = compiler.getTask(
+          null, files, null, options, null, ImmutableList.of(new StringSource(source)));
+      task.setProcessors(ImmutableList.of(new FlagIndexProcessor()));
+      return task.call();
+    }
+  }
+
+  private static class StringSource extends SimpleJavaFileObject {
+    private final String source;
+
+    StringSource(String source) {
+      super(URI.create("string:///Source.java"), JavaFileObject.Kind.SOURCE);
+      this.source = source;
+    }
+
+    @Override
+    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+      return source;
+    }
+  }
+}
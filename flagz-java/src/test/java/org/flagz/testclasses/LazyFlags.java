@@ -0,0 +1,28 @@
+package org.flagz.testclasses;
+
+import org.flagz.Flag;
+import org.flagz.FlagInfo;
+import org.flagz.Flagz;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Flags of a class whose initialization is counted, for tests of lazy flag discovery.
+ */
+public class LazyFlags {
+
+  /** Counts initializations of {@link LazyFlags}, readable without initializing it. */
+  public static class Initializations {
+    public static final AtomicInteger count = new AtomicInteger();
+  }
+
+  static {
+    Initializations.count.incrementAndGet();
+  }
+
+  @FlagInfo(name = "test_lazy_int", altName = "t_lazy", help = "for testing lazy discovery")
+  public static final Flag<Integer> lazyIntFlag = Flagz.valueOf(1);
+
+  @FlagInfo(name = "test_lazy_string", help = "for testing lazy discovery")
+  public static final Flag<String> lazyStringFlag = Flagz.valueOf("foo");
+}
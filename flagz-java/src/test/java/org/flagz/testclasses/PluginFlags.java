@@ -0,0 +1,18 @@
+package org.flagz.testclasses;
+
+import org.flagz.Flag;
+import org.flagz.FlagInfo;
+import org.flagz.Flagz;
+
+/**
+ * Flags standing in for a plugin's, registered at runtime by tests of late registration.
+ */
+public class PluginFlags {
+
+  @FlagInfo(name = "test_plugin_int", altName = "t_plugin", help = "for testing late registration")
+  public static final Flag<Integer> pluginIntFlag = Flagz.valueOf(1);
+
+  public static void resetToDefaults() {
+    pluginIntFlag.accept(pluginIntFlag.defaultValue());
+  }
+}
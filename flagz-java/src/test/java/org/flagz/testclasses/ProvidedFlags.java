@@ -0,0 +1,31 @@
+package org.flagz.testclasses;
+
+import com.google.common.collect.ImmutableSet;
+import org.flagz.Flag;
+import org.flagz.FlagInfo;
+import org.flagz.FlagProvider;
+import org.flagz.Flagz;
+
+import java.util.Set;
+
+/**
+ * Flags of a library that lists them through a {@link FlagProvider}, for tests of providers.
+ */
+public class ProvidedFlags {
+
+  /** Lists {@link ProvidedFlags}, registered in a services file written by the tests. */
+  public static class Provider implements FlagProvider {
+
+    @Override
+    public Set<Class<?>> flagClasses() {
+      return ImmutableSet.of(ProvidedFlags.class);
+    }
+  }
+
+  @FlagInfo(name = "test_provided_int", altName = "t_provided", help = "for testing providers")
+  public static final Flag<Integer> providedIntFlag = Flagz.valueOf(1);
+
+  public static void resetToDefaults() {
+    providedIntFlag.accept(providedIntFlag.defaultValue());
+  }
+}
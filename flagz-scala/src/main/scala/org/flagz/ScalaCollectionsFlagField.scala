@@ -7,12 +7,12 @@ class SetFlagField[E](defaultValue: Set[E])(implicit tag: ClassTag[E])
     extends ContainerFlagField[Set[E]](defaultValue, () => Set.empty[E]) {
   val elementClazz = tag.runtimeClass.asInstanceOf[Class[E]]
 
-  override protected def addItem(existing: Set[E], value: String): Set[E] = {
-    existing + ContainerFlagField.itemFromString(value, elementClazz, this)
+  override protected def addItem(existing: Set[E], tokens: ContainerTokenizer): Set[E] = {
+    existing + ContainerFlagField.itemFromString(tokens.value(), elementClazz, this)
   }
 
   override def valueString(value: Set[E]): String = {
-    value.mkString(",")
+    value.iterator.map(itemString(_)).mkString(itemSeparator())
   }
 }
 
@@ -21,12 +21,17 @@ class ListFlagField[E](defaultValue: List[E])(implicit tag: ClassTag[E])
     extends ContainerFlagField[List[E]](defaultValue, () => Nil) {
   val elementClazz = tag.runtimeClass.asInstanceOf[Class[E]]
 
-  override protected def addItem(existing: List[E], value: String): List[E] = {
-    existing ::: List(ContainerFlagField.itemFromString(value, elementClazz, this))
+  // Items are prepended, and the list reversed once complete, instead of appending each in O(n).
+  override protected def addItem(existing: List[E], tokens: ContainerTokenizer): List[E] = {
+    ContainerFlagField.itemFromString(tokens.value(), elementClazz, this) :: existing
+  }
+
+  override protected def completed(built: List[E]): List[E] = {
+    built.reverse
   }
 
   override def valueString(value: List[E]): String = {
-    value.mkString(",")
+    value.map(itemString(_)).mkString(itemSeparator())
   }
 }
 
@@ -36,17 +41,15 @@ class MapFlagField[K, V](defaultValue: Map[K, V])(implicit keyTag: ClassTag[K],
   val keyClazz = keyTag.runtimeClass.asInstanceOf[Class[K]]
   val valueClazz = valueTag.runtimeClass.asInstanceOf[Class[V]]
 
-  override protected def addItem(existing: Map[K, V], itemString: String): Map[K, V] = {
-    val components: Array[String] = itemString.split(":")
-    if (components.length != 2) {
-      throw new FlagException.IllegalFormat(this, itemString, null)
-    }
-    val key: K = ContainerFlagField.itemFromString(components(0), keyClazz, this)
-    val value: V = ContainerFlagField.itemFromString(components(1), valueClazz, this)
+  override protected def hasKeys(): Boolean = true
+
+  override protected def addItem(existing: Map[K, V], tokens: ContainerTokenizer): Map[K, V] = {
+    val key: K = ContainerFlagField.itemFromString(tokens.key(), keyClazz, this)
+    val value: V = ContainerFlagField.itemFromString(tokens.value(), valueClazz, this)
     existing + (key -> value)
   }
 
   override def valueString(value: Map[K, V]): String = {
-    value.map { case (k, v) => (k.toString + ":" + v.toString) }.mkString(",")
+    value.iterator.map { case (k, v) => entryString(k, v) }.mkString(itemSeparator())
   }
-}
\ No newline at end of file
+}
@@ -1,5 +1,7 @@
 package org.flagz
 
+import java.util.function.Supplier
+
 import scala.collection.JavaConversions._
 import scala.reflect.ClassTag
 
@@ -26,20 +28,20 @@ import scala.reflect.ClassTag
   **/
 object ScalaFlagz extends Flagz {
 
-  def valueOf(defaultValue: Int): Flag[java.lang.Integer] = {
-    Flagz.valueOf(new java.lang.Integer(defaultValue))
+  def valueOf(defaultValue: Int): IntFlag = {
+    Flagz.valueOf(defaultValue)
   }
 
-  def valueOf(defaultValue: Long): Flag[java.lang.Long] = {
-    Flagz.valueOf(new java.lang.Long(defaultValue))
+  def valueOf(defaultValue: Long): LongFlag = {
+    Flagz.valueOf(defaultValue)
   }
 
   def valueOf(defaultValue: Float): Flag[java.lang.Float] = {
     Flagz.valueOf(new java.lang.Float(defaultValue))
   }
 
-  def valueOf(defaultValue: Double): Flag[java.lang.Double] = {
-    Flagz.valueOf(new java.lang.Double(defaultValue))
+  def valueOf(defaultValue: Double): DoubleFlag = {
+    Flagz.valueOf(defaultValue)
   }
 
   def valueOf(defaultValue: Short): Flag[java.lang.Short] = {
@@ -50,8 +52,8 @@ object ScalaFlagz extends Flagz {
     Flagz.valueOf(new java.lang.Byte(defaultValue))
   }
 
-  def valueOf(defaultValue: Boolean): Flag[java.lang.Boolean] = {
-    Flagz.valueOf(new java.lang.Boolean(defaultValue))
+  def valueOf(defaultValue: Boolean): BooleanFlag = {
+    Flagz.valueOf(defaultValue)
   }
 
   def valueOf(defaultValue: String): Flag[java.lang.String] = {
@@ -84,11 +86,14 @@ object ScalaFlagz extends Flagz {
    * @return registry useful for setting flags at runtime
    */
   def parse(args: Array[String], packagePrefixes: List[String]): FlagFieldRegistry = {
-    Flagz.parse(args, packagePrefixes, ScalaObjectScanner.scanFlagObjects(packagePrefixes))
+    // Scanned through a Supplier, so that the scan shows up in the registry's StartupReport.
+    val objects = new Supplier[java.util.Set[Object]] {
+      override def get(): java.util.Set[Object] = ScalaObjectScanner.scanFlagObjects(packagePrefixes)
+    }
+    Flagz.parse(args, packagePrefixes, objects, false)
   }
 
   def parse(args: Array[String]): FlagFieldRegistry = {
-    val emptyPrefixes = List.empty[String]
-    Flagz.parse(args, emptyPrefixes, ScalaObjectScanner.scanFlagObjects(emptyPrefixes))
+    parse(args, List.empty[String])
   }
 }
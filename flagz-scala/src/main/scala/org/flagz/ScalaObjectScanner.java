@@ -21,7 +21,7 @@ import java.util.Set;
  */
 class ScalaObjectScanner {
 
-  static synchronized Set<Object> scanFlagObjects(List<String> packagePrefixes) {
+  static Set<Object> scanFlagObjects(List<String> packagePrefixes) {
 
     Reflections reflections = ReflectionsCache.reflectionsForPrefixes(packagePrefixes);
     Set<Object> objects = new HashSet<>();
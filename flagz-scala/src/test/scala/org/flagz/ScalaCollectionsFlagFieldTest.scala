@@ -36,6 +36,11 @@ class ScalaCollectionsFlagFieldTest extends WordSpec {
       assert(Set("foo", "boo", "zoo") == TestCollectionObject.flagSet.get())
     }
 
+    "parse escaped and quoted items" in {
+      val flagRegistry = ScalaFlagz.parse(Array[String]("--test_coll_set=\"a,b\",c\\,d"))
+      assert(Set("a,b", "c,d") == TestCollectionObject.flagSet.get())
+    }
+
     "unwrap to the original String implementation" in {
       val flagRegistry = ScalaFlagz.parse(Array[String]("--test_coll_set=foo,boo,zoo"))
       val flagField = TestCollectionObject.flagSet.asInstanceOf[FlagField[Set[Int]]]
@@ -55,6 +60,13 @@ class ScalaCollectionsFlagFieldTest extends WordSpec {
       assert(Map("foo" -> 2, "boo" -> 3) == TestCollectionObject.flagMap.get())
     }
 
+    "round trip keys with separators through the String implementation" in {
+      val flagRegistry = ScalaFlagz.parse(Array[String]("--test_coll_map=foo\\:bar:2"))
+      val flagField = TestCollectionObject.flagMap.asInstanceOf[FlagField[Map[String, Int]]]
+      assert(Map("foo:bar" -> 2) == TestCollectionObject.flagMap.get())
+      assert("foo\\:bar:2" == flagField.valueString(flagField.get()))
+    }
+
     "unwrap to the original String implementation" in {
       val flagRegistry = ScalaFlagz.parse(Array[String]("--test_coll_map=foo:2,boo:3"))
       val flagField = TestCollectionObject.flagMap.asInstanceOf[FlagField[Map[String, Int]]]